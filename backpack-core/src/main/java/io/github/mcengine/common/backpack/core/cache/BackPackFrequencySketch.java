@@ -0,0 +1,120 @@
+package io.github.mcengine.common.backpack.core.cache;
+
+/**
+ * Count-min sketch of 4-bit access counters used as the TinyLFU admission filter.
+ *
+ * <p>Each key increments one counter in each of four rows; its estimated frequency is the
+ * minimum of those counters. Counters saturate at 15, and all counters are halved once the
+ * number of increments reaches ten times the width, so old popularity fades.</p>
+ *
+ * <p>Not thread-safe; callers synchronize.</p>
+ */
+final class BackPackFrequencySketch {
+
+    /** Number of rows (hash functions). */
+    private static final int DEPTH = 4;
+
+    /** Saturation value of a counter. */
+    private static final int MAX_COUNT = 15;
+
+    /** Per-row seeds for the row hashes. */
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x27D4EB2F165667C5L};
+
+    /** Counters, two per byte, {@code DEPTH} rows of {@code width} counters each. */
+    private final byte[] table;
+
+    /** Counters per row (a power of two). */
+    private final int width;
+
+    /** Increments after which all counters are halved. */
+    private final int sampleSize;
+
+    /** Increments since the last halving. */
+    private int samples;
+
+    /**
+     * Creates a sketch.
+     *
+     * @param expectedKeys expected number of distinct cached keys
+     */
+    BackPackFrequencySketch(int expectedKeys) {
+        // Eight counters per expected key keep collision overestimates low during scans
+        long wanted = Math.max(1024L, Math.min(1L << 22, 8L * expectedKeys));
+        int w = Integer.highestOneBit((int) wanted - 1) << 1;
+        this.width = w;
+        this.table = new byte[DEPTH * w / 2];
+        this.sampleSize = 10 * w;
+    }
+
+    /**
+     * Records one access of a key.
+     *
+     * @param keyHash well-mixed hash of the key
+     */
+    void increment(long keyHash) {
+        boolean changed = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(keyHash, row);
+            int count = get(index);
+            if (count < MAX_COUNT) {
+                set(index, count + 1);
+                changed = true;
+            }
+        }
+        if (changed && ++samples >= sampleSize) halve();
+    }
+
+    /**
+     * Estimates how often a key was accessed recently.
+     *
+     * @param keyHash well-mixed hash of the key
+     * @return estimated frequency, 0 to 15
+     */
+    int frequency(long keyHash) {
+        int min = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, get(index(keyHash, row)));
+        }
+        return min;
+    }
+
+    /**
+     * Halves every counter (aging).
+     */
+    private void halve() {
+        for (int i = 0; i < table.length; i++) {
+            // Shift both nibbles right by one, dropping the bit carried between them
+            table[i] = (byte) ((table[i] >>> 1) & 0x77);
+        }
+        samples /= 2;
+    }
+
+    /**
+     * @param keyHash key hash
+     * @param row     row number
+     * @return counter index within the whole table
+     */
+    private int index(long keyHash, int row) {
+        long h = (keyHash ^ SEEDS[row]) * 0x9E3779B97F4A7C15L;
+        return row * width + ((int) (h >>> 40) & (width - 1));
+    }
+
+    /**
+     * @param index counter index
+     * @return counter value
+     */
+    private int get(int index) {
+        int b = table[index >>> 1];
+        return ((index & 1) == 0 ? b : b >>> 4) & 0x0F;
+    }
+
+    /**
+     * @param index counter index
+     * @param value new counter value (0 to 15)
+     */
+    private void set(int index, int value) {
+        int i = index >>> 1;
+        int b = table[i];
+        table[i] = (byte) ((index & 1) == 0 ? (b & 0xF0) | value : (b & 0x0F) | (value << 4));
+    }
+}
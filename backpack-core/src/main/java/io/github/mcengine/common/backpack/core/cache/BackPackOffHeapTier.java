@@ -0,0 +1,310 @@
+package io.github.mcengine.common.backpack.core.cache;
+
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Off-heap store of encoded backpack payloads, used as the cold tier of {@link BackPackSnapshotCache}.
+ *
+ * <p>Payloads are kept in direct {@link ByteBuffer} slabs of {@value #SLAB_BYTES} bytes, carved into
+ * {@value #BLOCK_SIZE}-byte blocks; an entry occupies as many blocks as its length needs, so the heap
+ * only holds a small block index per entry. Slabs are allocated on demand up to the configured budget.
+ * When an entry is replaced, removed, or evicted (least recently used first), its blocks go straight
+ * back to the free list, so off-heap usage is exactly what {@link #usedBytes()} reports.
+ * {@link #close()} frees the slabs immediately through the JDK's buffer cleaner where available;
+ * otherwise they are released when the buffers are collected.</p>
+ *
+ * <p>Reports {@link BackPackMetrics#OFFHEAP_HITS}, {@link BackPackMetrics#OFFHEAP_MISSES},
+ * {@link BackPackMetrics#OFFHEAP_EVICTIONS}, and the {@link BackPackMetrics#OFFHEAP_BYTES},
+ * {@link BackPackMetrics#OFFHEAP_RESERVED}, and {@link BackPackMetrics#OFFHEAP_ENTRIES} gauges.</p>
+ *
+ * <p>All operations are synchronized.</p>
+ */
+public final class BackPackOffHeapTier implements AutoCloseable {
+
+    /** Allocation unit in bytes. */
+    static final int BLOCK_SIZE = 512;
+
+    /** Size of one direct slab in bytes. */
+    static final int SLAB_BYTES = 16 * 1024 * 1024;
+
+    /** Blocks per slab. */
+    private static final int BLOCKS_PER_SLAB = SLAB_BYTES / BLOCK_SIZE;
+
+    /** {@code sun.misc.Unsafe#invokeCleaner(ByteBuffer)} bound to the instance, or {@code null} when unavailable. */
+    private static final MethodHandle INVOKE_CLEANER;
+
+    static {
+        MethodHandle cleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            cleaner = MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            cleaner = null;
+        }
+        INVOKE_CLEANER = cleaner;
+    }
+
+    /** Shared counters. */
+    private final BackPackMetrics metrics;
+
+    /** Total number of blocks the budget allows. */
+    private final int maxBlocks;
+
+    /** Slabs, allocated on demand. */
+    private final ByteBuffer[] slabs;
+
+    /** Entries in access order (eldest first). */
+    private final LinkedHashMap<UUID, Slot> slots = new LinkedHashMap<>(64, 0.75F, true);
+
+    /** Stack of freed block numbers. */
+    private int[] free = new int[64];
+
+    /** Number of block numbers on {@link #free}. */
+    private int freeCount;
+
+    /** Next never-used block number. */
+    private int nextBlock;
+
+    /** Payload bytes currently stored. */
+    private long usedBytes;
+
+    /** Whether {@link #close()} ran. */
+    private boolean closed;
+
+    /**
+     * Creates an off-heap tier.
+     *
+     * @param maxBytes off-heap budget in bytes
+     * @param metrics  shared counters
+     */
+    public BackPackOffHeapTier(long maxBytes, BackPackMetrics metrics) {
+        this.metrics = metrics;
+        this.maxBlocks = (int) Math.min(Integer.MAX_VALUE, maxBytes / BLOCK_SIZE);
+        this.slabs = new ByteBuffer[(maxBlocks + BLOCKS_PER_SLAB - 1) / BLOCKS_PER_SLAB];
+        metrics.registerGauge(BackPackMetrics.OFFHEAP_BYTES, this::usedBytes);
+        metrics.registerGauge(BackPackMetrics.OFFHEAP_RESERVED, this::reservedBytes);
+        metrics.registerGauge(BackPackMetrics.OFFHEAP_ENTRIES, this::size);
+    }
+
+    /**
+     * Stores a payload, replacing any previous one and evicting cold entries if the budget is full.
+     *
+     * @param id    backpack id
+     * @param data  encoded payload
+     * @param stamp payload stamp
+     * @return {@code true} if the payload was stored
+     */
+    public synchronized boolean put(UUID id, byte[] data, long stamp) {
+        remove(id);
+        int needed = blocksFor(data.length);
+        if (closed || needed > maxBlocks) return false;
+
+        Iterator<Slot> eldest = slots.values().iterator();
+        while (available() < needed && eldest.hasNext()) {
+            Slot victim = eldest.next();
+            eldest.remove();
+            release(victim);
+            metrics.increment(BackPackMetrics.OFFHEAP_EVICTIONS);
+        }
+
+        int[] blocks = new int[needed];
+        for (int i = 0; i < needed; i++) {
+            int block = allocate();
+            blocks[i] = block;
+            int offset = i * BLOCK_SIZE;
+            slab(block).put(offsetOf(block), data, offset, Math.min(BLOCK_SIZE, data.length - offset));
+        }
+        slots.put(id, new Slot(blocks, data.length, stamp));
+        usedBytes += data.length;
+        return true;
+    }
+
+    /**
+     * Copies a payload back onto the heap.
+     *
+     * @param id    backpack id
+     * @param stamp stamp of the payload the caller expects
+     * @return the payload, or {@code null} on a miss
+     */
+    public synchronized byte[] get(UUID id, long stamp) {
+        Slot slot = slots.get(id);
+        if (slot != null && slot.stamp != stamp) {
+            remove(id);
+            slot = null;
+        }
+        if (slot == null) {
+            metrics.increment(BackPackMetrics.OFFHEAP_MISSES);
+            return null;
+        }
+
+        byte[] data = new byte[slot.length];
+        for (int i = 0; i < slot.blocks.length; i++) {
+            int block = slot.blocks[i];
+            int offset = i * BLOCK_SIZE;
+            slab(block).get(offsetOf(block), data, offset, Math.min(BLOCK_SIZE, data.length - offset));
+        }
+        metrics.increment(BackPackMetrics.OFFHEAP_HITS);
+        return data;
+    }
+
+    /**
+     * @param id    backpack id
+     * @param stamp payload stamp
+     * @return {@code true} if the tier holds this exact payload
+     */
+    public synchronized boolean contains(UUID id, long stamp) {
+        Slot slot = slots.get(id);
+        return slot != null && slot.stamp == stamp;
+    }
+
+    /**
+     * Removes a payload and frees its blocks.
+     *
+     * @param id backpack id
+     */
+    public synchronized void remove(UUID id) {
+        Slot removed = slots.remove(id);
+        if (removed != null) release(removed);
+    }
+
+    /**
+     * Removes every payload. Slabs stay allocated for reuse.
+     */
+    public synchronized void clear() {
+        slots.clear();
+        freeCount = 0;
+        nextBlock = 0;
+        usedBytes = 0L;
+    }
+
+    /**
+     * @return payload bytes currently stored off-heap
+     */
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return direct memory currently allocated for slabs, in bytes
+     */
+    public synchronized long reservedBytes() {
+        long reserved = 0L;
+        for (ByteBuffer slab : slabs) {
+            if (slab != null) reserved += slab.capacity();
+        }
+        return reserved;
+    }
+
+    /**
+     * @return number of stored payloads
+     */
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    /**
+     * Drops every payload and frees the slabs. Later {@link #put} calls are ignored.
+     */
+    @Override
+    public synchronized void close() {
+        clear();
+        closed = true;
+        for (int i = 0; i < slabs.length; i++) {
+            ByteBuffer slab = slabs[i];
+            slabs[i] = null;
+            if (slab == null || INVOKE_CLEANER == null) continue;
+            try {
+                INVOKE_CLEANER.invokeExact(slab);
+            } catch (Throwable e) {
+                // Left to the garbage collector
+            }
+        }
+    }
+
+    /**
+     * @return number of blocks that can be allocated without eviction
+     */
+    private int available() {
+        return freeCount + (maxBlocks - nextBlock);
+    }
+
+    /**
+     * Takes a free block, allocating its slab if needed. Callers ensure {@link #available()} is positive.
+     *
+     * @return block number
+     */
+    private int allocate() {
+        if (freeCount > 0) return free[--freeCount];
+        int block = nextBlock++;
+        int slab = block / BLOCKS_PER_SLAB;
+        if (slabs[slab] == null) {
+            int blocksInSlab = Math.min(BLOCKS_PER_SLAB, maxBlocks - slab * BLOCKS_PER_SLAB);
+            slabs[slab] = ByteBuffer.allocateDirect(blocksInSlab * BLOCK_SIZE);
+        }
+        return block;
+    }
+
+    /**
+     * Returns the blocks of a removed slot to the free list.
+     *
+     * @param slot removed slot
+     */
+    private void release(Slot slot) {
+        if (freeCount + slot.blocks.length > free.length) {
+            int[] grown = new int[Math.max(free.length * 2, freeCount + slot.blocks.length)];
+            System.arraycopy(free, 0, grown, 0, freeCount);
+            free = grown;
+        }
+        for (int block : slot.blocks) {
+            free[freeCount++] = block;
+        }
+        usedBytes -= slot.length;
+    }
+
+    /**
+     * @param block block number
+     * @return slab holding the block
+     */
+    private ByteBuffer slab(int block) {
+        return slabs[block / BLOCKS_PER_SLAB];
+    }
+
+    /**
+     * @param block block number
+     * @return byte offset of the block within its slab
+     */
+    private static int offsetOf(int block) {
+        return (block % BLOCKS_PER_SLAB) * BLOCK_SIZE;
+    }
+
+    /**
+     * @param length payload length
+     * @return number of blocks needed
+     */
+    private static int blocksFor(int length) {
+        return Math.max(1, (length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    }
+
+    /**
+     * Block index of a stored payload.
+     *
+     * @param blocks block numbers in payload order
+     * @param length payload length in bytes
+     * @param stamp  payload stamp
+     */
+    private record Slot(int[] blocks, int length, long stamp) {}
+}
@@ -0,0 +1,358 @@
+package io.github.mcengine.common.backpack.core.cache;
+
+import io.github.mcengine.common.backpack.core.memory.BackPackSheddable;
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Memory-budgeted cache of decoded backpack contents keyed by backpack id.
+ *
+ * <p>Entries are weighted by their <em>encoded</em> size in bytes and kept in LRU order. When an
+ * insert needs room, a TinyLFU admission filter compares the candidate's recent access frequency
+ * with that of the LRU victims it would displace; the candidate is rejected unless it is more
+ * popular. A one-off scan (e.g. an admin inspecting many backpacks) therefore cannot flush the
+ * backpacks players actually use.</p>
+ *
+ * <p>Each entry carries a <em>stamp</em> identifying the payload it was decoded from
+ * ({@link #stampOf(byte[])} in item mode, {@code 0} when contents live in an external store);
+ * a lookup with a different stamp is a miss and drops the entry.</p>
+ *
+ * <p>Consistency with saves: {@link #invalidate(UUID)} and {@link #putSaved} advance the key's
+ * generation, and {@link #putLoaded} only succeeds if the generation it observed before loading
+ * is unchanged, so a load racing a save can never reinstate stale contents.</p>
+ *
+ * <p>Optionally, a {@link BackPackOffHeapTier} keeps the encoded payload of every cached or recently
+ * evicted backpack off-heap: hot entries stay decoded on the heap, and a backpack that fell out of
+ * the hot set can still be decoded from {@link #getEncoded} without reading the store. The tier
+ * follows the same invalidations as the hot entries.</p>
+ *
+ * <p>All operations are synchronized and O(1) apart from eviction.</p>
+ *
+ * @param <V> decoded contents type
+ */
+public final class BackPackSnapshotCache<V> implements BackPackSheddable, AutoCloseable {
+
+    /** Number of generation stripes (a power of two). */
+    private static final int GENERATION_STRIPES = 1024;
+
+    /** Maximum total weight in bytes. */
+    private final long maxWeight;
+
+    /** Shared counters. */
+    private final BackPackMetrics metrics;
+
+    /** Entries in access order (eldest first). */
+    private final LinkedHashMap<UUID, Entry<V>> entries = new LinkedHashMap<>(64, 0.75F, true);
+
+    /** TinyLFU frequency filter. */
+    private final BackPackFrequencySketch sketch;
+
+    /** Generation counters, striped by key hash. */
+    private final long[] generations = new long[GENERATION_STRIPES];
+
+    /** Off-heap tier of encoded payloads, or {@code null} when disabled. */
+    private final BackPackOffHeapTier offHeap;
+
+    /** Current total weight in bytes. */
+    private long weight;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxWeight     memory budget, in encoded bytes
+     * @param averageWeight expected average entry weight, used to size the frequency sketch
+     * @param metrics       shared counters
+     */
+    public BackPackSnapshotCache(long maxWeight, int averageWeight, BackPackMetrics metrics) {
+        this(maxWeight, averageWeight, null, metrics);
+    }
+
+    /**
+     * Creates a cache backed by an off-heap tier of encoded payloads.
+     *
+     * @param maxWeight     memory budget, in encoded bytes
+     * @param averageWeight expected average entry weight, used to size the frequency sketch
+     * @param offHeap       off-heap tier owned by this cache, or {@code null}
+     * @param metrics       shared counters
+     */
+    public BackPackSnapshotCache(long maxWeight, int averageWeight, BackPackOffHeapTier offHeap, BackPackMetrics metrics) {
+        this.maxWeight = maxWeight;
+        this.offHeap = offHeap;
+        this.metrics = metrics;
+        this.sketch = new BackPackFrequencySketch((int) Math.min(Integer.MAX_VALUE, maxWeight / Math.max(1, averageWeight)));
+        metrics.registerGauge(BackPackMetrics.SNAPSHOT_CACHE_BYTES, this::weightedSize);
+        metrics.registerGauge(BackPackMetrics.SNAPSHOT_CACHE_ENTRIES, this::size);
+    }
+
+    /**
+     * Computes the stamp of an encoded payload: its length and content hash.
+     *
+     * @param data encoded payload, or {@code null}
+     * @return the stamp ({@code 0} for {@code null})
+     */
+    public static long stampOf(byte[] data) {
+        if (data == null) return 0L;
+        return ((long) data.length << 32) | (Arrays.hashCode(data) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Looks up decoded contents.
+     *
+     * @param id    backpack id
+     * @param stamp stamp of the payload the caller would otherwise decode
+     * @return the contents, or {@code null} on a miss
+     */
+    public synchronized V get(UUID id, long stamp) {
+        sketch.increment(hash(id));
+        Entry<V> entry = entries.get(id);
+        if (entry != null && entry.stamp != stamp) {
+            remove(id);
+            entry = null;
+        }
+        metrics.increment(entry != null ? BackPackMetrics.SNAPSHOT_CACHE_HITS : BackPackMetrics.SNAPSHOT_CACHE_MISSES);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Looks up the encoded payload of a backpack in the off-heap tier.
+     *
+     * @param id    backpack id
+     * @param stamp stamp of the payload the caller expects
+     * @return a heap copy of the payload, or {@code null} on a miss or when there is no off-heap tier
+     */
+    public synchronized byte[] getEncoded(UUID id, long stamp) {
+        return (offHeap != null) ? offHeap.get(id, stamp) : null;
+    }
+
+    /**
+     * Returns the generation to pass to {@link #putLoaded}; read it before starting the load.
+     *
+     * @param id backpack id
+     * @return current generation of the key
+     */
+    public synchronized long generation(UUID id) {
+        return generations[stripe(id)];
+    }
+
+    /**
+     * Caches contents produced by a load, unless the key was saved or invalidated since
+     * {@code generation} was read.
+     *
+     * @param id         backpack id
+     * @param value      decoded contents
+     * @param encoded    payload the contents were decoded from
+     * @param stamp      stamp of the decoded payload
+     * @param generation generation read before the load
+     * @return {@code true} if the contents were admitted
+     */
+    public synchronized boolean putLoaded(UUID id, V value, byte[] encoded, long stamp, long generation) {
+        if (generations[stripe(id)] != generation) return false;
+        // An unchanged generation means a tier copy with the same stamp is still current
+        if (offHeap != null && !offHeap.contains(id, stamp)) offHeap.put(id, encoded, stamp);
+        return admit(id, value, encoded.length, stamp);
+    }
+
+    /**
+     * Caches loaded contents that have no single encoded payload (e.g. a full record plus deltas),
+     * unless the key was saved or invalidated since {@code generation} was read. Drops the
+     * off-heap copy, which no longer matches.
+     *
+     * @param id         backpack id
+     * @param value      decoded contents
+     * @param weight     approximate encoded size in bytes
+     * @param stamp      stamp of the decoded payload
+     * @param generation generation read before the load
+     * @return {@code true} if the contents were admitted
+     */
+    public synchronized boolean putLoaded(UUID id, V value, long weight, long stamp, long generation) {
+        if (generations[stripe(id)] != generation) return false;
+        if (offHeap != null) offHeap.remove(id);
+        return admit(id, value, weight, stamp);
+    }
+
+    /**
+     * Caches contents that were just written, superseding any load in progress.
+     *
+     * @param id     backpack id
+     * @param value   saved contents
+     * @param encoded written payload
+     * @param stamp   stamp of the written payload
+     * @return {@code true} if the contents were admitted
+     */
+    public synchronized boolean putSaved(UUID id, V value, byte[] encoded, long stamp) {
+        generations[stripe(id)]++;
+        if (offHeap != null) offHeap.put(id, encoded, stamp);
+        return admit(id, value, encoded.length, stamp);
+    }
+
+    /**
+     * Caches contents that were just written without a single encoded payload (e.g. as a delta),
+     * superseding any load in progress. Drops the off-heap copy, which no longer matches.
+     *
+     * @param id     backpack id
+     * @param value  saved contents
+     * @param weight approximate encoded size in bytes
+     * @param stamp  stamp of the written payload
+     * @return {@code true} if the contents were admitted
+     */
+    public synchronized boolean putSaved(UUID id, V value, long weight, long stamp) {
+        generations[stripe(id)]++;
+        if (offHeap != null) offHeap.remove(id);
+        return admit(id, value, weight, stamp);
+    }
+
+    /**
+     * Drops a backpack whose contents are changing.
+     *
+     * @param id backpack id
+     */
+    public synchronized void invalidate(UUID id) {
+        generations[stripe(id)]++;
+        remove(id);
+        if (offHeap != null) offHeap.remove(id);
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0L;
+        Arrays.fill(generations, generations[0] + 1);
+        if (offHeap != null) offHeap.clear();
+    }
+
+    /**
+     * Drops every entry and frees the off-heap tier.
+     */
+    @Override
+    public synchronized void close() {
+        clear();
+        if (offHeap != null) offHeap.close();
+    }
+
+    /**
+     * Evicts the least recently used share of the decoded entries. Their payloads stay in the
+     * off-heap tier, which does not count against the heap.
+     *
+     * @param fraction share of the current entries to evict, {@code 0 < fraction <= 1}
+     * @return number of entries evicted
+     */
+    @Override
+    public synchronized int shed(double fraction) {
+        int count = (int) Math.ceil(entries.size() * fraction);
+        Iterator<Map.Entry<UUID, Entry<V>>> it = entries.entrySet().iterator();
+        for (int i = 0; i < count && it.hasNext(); i++) {
+            weight -= it.next().getValue().weight;
+            it.remove();
+        }
+        metrics.add(BackPackMetrics.SNAPSHOT_CACHE_EVICTIONS, count);
+        return count;
+    }
+
+    /**
+     * @return current total weight in encoded bytes
+     */
+    public synchronized long weightedSize() {
+        return weight;
+    }
+
+    /**
+     * @return number of cached entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return configured memory budget in encoded bytes
+     */
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Inserts an entry, evicting LRU victims if the candidate wins admission.
+     *
+     * @param id          backpack id
+     * @param value       decoded contents
+     * @param entryWeight encoded size in bytes
+     * @param stamp       payload stamp
+     * @return {@code true} if the entry was inserted
+     */
+    private boolean admit(UUID id, V value, long entryWeight, long stamp) {
+        remove(id);
+        if (entryWeight > maxWeight) {
+            metrics.increment(BackPackMetrics.SNAPSHOT_CACHE_REJECTED);
+            return false;
+        }
+
+        long needed = weight + entryWeight - maxWeight;
+        if (needed > 0) {
+            int candidateFrequency = sketch.frequency(hash(id));
+            List<UUID> victims = new ArrayList<>();
+            Iterator<Map.Entry<UUID, Entry<V>>> it = entries.entrySet().iterator();
+            while (needed > 0 && it.hasNext()) {
+                Map.Entry<UUID, Entry<V>> eldest = it.next();
+                if (sketch.frequency(hash(eldest.getKey())) >= candidateFrequency) {
+                    metrics.increment(BackPackMetrics.SNAPSHOT_CACHE_REJECTED);
+                    return false;
+                }
+                victims.add(eldest.getKey());
+                needed -= eldest.getValue().weight;
+            }
+            for (UUID victim : victims) {
+                remove(victim);
+                metrics.increment(BackPackMetrics.SNAPSHOT_CACHE_EVICTIONS);
+            }
+        }
+
+        entries.put(id, new Entry<>(value, entryWeight, stamp));
+        weight += entryWeight;
+        return true;
+    }
+
+    /**
+     * Removes an entry and releases its weight.
+     *
+     * @param id backpack id
+     */
+    private void remove(UUID id) {
+        Entry<V> removed = entries.remove(id);
+        if (removed != null) weight -= removed.weight;
+    }
+
+    /**
+     * @param id backpack id
+     * @return 64-bit hash of the id
+     */
+    private static long hash(UUID id) {
+        return id.getMostSignificantBits() * 31 + id.getLeastSignificantBits();
+    }
+
+    /**
+     * @param id backpack id
+     * @return generation stripe of the id
+     */
+    private static int stripe(UUID id) {
+        long h = hash(id);
+        return (int) (h ^ (h >>> 32)) & (GENERATION_STRIPES - 1);
+    }
+
+    /**
+     * A cached value with its weight and payload stamp.
+     *
+     * @param value  decoded contents
+     * @param weight encoded size in bytes
+     * @param stamp  payload stamp
+     * @param <V>    contents type
+     */
+    private record Entry<V>(V value, long weight, long stamp) {}
+}
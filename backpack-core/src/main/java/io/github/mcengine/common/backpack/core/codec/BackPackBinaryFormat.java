@@ -0,0 +1,337 @@
+package io.github.mcengine.common.backpack.core.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Versioned binary container for backpack contents, independent of any item representation.
+ *
+ * <p>Layout:</p>
+ * <pre>
+ * byte[2] magic        'B' 'P'
+ * byte    version      {@value #VERSION}
+ * byte    flags        bit 0: body is Deflate-compressed
+ * byte    item format  opaque tag describing how slot bytes encode items
+ * [varint raw body length, if compressed]
+ * body:
+ *   varint  slot count
+ *   byte[]  occupancy bitmap, (slot count + 7) / 8 bytes, bit i set = slot i holds an item
+ *   per occupied slot, in slot order: varint length, byte[length] item bytes
+ * </pre>
+ *
+ * <p>Bodies at or above the deflate threshold are compressed. Deflaters, inflaters, and scratch
+ * buffers are borrowed from small bounded pools rather than kept per thread: the codec also runs on
+ * virtual threads, one per storage operation, where a per-thread instance would be created for every
+ * call and its native zlib memory left to the garbage collector. Instances that do not fit back
+ * into a full pool are {@link Deflater#end() ended} at once.</p>
+ */
+public final class BackPackBinaryFormat {
+
+    /** Current container version. */
+    public static final int VERSION = 1;
+
+    /** Flag bit: the body is Deflate-compressed. */
+    private static final int FLAG_DEFLATE = 1;
+
+    /** Size of the fixed header in bytes. */
+    private static final int HEADER_BYTES = 5;
+
+    /** Most slots a backpack inventory can have (six rows). */
+    private static final int MAX_SLOTS = 54;
+
+    /** Largest encoded item accepted when sizing a decompressed body. */
+    private static final int MAX_ITEM_BYTES = 1 << 20;
+
+    /** Largest decompressed body accepted: every slot holding an item of the maximum size. */
+    private static final int MAX_RAW_BYTES = MAX_SLOTS * MAX_ITEM_BYTES;
+
+    /** Deflate cannot expand input by more than this factor, so longer claims are corrupt. */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    /** Number of idle instances kept in each pool. */
+    private static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /** Scratch buffers grown beyond this many bytes are dropped instead of pooled. */
+    private static final int MAX_POOLED_SCRATCH = 1 << 20;
+
+    /** Idle deflaters, reset between uses. */
+    private static final ArrayBlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /** Idle inflaters, reset between uses. */
+    private static final ArrayBlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /** Idle scratch output buffers. */
+    private static final ArrayBlockingQueue<Output> SCRATCH = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /** Body size (bytes) at or above which the body is compressed. */
+    private final int deflateThreshold;
+
+    /**
+     * Creates a container format.
+     *
+     * @param deflateThreshold body size at or above which Deflate is applied; {@code <= 0} always compresses
+     */
+    public BackPackBinaryFormat(int deflateThreshold) {
+        this.deflateThreshold = deflateThreshold;
+    }
+
+    /**
+     * Checks whether a payload was written by this format.
+     *
+     * @param data payload bytes
+     * @return {@code true} if the magic and a supported version are present
+     */
+    public static boolean matches(byte[] data) {
+        return data.length >= HEADER_BYTES && data[0] == 'B' && data[1] == 'P' && data[2] >= 1 && data[2] <= VERSION;
+    }
+
+    /**
+     * Checks whether a payload of this format has a Deflate-compressed body.
+     *
+     * @param data payload bytes accepted by {@link #matches(byte[])}
+     * @return {@code true} if the body is compressed
+     */
+    public static boolean isCompressed(byte[] data) {
+        return (data[3] & FLAG_DEFLATE) != 0;
+    }
+
+    /**
+     * Encodes slot payloads.
+     *
+     * @param slots      item bytes per slot ({@code null} for empty slots)
+     * @param itemFormat tag describing the item encoding, returned unchanged by {@link #decode(byte[])}
+     * @return encoded container
+     */
+    public byte[] encode(byte[][] slots, int itemFormat) {
+        Output body = SCRATCH.poll();
+        if (body == null) body = new Output(4096);
+        try {
+            return encode(slots, itemFormat, body);
+        } finally {
+            body.reset();
+            if (body.buffer().length <= MAX_POOLED_SCRATCH) SCRATCH.offer(body);
+        }
+    }
+
+    /**
+     * Encodes slot payloads, building the body in a borrowed scratch buffer.
+     *
+     * @param slots      item bytes per slot ({@code null} for empty slots)
+     * @param itemFormat tag describing the item encoding
+     * @param body       empty scratch buffer
+     * @return encoded container
+     */
+    private byte[] encode(byte[][] slots, int itemFormat, Output body) {
+        body.writeVarInt(slots.length);
+        int bitmapStart = body.size();
+        body.skip((slots.length + 7) / 8);
+        for (int slot = 0; slot < slots.length; slot++) {
+            byte[] item = slots[slot];
+            if (item == null) continue;
+            body.buffer()[bitmapStart + (slot >>> 3)] |= (byte) (1 << (slot & 7));
+            body.writeVarInt(item.length);
+            body.write(item, 0, item.length);
+        }
+
+        boolean deflate = body.size() >= deflateThreshold;
+        Output out = new Output(deflate ? body.size() / 2 + 16 : body.size() + HEADER_BYTES);
+        out.write('B');
+        out.write('P');
+        out.write(VERSION);
+        out.write(deflate ? FLAG_DEFLATE : 0);
+        out.write(itemFormat);
+        if (!deflate) {
+            out.write(body.buffer(), 0, body.size());
+            return out.toByteArray();
+        }
+
+        out.writeVarInt(body.size());
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(body.buffer(), 0, body.size());
+            deflater.finish();
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+        } finally {
+            deflater.reset();
+            if (!DEFLATERS.offer(deflater)) deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a container produced by {@link #encode(byte[][], int)}.
+     *
+     * @param data encoded container
+     * @return the item format tag and slot payloads
+     * @throws IOException if the container is malformed, or claims a decompressed size no backpack
+     *                     can have before anything is allocated for it
+     */
+    public Decoded decode(byte[] data) throws IOException {
+        if (!matches(data)) throw new IOException("Not a binary backpack payload");
+        int flags = data[3];
+        int itemFormat = data[4] & 0xFF;
+
+        Input in = new Input(data, HEADER_BYTES, data.length);
+        if ((flags & FLAG_DEFLATE) != 0) {
+            int rawLength = in.readVarInt();
+            long compressed = data.length - in.position;
+            if (rawLength > MAX_RAW_BYTES || rawLength > compressed * MAX_DEFLATE_RATIO) {
+                throw new IOException("Implausible decompressed size " + rawLength + " for a backpack payload of " + data.length + " bytes");
+            }
+            byte[] raw = new byte[rawLength];
+            Inflater inflater = INFLATERS.poll();
+            if (inflater == null) inflater = new Inflater();
+            inflater.setInput(data, in.position, data.length - in.position);
+            try {
+                int read = 0;
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(raw, read, rawLength - read);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary() || read == rawLength)) break;
+                    read += n;
+                }
+                if (read != rawLength || !inflater.finished()) throw new IOException("Truncated compressed backpack payload");
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt compressed backpack payload", e);
+            } finally {
+                inflater.reset();
+                if (!INFLATERS.offer(inflater)) inflater.end();
+            }
+            in = new Input(raw, 0, raw.length);
+        }
+
+        int slotCount = in.readVarInt();
+        int bitmapStart = in.position;
+        in.skip((slotCount + 7) / 8);
+        byte[][] slots = new byte[slotCount][];
+        for (int slot = 0; slot < slotCount; slot++) {
+            if ((in.data[bitmapStart + (slot >>> 3)] & (1 << (slot & 7))) == 0) continue;
+            slots[slot] = in.readBytes(in.readVarInt());
+        }
+        return new Decoded(itemFormat, slots);
+    }
+
+    /**
+     * Result of {@link #decode(byte[])}.
+     *
+     * @param itemFormat tag describing the item encoding
+     * @param slots      item bytes per slot ({@code null} for empty slots)
+     */
+    public record Decoded(int itemFormat, byte[][] slots) {}
+
+    /**
+     * Growable byte buffer with varint support and direct access to its backing array.
+     */
+    private static final class Output extends ByteArrayOutputStream {
+
+        /**
+         * @param capacity initial capacity
+         */
+        private Output(int capacity) {
+            super(capacity);
+        }
+
+        /**
+         * @return backing array (valid up to {@link #size()})
+         */
+        private byte[] buffer() {
+            return buf;
+        }
+
+        /**
+         * Appends {@code n} zero bytes.
+         *
+         * @param n number of bytes
+         */
+        private void skip(int n) {
+            for (int i = 0; i < n; i++) write(0);
+        }
+
+        /**
+         * Appends an unsigned LEB128 varint.
+         *
+         * @param value non-negative value
+         */
+        private void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+    }
+
+    /**
+     * Bounds-checked cursor over a byte array.
+     */
+    private static final class Input {
+
+        /** Source bytes. */
+        private final byte[] data;
+
+        /** Exclusive end of readable bytes. */
+        private final int limit;
+
+        /** Next read offset. */
+        private int position;
+
+        /**
+         * @param data     source bytes
+         * @param position first readable offset
+         * @param limit    exclusive end
+         */
+        private Input(byte[] data, int position, int limit) {
+            this.data = data;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        /**
+         * @return the next unsigned LEB128 varint
+         * @throws IOException if the varint is truncated or too long
+         */
+        private int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (position >= limit) throw new IOException("Truncated backpack payload");
+                int b = data[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) throw new IOException("Negative length in backpack payload");
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in backpack payload");
+        }
+
+        /**
+         * @param n bytes to skip
+         * @throws IOException if fewer than {@code n} bytes remain
+         */
+        private void skip(int n) throws IOException {
+            if (limit - position < n) throw new IOException("Truncated backpack payload");
+            position += n;
+        }
+
+        /**
+         * @param n bytes to read
+         * @return a copy of the next {@code n} bytes
+         * @throws IOException if fewer than {@code n} bytes remain
+         */
+        private byte[] readBytes(int n) throws IOException {
+            if (limit - position < n) throw new IOException("Truncated backpack payload");
+            byte[] out = new byte[n];
+            System.arraycopy(data, position, out, 0, n);
+            position += n;
+            return out;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package io.github.mcengine.common.backpack.core.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Slot-level delta record applied on top of a full backpack payload.
+ *
+ * <p>Layout:</p>
+ * <pre>
+ * byte[2]  magic 'B' 'D'
+ * byte     version (1)
+ * byte     item format tag (as in {@link BackPackBinaryFormat})
+ * long     base stamp ({@link #baseStampOf(byte[])} of the full payload this delta builds on)
+ * varint   slot count of the backpack
+ * varint   number of changed slots
+ * per changed slot, in ascending order:
+ *   varint slot index
+ *   varint item length (0 = slot is now empty)
+ *   byte[] item bytes
+ * </pre>
+ *
+ * <p>A delta names the full payload it was written against, so a reader can drop deltas left
+ * behind by a full save that replaced the base (e.g. after a crash between the two writes).</p>
+ */
+public final class BackPackDeltaFormat {
+
+    /** Current format version. */
+    public static final int VERSION = 1;
+
+    /** Fixed header size in bytes (magic, version, item format, base stamp). */
+    private static final int HEADER_BYTES = 12;
+
+    /** Utility class; not instantiable. */
+    private BackPackDeltaFormat() {}
+
+    /**
+     * Computes the stamp that ties deltas to a full payload: its length and CRC32.
+     *
+     * @param base full payload
+     * @return the stamp
+     */
+    public static long baseStampOf(byte[] base) {
+        CRC32 crc = new CRC32();
+        crc.update(base);
+        return ((long) base.length << 32) | crc.getValue();
+    }
+
+    /**
+     * Checks whether bytes hold a delta record of a supported version.
+     *
+     * @param data record bytes
+     * @return {@code true} if the magic and a supported version are present
+     */
+    public static boolean matches(byte[] data) {
+        return data.length >= HEADER_BYTES && data[0] == 'B' && data[1] == 'D' && data[2] >= 1 && data[2] <= VERSION;
+    }
+
+    /**
+     * Encodes a delta.
+     *
+     * @param baseStamp  stamp of the full payload the delta applies to
+     * @param itemFormat item format tag of {@code items}
+     * @param slotCount  slot count of the backpack
+     * @param slots      changed slot indexes, ascending
+     * @param items      item bytes per changed slot ({@code null} for a slot that is now empty)
+     * @return encoded delta
+     */
+    public static byte[] encode(long baseStamp, int itemFormat, int slotCount, int[] slots, byte[][] items) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_BYTES + 16 + slots.length * 64);
+        out.write('B');
+        out.write('D');
+        out.write(VERSION);
+        out.write(itemFormat);
+        for (int shift = 56; shift >= 0; shift -= 8) out.write((int) (baseStamp >>> shift));
+        writeVarInt(out, slotCount);
+        writeVarInt(out, slots.length);
+        for (int i = 0; i < slots.length; i++) {
+            writeVarInt(out, slots[i]);
+            byte[] item = items[i];
+            writeVarInt(out, item == null ? 0 : item.length);
+            if (item != null) out.write(item, 0, item.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a delta produced by {@link #encode}.
+     *
+     * @param data encoded delta
+     * @return the decoded delta
+     * @throws IOException if the record is malformed
+     */
+    public static Delta decode(byte[] data) throws IOException {
+        if (!matches(data)) throw new IOException("Not a backpack delta record");
+        long baseStamp = 0L;
+        for (int i = 4; i < HEADER_BYTES; i++) baseStamp = (baseStamp << 8) | (data[i] & 0xFF);
+
+        int[] position = {HEADER_BYTES};
+        int slotCount = readVarInt(data, position);
+        int changed = readVarInt(data, position);
+        if (changed > slotCount) throw new IOException("Malformed backpack delta record");
+        int[] slots = new int[changed];
+        byte[][] items = new byte[changed][];
+        for (int i = 0; i < changed; i++) {
+            slots[i] = readVarInt(data, position);
+            int length = readVarInt(data, position);
+            if (slots[i] >= slotCount || length > data.length - position[0]) throw new IOException("Malformed backpack delta record");
+            if (length == 0) continue;
+            items[i] = new byte[length];
+            System.arraycopy(data, position[0], items[i], 0, length);
+            position[0] += length;
+        }
+        return new Delta(baseStamp, data[3] & 0xFF, slotCount, slots, items);
+    }
+
+    /**
+     * Folds delta records onto a full payload, without decoding any item.
+     *
+     * <p>Deltas written against a different full payload (left over from a replaced base) are
+     * skipped. A delta that shrinks the backpack clears the slots it drops, so growing it again
+     * later does not bring back the base's items. A slot changed by several deltas keeps only the
+     * last change, so callers decode it once.</p>
+     *
+     * @param baseStamp {@link #baseStampOf(byte[])} of the full payload
+     * @param slotCount slot count of the full payload
+     * @param deltas    delta records, oldest first
+     * @return the final slot count and the slots replaced by the deltas
+     * @throws IOException if a delta is corrupt
+     */
+    public static Folded fold(long baseStamp, int slotCount, List<byte[]> deltas) throws IOException {
+        int count = slotCount;
+        BitSet replaced = new BitSet();
+        int[] itemFormats = new int[slotCount];
+        byte[][] items = new byte[slotCount][];
+        for (byte[] record : deltas) {
+            Delta delta = decode(record);
+            if (delta.baseStamp() != baseStamp) continue;
+            if (delta.slotCount() > items.length) {
+                itemFormats = Arrays.copyOf(itemFormats, delta.slotCount());
+                items = Arrays.copyOf(items, delta.slotCount());
+            }
+            for (int slot = delta.slotCount(); slot < count; slot++) {
+                replaced.set(slot);
+                items[slot] = null;
+            }
+            count = delta.slotCount();
+            for (int i = 0; i < delta.slots().length; i++) {
+                int slot = delta.slots()[i];
+                replaced.set(slot);
+                itemFormats[slot] = delta.itemFormat();
+                items[slot] = delta.items()[i];
+            }
+        }
+        replaced.clear(count, Math.max(count, replaced.length()));
+        return new Folded(count, replaced, itemFormats, items);
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint.
+     *
+     * @param out   target
+     * @param value non-negative value
+     */
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     *
+     * @param data     source bytes
+     * @param position single-element cursor, advanced past the varint
+     * @return the value
+     * @throws IOException if the varint is truncated or too long
+     */
+    private static int readVarInt(byte[] data, int[] position) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position[0] >= data.length) throw new IOException("Truncated backpack delta record");
+            int b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint in backpack delta record");
+    }
+
+    /**
+     * Result of {@link #decode(byte[])}.
+     *
+     * @param baseStamp  stamp of the full payload the delta applies to
+     * @param itemFormat item format tag of {@code items}
+     * @param slotCount  slot count of the backpack
+     * @param slots      changed slot indexes
+     * @param items      item bytes per changed slot ({@code null} for a slot that is now empty)
+     */
+    public record Delta(long baseStamp, int itemFormat, int slotCount, int[] slots, byte[][] items) {}
+
+    /**
+     * Result of {@link #fold(long, int, List)}.
+     *
+     * @param slotCount   slot count after the last applicable delta
+     * @param replaced    slots whose content comes from a delta rather than the full payload
+     * @param itemFormats item format tag per replaced slot
+     * @param items       item bytes per replaced slot ({@code null} for a slot that is now empty)
+     */
+    public record Folded(int slotCount, BitSet replaced, int[] itemFormats, byte[][] items) {}
+}
@@ -0,0 +1,141 @@
+package io.github.mcengine.common.backpack.core.io;
+
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor for blocking storage operations (loads and saves against files or databases).
+ *
+ * <p>Every operation runs on its own virtual thread, so thousands of concurrent loads at login
+ * do not tie up platform threads. A fair semaphore bounds how many operations touch storage at
+ * once (file handles, connections); operations over the limit park cheaply until a permit frees up.</p>
+ *
+ * <p>Reports to {@link BackPackMetrics}: {@link BackPackMetrics#STORAGE_QUEUE_DEPTH} and
+ * {@link BackPackMetrics#STORAGE_ACTIVE} gauges, {@link BackPackMetrics#STORAGE_WAIT} and
+ * {@link BackPackMetrics#STORAGE_LATENCY} timers, and {@link BackPackMetrics#STORAGE_FAILED}.</p>
+ */
+public final class BackPackStorageExecutor implements Executor, AutoCloseable {
+
+    /** One virtual thread per operation. */
+    private final ExecutorService threads;
+
+    /** Bounds the number of operations running against storage. */
+    private final Semaphore permits;
+
+    /** Shared metrics. */
+    private final BackPackMetrics metrics;
+
+    /** Operations waiting for a permit. */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /** Operations holding a permit. */
+    private final AtomicInteger active = new AtomicInteger();
+
+    /**
+     * Creates a storage executor.
+     *
+     * @param name          thread name prefix
+     * @param maxConcurrent maximum number of operations running at once
+     * @param metrics       shared metrics
+     */
+    public BackPackStorageExecutor(String name, int maxConcurrent, BackPackMetrics metrics) {
+        this.threads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+        this.permits = new Semaphore(Math.max(1, maxConcurrent), true);
+        this.metrics = metrics;
+        metrics.registerGauge(BackPackMetrics.STORAGE_QUEUE_DEPTH, waiting::get);
+        metrics.registerGauge(BackPackMetrics.STORAGE_ACTIVE, active::get);
+    }
+
+    /**
+     * Runs a storage operation once a permit is available.
+     *
+     * @param task the operation
+     * @throws RejectedExecutionException if the executor is closed
+     */
+    @Override
+    public void execute(Runnable task) {
+        long queuedAt = System.nanoTime();
+        waiting.incrementAndGet();
+        try {
+            threads.execute(() -> run(task, queuedAt));
+        } catch (RejectedExecutionException e) {
+            waiting.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a storage operation and returns its result.
+     *
+     * @param task the operation
+     * @param <T>  result type
+     * @return future completed with the result, or exceptionally with the thrown exception
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Exception e) {
+                metrics.increment(BackPackMetrics.STORAGE_FAILED);
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Waits for a permit, runs the task, and records wait and run time.
+     *
+     * @param task     the operation
+     * @param queuedAt {@link System#nanoTime()} at submission
+     */
+    private void run(Runnable task, long queuedAt) {
+        permits.acquireUninterruptibly();
+        waiting.decrementAndGet();
+        active.incrementAndGet();
+        long startedAt = System.nanoTime();
+        metrics.recordTime(BackPackMetrics.STORAGE_WAIT, startedAt - queuedAt);
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            metrics.increment(BackPackMetrics.STORAGE_FAILED);
+            throw e;
+        } finally {
+            metrics.recordTime(BackPackMetrics.STORAGE_LATENCY, System.nanoTime() - startedAt);
+            active.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    /**
+     * @return number of operations waiting for a permit
+     */
+    public int queueDepth() {
+        return waiting.get();
+    }
+
+    /**
+     * Stops accepting operations and waits up to 30 seconds for queued and running ones to finish.
+     * Remaining operations are interrupted.
+     */
+    @Override
+    public void close() {
+        threads.shutdown();
+        try {
+            if (!threads.awaitTermination(30, TimeUnit.SECONDS)) threads.shutdownNow();
+        } catch (InterruptedException e) {
+            threads.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
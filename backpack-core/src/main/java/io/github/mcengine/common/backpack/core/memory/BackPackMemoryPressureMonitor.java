@@ -0,0 +1,219 @@
+package io.github.mcengine.common.backpack.core.memory;
+
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Sheds backpack caches when the long-lived heap pool runs close to its limit.
+ *
+ * <p>A usage threshold is set on every heap {@link MemoryPoolMXBean} that supports one (in practice
+ * the old/tenured generation), at {@code thresholdRatio} of the pool maximum. When the JVM reports
+ * the threshold as exceeded, every registered {@link BackPackSheddable} drops a share of its
+ * coldest entries. Pressure is then re-checked every few seconds: while usage stays above the
+ * threshold the share grows in steps ({@value #STEP_1}, {@value #STEP_2}, then everything), and
+ * once usage falls back below the threshold the monitor disarms until the next notification.</p>
+ *
+ * <p>Usage thresholds are JVM-wide, one per pool. A pool that already has one (set by the server,
+ * another plugin, or a monitoring agent) is left alone and not watched, and notifications from
+ * pools this monitor did not arm are ignored. {@link #close()} clears only the thresholds it still
+ * owns.</p>
+ *
+ * <p>Reports {@link BackPackMetrics#MEMORY_PRESSURE_EVENTS}, {@link BackPackMetrics#MEMORY_SHED_ENTRIES},
+ * and the {@link BackPackMetrics#MEMORY_PRESSURE_LEVEL} gauge (0 = no pressure, 1–3 = shedding step).</p>
+ */
+public final class BackPackMemoryPressureMonitor implements AutoCloseable {
+
+    /** Share of entries shed at the first step. */
+    private static final double STEP_1 = 0.25;
+
+    /** Share of entries shed at the second step. */
+    private static final double STEP_2 = 0.5;
+
+    /** Seconds between re-checks while under pressure. */
+    private static final long RECHECK_SECONDS = 5L;
+
+    /** Logger of the owning plugin. */
+    private final Logger logger;
+
+    /** Shared metrics. */
+    private final BackPackMetrics metrics;
+
+    /** Pools with a usage threshold set by this monitor, mapped to that threshold. */
+    private final Map<MemoryPoolMXBean, Long> pools = new LinkedHashMap<>();
+
+    /** Registered caches. */
+    private final List<BackPackSheddable> sheddables = new CopyOnWriteArrayList<>();
+
+    /** Daemon thread running re-checks. */
+    private final ScheduledExecutorService rechecker;
+
+    /** Listener receiving threshold notifications. */
+    private final NotificationListener listener = this::onNotification;
+
+    /** Current shedding step (0 = no pressure). */
+    private int level;
+
+    /** Pending re-check while under pressure, or {@code null}. */
+    private ScheduledFuture<?> recheck;
+
+    /**
+     * Creates a monitor and arms the usage thresholds.
+     *
+     * @param thresholdRatio share of each pool's maximum at which shedding starts, e.g. {@code 0.85}
+     * @param metrics        shared metrics
+     * @param logger         logger for pressure events
+     */
+    public BackPackMemoryPressureMonitor(double thresholdRatio, BackPackMetrics metrics, Logger logger) {
+        this.metrics = metrics;
+        this.logger = logger;
+        this.rechecker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "backpack-memory-pressure");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isUsageThresholdSupported()) continue;
+            long max = pool.getUsage().getMax();
+            if (max <= 0) continue;
+            if (pool.getUsageThreshold() > 0) {
+                logger.info("Heap pool '" + pool.getName() + "' already has a usage threshold; backpack caches will not watch it.");
+                continue;
+            }
+            long threshold = Math.max(1L, (long) (max * thresholdRatio));
+            pool.setUsageThreshold(threshold);
+            pools.put(pool, threshold);
+        }
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(listener, null, null);
+        metrics.registerGauge(BackPackMetrics.MEMORY_PRESSURE_LEVEL, this::level);
+    }
+
+    /**
+     * Registers a cache to shed under pressure.
+     *
+     * @param sheddable the cache
+     */
+    public void register(BackPackSheddable sheddable) {
+        sheddables.add(sheddable);
+    }
+
+    /**
+     * @return current shedding step (0 = no pressure)
+     */
+    public synchronized int level() {
+        return level;
+    }
+
+    /**
+     * @return {@code true} if at least one pool is being watched
+     */
+    public boolean isArmed() {
+        return !pools.isEmpty();
+    }
+
+    /**
+     * Handles a JMX memory notification.
+     *
+     * @param notification the notification
+     * @param handback     unused
+     */
+    private void onNotification(Notification notification, Object handback) {
+        if (!MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(notification.getType())) return;
+        if (!(notification.getUserData() instanceof CompositeData data) || !isWatched(MemoryNotificationInfo.from(data).getPoolName())) return;
+        metrics.increment(BackPackMetrics.MEMORY_PRESSURE_EVENTS);
+        synchronized (this) {
+            if (level > 0) return; // Already shedding; the re-check escalates
+        }
+        step();
+    }
+
+    /**
+     * @param poolName name of a memory pool
+     * @return {@code true} if this monitor armed the pool
+     */
+    private boolean isWatched(String poolName) {
+        for (MemoryPoolMXBean pool : pools.keySet()) {
+            if (pool.getName().equals(poolName)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sheds the next step if the heap is still above the threshold, otherwise disarms.
+     */
+    private void step() {
+        double fraction;
+        synchronized (this) {
+            if (level > 0 && !aboveThreshold()) {
+                level = 0;
+                recheck = null;
+                logger.info("Heap pressure relieved; backpack cache shedding stopped.");
+                return;
+            }
+            level = Math.min(level + 1, 3);
+            fraction = switch (level) {
+                case 1 -> STEP_1;
+                case 2 -> STEP_2;
+                default -> 1.0;
+            };
+            recheck = rechecker.schedule(this::step, RECHECK_SECONDS, TimeUnit.SECONDS);
+        }
+
+        int shed = 0;
+        for (BackPackSheddable sheddable : sheddables) {
+            shed += sheddable.shed(fraction);
+        }
+        metrics.add(BackPackMetrics.MEMORY_SHED_ENTRIES, shed);
+        logger.warning("Heap pressure: shed " + shed + " cached backpack entries (" + (int) (fraction * 100) + "%).");
+    }
+
+    /**
+     * @return {@code true} if any watched pool is above its usage threshold
+     */
+    private boolean aboveThreshold() {
+        for (MemoryPoolMXBean pool : pools.keySet()) {
+            MemoryUsage usage = pool.getUsage();
+            if (usage.getUsed() >= pool.getUsageThreshold()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stops listening, clears the thresholds set by this monitor, and stops re-checks. A threshold
+     * changed by someone else since it was armed is kept.
+     */
+    @Override
+    public void close() {
+        try {
+            ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(listener);
+        } catch (ListenerNotFoundException ignored) {
+            // Already removed
+        }
+        for (Map.Entry<MemoryPoolMXBean, Long> armed : pools.entrySet()) {
+            if (armed.getKey().getUsageThreshold() == armed.getValue()) armed.getKey().setUsageThreshold(0L);
+        }
+        synchronized (this) {
+            if (recheck != null) recheck.cancel(false);
+        }
+        rechecker.shutdownNow();
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.mcengine.common.backpack.core.memory;
+
+/**
+ * A cache that can give memory back under heap pressure.
+ */
+public interface BackPackSheddable {
+
+    /**
+     * Drops a share of the coldest entries.
+     *
+     * @param fraction share of the current entries to drop, {@code 0 < fraction <= 1}
+     * @return number of entries dropped
+     */
+    int shed(double fraction);
+}
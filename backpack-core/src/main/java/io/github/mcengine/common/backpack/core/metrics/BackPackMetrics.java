@@ -0,0 +1,221 @@
+package io.github.mcengine.common.backpack.core.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Lightweight named counters, timers, and gauges shared by all backpack components.
+ *
+ * <p>Counters are created on first use and are safe to update from any thread. Timers are a pair
+ * of counters (event count and total nanoseconds). Gauges are sampled on read from a supplier
+ * registered by the owning component.
+ * A single instance is registered in the common service registry so every component
+ * reports into the same set.</p>
+ */
+public final class BackPackMetrics {
+
+    /** Number of backpack closes that persisted contents. */
+    public static final String SAVES_WRITTEN = "save.written";
+
+    /** Number of backpack closes whose save was skipped because nothing changed. */
+    public static final String SAVES_SKIPPED = "save.skipped";
+
+    /** Number of saves handed to the write-behind queue. */
+    public static final String SAVES_QUEUED = "save.queued";
+
+    /** Number of queued saves replaced by a newer save of the same backpack before being written. */
+    public static final String SAVES_COALESCED = "save.coalesced";
+
+    /** Number of saves written to the store as slot-level deltas. */
+    public static final String SAVES_DELTA = "save.delta";
+
+    /** Number of payload bytes written by saves (full payloads and deltas). */
+    public static final String SAVE_BYTES = "save.bytes";
+
+    /** Gauge: number of saves currently waiting in the write-behind queue. */
+    public static final String SAVE_QUEUE_DEPTH = "save.queue.depth";
+
+    /** Gauge: number of storage operations waiting for a concurrency permit. */
+    public static final String STORAGE_QUEUE_DEPTH = "storage.queue.depth";
+
+    /** Gauge: number of storage operations currently running. */
+    public static final String STORAGE_ACTIVE = "storage.active";
+
+    /** Number of storage operations that failed. */
+    public static final String STORAGE_FAILED = "storage.failed";
+
+    /** Timer: time storage operations spent waiting for a permit. */
+    public static final String STORAGE_WAIT = "storage.wait";
+
+    /** Timer: time storage operations spent running. */
+    public static final String STORAGE_LATENCY = "storage.latency";
+
+    /** Number of backpacks decoded ahead of time by the join prefetcher. */
+    public static final String PREFETCH_LOADED = "prefetch.loaded";
+
+    /** Number of opens served from the warm cache. */
+    public static final String PREFETCH_HITS = "prefetch.hit";
+
+    /** Number of opens that found no usable warm-cache entry. */
+    public static final String PREFETCH_MISSES = "prefetch.miss";
+
+    /** Gauge: number of players waiting to be prefetched. */
+    public static final String PREFETCH_QUEUE_DEPTH = "prefetch.queue.depth";
+
+    /** Gauge: number of warm-cache entries (loaded or loading). */
+    public static final String PREFETCH_CACHED = "prefetch.cached";
+
+    /** Number of opens served from the decoded-snapshot cache. */
+    public static final String SNAPSHOT_CACHE_HITS = "cache.snapshot.hit";
+
+    /** Number of opens that missed the decoded-snapshot cache. */
+    public static final String SNAPSHOT_CACHE_MISSES = "cache.snapshot.miss";
+
+    /** Number of snapshots evicted to make room for more popular ones. */
+    public static final String SNAPSHOT_CACHE_EVICTIONS = "cache.snapshot.eviction";
+
+    /** Number of snapshots refused by the admission filter or for exceeding the budget. */
+    public static final String SNAPSHOT_CACHE_REJECTED = "cache.snapshot.rejected";
+
+    /** Gauge: encoded bytes held by the decoded-snapshot cache. */
+    public static final String SNAPSHOT_CACHE_BYTES = "cache.snapshot.bytes";
+
+    /** Gauge: number of entries in the decoded-snapshot cache. */
+    public static final String SNAPSHOT_CACHE_ENTRIES = "cache.snapshot.entries";
+
+    /** Number of loads served from the off-heap payload tier. */
+    public static final String OFFHEAP_HITS = "cache.offheap.hit";
+
+    /** Number of loads that missed the off-heap payload tier. */
+    public static final String OFFHEAP_MISSES = "cache.offheap.miss";
+
+    /** Number of payloads evicted from the off-heap tier to make room. */
+    public static final String OFFHEAP_EVICTIONS = "cache.offheap.eviction";
+
+    /** Gauge: payload bytes held off-heap. */
+    public static final String OFFHEAP_BYTES = "cache.offheap.bytes";
+
+    /** Gauge: direct memory allocated for off-heap slabs. */
+    public static final String OFFHEAP_RESERVED = "cache.offheap.reserved";
+
+    /** Gauge: number of payloads held off-heap. */
+    public static final String OFFHEAP_ENTRIES = "cache.offheap.entries";
+
+    /** Number of heap usage-threshold notifications received. */
+    public static final String MEMORY_PRESSURE_EVENTS = "memory.pressure.events";
+
+    /** Number of cache entries dropped under heap pressure. */
+    public static final String MEMORY_SHED_ENTRIES = "memory.shed.entries";
+
+    /** Gauge: current heap-pressure shedding step (0 = none). */
+    public static final String MEMORY_PRESSURE_LEVEL = "memory.pressure.level";
+
+    /** Number of write transactions committed by the JDBC store. */
+    public static final String JDBC_BATCHES = "storage.jdbc.batches";
+
+    /** Number of rows written by the JDBC store. */
+    public static final String JDBC_ROWS = "storage.jdbc.rows";
+
+    /** Number of store writes rejected because the stored version changed underneath. */
+    public static final String STORAGE_CONFLICTS = "storage.conflicts";
+
+    /** Number of conflicting saves written again after merging their changed slots into the newer record. */
+    public static final String STORAGE_CONFLICTS_MERGED = "storage.conflicts.merged";
+
+    /** Number of opens of a backpack already held by another viewer. */
+    public static final String OPENS_CONTENDED = "open.contended";
+
+    /** Number of contended opens that joined the holder's live inventory. */
+    public static final String OPENS_SHARED = "open.shared";
+
+    /** Gauge: number of backpack leases held. */
+    public static final String LOCKS_HELD = "lock.held";
+
+    /** Gauge: number of player-bound backpacks loaded for online players. */
+    public static final String PERSONAL_LOADED = "personal.loaded";
+
+    /** Counters keyed by metric name. */
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /** Gauges keyed by metric name. */
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Increments a counter by one.
+     *
+     * @param name metric name
+     */
+    public void increment(String name) {
+        counter(name).increment();
+    }
+
+    /**
+     * Adds a delta to a counter.
+     *
+     * @param name  metric name
+     * @param delta amount to add
+     */
+    public void add(String name, long delta) {
+        counter(name).add(delta);
+    }
+
+    /**
+     * Records one timed event: increments {@code <name>.count} and adds the duration to {@code <name>.nanos}.
+     * The mean is {@code nanos / count}.
+     *
+     * @param name  timer name
+     * @param nanos duration in nanoseconds
+     */
+    public void recordTime(String name, long nanos) {
+        counter(name + ".count").increment();
+        counter(name + ".nanos").add(nanos);
+    }
+
+    /**
+     * Registers (or replaces) a gauge sampled on every read.
+     *
+     * @param name    metric name
+     * @param sampler supplier of the current value
+     */
+    public void registerGauge(String name, LongSupplier sampler) {
+        gauges.put(name, sampler);
+    }
+
+    /**
+     * Reads the current value of a counter or gauge.
+     *
+     * @param name metric name
+     * @return the value, or {@code 0} if the metric is unknown
+     */
+    public long get(String name) {
+        LongSupplier gauge = gauges.get(name);
+        if (gauge != null) return gauge.getAsLong();
+        LongAdder adder = counters.get(name);
+        return adder == null ? 0L : adder.sum();
+    }
+
+    /**
+     * Returns a point-in-time copy of every counter and gauge, sorted by name.
+     *
+     * @return metric name to value
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> out = new TreeMap<>();
+        counters.forEach((name, adder) -> out.put(name, adder.sum()));
+        gauges.forEach((name, sampler) -> out.put(name, sampler.getAsLong()));
+        return out;
+    }
+
+    /**
+     * Resolves (creating if absent) the adder for a metric.
+     *
+     * @param name metric name
+     * @return the adder
+     */
+    private LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+}
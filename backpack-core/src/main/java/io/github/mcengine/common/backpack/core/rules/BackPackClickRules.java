@@ -0,0 +1,79 @@
+package io.github.mcengine.common.backpack.core.rules;
+
+/**
+ * Nesting rules for inventory clicks, evaluated from a compact {@code int} flag set.
+ *
+ * <p>Platform adapters reduce a click to these flags (reading each item at most once) and call
+ * {@link #shouldCancel(int)}; the rules themselves need no server.</p>
+ */
+public final class BackPackClickRules {
+
+    /** The clicking player currently has a tracked backpack GUI open. */
+    public static final int SESSION = 1;
+
+    /** The clicked inventory is the top inventory of the view. */
+    public static final int CLICKED_TOP = 1 << 1;
+
+    /** The raw slot index falls below the top inventory size. */
+    public static final int RAW_IN_TOP = 1 << 2;
+
+    /** The click is a shift-click. */
+    public static final int SHIFT = 1 << 3;
+
+    /** The click is a number-key hotbar swap (1–9). */
+    public static final int NUMBER_KEY = 1 << 4;
+
+    /** The action moves the item to the other inventory. */
+    public static final int MOVE_TO_OTHER = 1 << 5;
+
+    /** The cursor holds a backpack item. */
+    public static final int CURSOR_BACKPACK = 1 << 6;
+
+    /** The clicked slot holds a backpack item. */
+    public static final int CURRENT_BACKPACK = 1 << 7;
+
+    /** The hotbar slot targeted by a number-key swap holds a backpack item. */
+    public static final int HOTBAR_BACKPACK = 1 << 8;
+
+    /** Utility class; not instantiable. */
+    private BackPackClickRules() {}
+
+    /**
+     * Evaluates the nesting rules and the hard guard against a flag set.
+     *
+     * <p>Session rules:</p>
+     * <ol>
+     *   <li>Cursor backpack placed into the top.</li>
+     *   <li>Shift-click of a backpack.</li>
+     *   <li>Number-key swap bringing a backpack in from the hotbar.</li>
+     *   <li>Move-to-other-inventory of a backpack.</li>
+     *   <li>Taking a backpack out of the top.</li>
+     * </ol>
+     * <p>Hard guard (regardless of session): a top-inventory click with a backpack on the
+     * cursor or in the clicked slot.</p>
+     *
+     * @param flags flag set describing the click
+     * @return {@code true} if the click must be cancelled
+     */
+    public static boolean shouldCancel(int flags) {
+        if ((flags & SESSION) != 0) {
+            if (has(flags, CURSOR_BACKPACK | RAW_IN_TOP)) return true;
+            if (has(flags, SHIFT | CURRENT_BACKPACK)) return true;
+            if (has(flags, NUMBER_KEY | HOTBAR_BACKPACK)) return true;
+            if (has(flags, MOVE_TO_OTHER | CURRENT_BACKPACK)) return true;
+            if (has(flags, CLICKED_TOP | CURRENT_BACKPACK)) return true;
+        }
+        return (flags & CLICKED_TOP) != 0 && (flags & (CURSOR_BACKPACK | CURRENT_BACKPACK)) != 0;
+    }
+
+    /**
+     * Tests whether all bits of {@code mask} are set in {@code flags}.
+     *
+     * @param flags flag set
+     * @param mask  required bits
+     * @return {@code true} if every bit in {@code mask} is present
+     */
+    private static boolean has(int flags, int mask) {
+        return (flags & mask) == mask;
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.mcengine.common.backpack.core.scheduler;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Hands the result of asynchronous work to the thread owning its consumer, e.g. a player's region.
+ *
+ * <p>A plain {@link Executor} cannot report that its thread went away: on
+ * Folia a task scheduled on a removed entity is simply dropped, which would leave a dependent
+ * future incomplete forever, and with it every lease or session waiting on it. A {@link Target}
+ * runs a second callback instead when the task can no longer run; the hand-off then passes the
+ * result to a discard callback, so it can be released, and fails the returned future with a
+ * {@link CancellationException}.</p>
+ */
+public final class BackPackHandOff {
+
+    private BackPackHandOff() {
+    }
+
+    /**
+     * Thread a hand-off completes on.
+     */
+    @FunctionalInterface
+    public interface Target {
+
+        /**
+         * Runs a task on the target's thread, or {@code retired} instead if the target is gone
+         * before the task runs. Exactly one of the two is run.
+         *
+         * @param task    the task
+         * @param retired run instead of {@code task} if the target is gone
+         */
+        void execute(Runnable task, Runnable retired);
+
+        /**
+         * Wraps an executor whose thread never goes away (e.g. the global thread).
+         *
+         * @param executor the executor
+         * @return target running every task on {@code executor}
+         */
+        static Target of(Executor executor) {
+            return (task, retired) -> executor.execute(task);
+        }
+    }
+
+    /**
+     * Completes a future on a target's thread once a source completes.
+     *
+     * @param source  the asynchronous work
+     * @param target  thread the returned future completes on
+     * @param discard receives the source's result if the target is gone before it is handed over;
+     *                may be {@code null}
+     * @param <T>     result type
+     * @return future completed on {@code target} like {@code source}, or failed with a
+     *         {@link CancellationException} (on whichever thread noticed) if the target is gone
+     */
+    public static <T> CompletableFuture<T> handOff(CompletableFuture<? extends T> source, Target target,
+                                                   Consumer<? super T> discard) {
+        CompletableFuture<T> handed = new CompletableFuture<>();
+        source.whenComplete((value, error) -> {
+            Runnable retired = () -> {
+                if (error != null) {
+                    handed.completeExceptionally(error);
+                    return;
+                }
+                try {
+                    if (discard != null) discard.accept(value);
+                } finally {
+                    handed.completeExceptionally(new CancellationException("The hand-off target is gone."));
+                }
+            };
+            try {
+                target.execute(() -> {
+                    if (error != null) handed.completeExceptionally(error);
+                    else handed.complete(value);
+                }, retired);
+            } catch (RuntimeException e) {
+                // Scheduling itself failed: the task will never run
+                retired.run();
+            }
+        });
+        return handed;
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.mcengine.common.backpack.core.session;
+
+import java.util.UUID;
+
+/**
+ * Thrown when a backpack cannot be opened or saved because another viewer holds it.
+ */
+public class BackPackInUseException extends IllegalStateException {
+
+    /** Serialization id. */
+    private static final long serialVersionUID = 1L;
+
+    /** Id of the contended backpack. */
+    private final UUID backpackId;
+
+    /**
+     * @param backpackId id of the contended backpack
+     */
+    public BackPackInUseException(UUID backpackId) {
+        super("Backpack " + backpackId + " is in use");
+        this.backpackId = backpackId;
+    }
+
+    /**
+     * @return id of the contended backpack
+     */
+    public UUID getBackpackId() {
+        return backpackId;
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.mcengine.common.backpack.core.session;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Table of per-backpack leases, so one logical backpack is open in at most one place at a time.
+ *
+ * <p>Ids are spread over a fixed number of stripes, each a small map guarded by its own monitor,
+ * so unrelated backpacks never contend on the same lock and memory stays proportional to the
+ * number of leases actually held. {@link #tryAcquire(UUID, Object)} never waits: it either takes
+ * the lease or reports the current holder, and the caller decides what a contended open gets
+ * (a shared view of the holder's inventory, or an "in use" response). Critical sections are a
+ * single map operation, so calling it from the main thread is safe.</p>
+ *
+ * @param <L> lease type; compared by identity
+ */
+public final class BackPackLockTable<L> {
+
+    /** Stripes; length is a power of two. */
+    private final Map<UUID, L>[] stripes;
+
+    /**
+     * Creates a lock table.
+     *
+     * @param stripes number of stripes, rounded up to a power of two
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BackPackLockTable(int stripes) {
+        int count = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new Map[count];
+        for (int i = 0; i < count; i++) this.stripes[i] = new HashMap<>();
+    }
+
+    /**
+     * Takes the lease of a backpack if nobody holds it.
+     *
+     * @param backpackId stable backpack id
+     * @param lease      lease to install
+     * @return {@code null} if {@code lease} now holds the backpack; otherwise the current holder
+     */
+    public L tryAcquire(UUID backpackId, L lease) {
+        Map<UUID, L> stripe = stripe(backpackId);
+        synchronized (stripe) {
+            L holder = stripe.putIfAbsent(backpackId, lease);
+            return (holder == lease) ? null : holder;
+        }
+    }
+
+    /**
+     * @param backpackId stable backpack id
+     * @return the lease holding the backpack, or {@code null}
+     */
+    public L holder(UUID backpackId) {
+        Map<UUID, L> stripe = stripe(backpackId);
+        synchronized (stripe) {
+            return stripe.get(backpackId);
+        }
+    }
+
+    /**
+     * Releases a lease if it still holds the backpack.
+     *
+     * @param backpackId stable backpack id
+     * @param lease      lease to release
+     * @return {@code true} if the lease was released
+     */
+    public boolean release(UUID backpackId, L lease) {
+        Map<UUID, L> stripe = stripe(backpackId);
+        synchronized (stripe) {
+            return stripe.remove(backpackId, lease);
+        }
+    }
+
+    /**
+     * @return number of leases held
+     */
+    public int size() {
+        int size = 0;
+        for (Map<UUID, L> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Drops every lease.
+     */
+    public void clear() {
+        for (Map<UUID, L> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * @param backpackId stable backpack id
+     * @return the stripe owning the id
+     */
+    private Map<UUID, L> stripe(UUID backpackId) {
+        int hash = backpackId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+}
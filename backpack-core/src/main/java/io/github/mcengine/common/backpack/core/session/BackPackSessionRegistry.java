@@ -0,0 +1,118 @@
+package io.github.mcengine.common.backpack.core.session;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which player has which backpack open, and which players have an open in progress.
+ *
+ * <p>An open goes through three steps: {@link #beginOpen(UUID)} reserves the player while the
+ * contents load, {@link #finishOpen(UUID)} releases the reservation, and {@link #open(UUID, BackPackSessionState)}
+ * records the session once the GUI is shown. {@link #close(UUID)} ends the session.</p>
+ *
+ * <p>Thread-safe without a global lock: state is held in concurrent maps, and each operation
+ * touches only the entry of the player it names. Opens and closes of different players may
+ * therefore run concurrently on different region threads (Folia). Operations on the same player
+ * are expected to come from that player's owning thread.</p>
+ *
+ * @param <S> session type
+ */
+public final class BackPackSessionRegistry<S extends BackPackSessionState> {
+
+    /** Open sessions keyed by player id. */
+    private final Map<UUID, S> sessions = new ConcurrentHashMap<>();
+
+    /** Players whose backpack is still loading. */
+    private final Set<UUID> pendingOpens = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Reserves a player for an open in progress.
+     *
+     * @param player player id
+     * @return {@code false} if an open is already in progress for the player
+     */
+    public boolean beginOpen(UUID player) {
+        return pendingOpens.add(player);
+    }
+
+    /**
+     * Releases the reservation taken by {@link #beginOpen(UUID)}.
+     *
+     * @param player player id
+     */
+    public void finishOpen(UUID player) {
+        pendingOpens.remove(player);
+    }
+
+    /**
+     * Records an open session unless the player already has one.
+     *
+     * @param player  player id
+     * @param session the session
+     * @return {@code true} if the session was recorded
+     */
+    public boolean open(UUID player, S session) {
+        return sessions.putIfAbsent(player, session) == null;
+    }
+
+    /**
+     * @param player player id
+     * @return the player's open session, or {@code null}
+     */
+    public S get(UUID player) {
+        return sessions.get(player);
+    }
+
+    /**
+     * @param player player id
+     * @return {@code true} if the player has a backpack open
+     */
+    public boolean isOpen(UUID player) {
+        return sessions.containsKey(player);
+    }
+
+    /**
+     * Ends a player's session.
+     *
+     * @param player player id
+     * @return the ended session, or {@code null} if none was open
+     */
+    public S close(UUID player) {
+        return sessions.remove(player);
+    }
+
+    /**
+     * Drops all state of a player (open session and pending open), e.g. on disconnect.
+     *
+     * @param player player id
+     */
+    public void forget(UUID player) {
+        sessions.remove(player);
+        pendingOpens.remove(player);
+    }
+
+    /**
+     * @return snapshot of the players with an open session
+     */
+    public List<UUID> players() {
+        return List.copyOf(sessions.keySet());
+    }
+
+    /**
+     * Drops every session and pending open.
+     */
+    public void clear() {
+        sessions.clear();
+        pendingOpens.clear();
+    }
+
+    /**
+     * @return number of open sessions
+     */
+    public int size() {
+        return sessions.size();
+    }
+}
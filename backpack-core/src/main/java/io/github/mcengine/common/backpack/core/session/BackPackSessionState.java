@@ -0,0 +1,128 @@
+package io.github.mcengine.common.backpack.core.session;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.UUID;
+
+/**
+ * Platform-independent state of a single open backpack GUI.
+ *
+ * <p>Tracks the backpack id, the open timestamp, a content hash taken at open time, and a
+ * dirty flag raised by events that may have modified the backpack. A session that closes clean with an unchanged
+ * content hash needs no save.</p>
+ *
+ * <p>Sessions also record which slots events touched, so a close can report exactly the changed
+ * slots ({@link #changedSlots(int[])}) for a delta save.</p>
+ */
+public class BackPackSessionState {
+
+    /** Stable id of the open backpack. */
+    private final UUID backpackId;
+
+    /** Wall-clock time the session was opened, in epoch milliseconds. */
+    private final long openedAt;
+
+    /** Content hash of the backpack at open time. */
+    private final int openHash;
+
+    /** Per-slot hashes at open time. */
+    private final int[] openSlotHashes;
+
+    /** Slots touched by tracked events; guarded by {@code this}. */
+    private final BitSet touched = new BitSet();
+
+    /** Whether an event that may have modified the contents was observed. */
+    private volatile boolean dirty;
+
+    /**
+     * Creates a new clean session state that tracks changes per slot.
+     *
+     * @param backpackId     stable backpack id
+     * @param openSlotHashes hash of every slot at open time ({@code 0} for empty slots)
+     */
+    public BackPackSessionState(UUID backpackId, int[] openSlotHashes) {
+        this.backpackId = backpackId;
+        this.openSlotHashes = openSlotHashes.clone();
+        this.openHash = Arrays.hashCode(openSlotHashes);
+        this.openedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @return stable id of the open backpack
+     */
+    public UUID getBackpackId() {
+        return backpackId;
+    }
+
+    /**
+     * @return time the session was opened, in epoch milliseconds
+     */
+    public long getOpenedAt() {
+        return openedAt;
+    }
+
+    /**
+     * @return content hash taken at open time
+     */
+    public int getOpenHash() {
+        return openHash;
+    }
+
+    /**
+     * @return {@code true} if a potentially modifying event was observed
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Flags this session as modified.
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Flags this session as modified in one slot.
+     *
+     * @param slot slot index in the backpack
+     */
+    public void markSlot(int slot) {
+        synchronized (touched) {
+            touched.set(slot);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Returns the slots that must be written on close: every slot touched by a tracked event,
+     * plus every slot whose hash differs from open time (which catches changes made outside
+     * tracked events, e.g. shift-click destinations or other plugins).
+     *
+     * @param closeSlotHashes hash of every slot at close time
+     * @return changed slots, or {@code null} if the size changed (save everything)
+     */
+    public BitSet changedSlots(int[] closeSlotHashes) {
+        if (openSlotHashes.length != closeSlotHashes.length) return null;
+        BitSet changed;
+        synchronized (touched) {
+            changed = (BitSet) touched.clone();
+        }
+        for (int slot = 0; slot < closeSlotHashes.length; slot++) {
+            if (closeSlotHashes[slot] != openSlotHashes[slot]) changed.set(slot);
+        }
+        return changed;
+    }
+
+    /**
+     * Decides whether the backpack must be saved on close.
+     *
+     * <p>The hash comparison catches changes made outside tracked events (e.g. by other plugins).</p>
+     *
+     * @param closeHash content hash at close time
+     * @return {@code true} if the session is dirty or the contents changed
+     */
+    public boolean isModified(int closeHash) {
+        return dirty || closeHash != openHash;
+    }
+}
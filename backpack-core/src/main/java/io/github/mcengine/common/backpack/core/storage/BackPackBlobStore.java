@@ -0,0 +1,344 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed, reference-counted store of item blobs shared by all backpacks.
+ *
+ * <p>A blob is addressed by the first {@value #HASH_BYTES} bytes of the SHA-256 of its content
+ * and kept once, as {@code <root>/<first two hex chars>/<hash>.blob}, however many backpack
+ * slots reference it. Reference counts are kept in memory and persisted in an append-only log
+ * ({@code refs.log}, one {@code hash + int delta} record per change, forced before the call
+ * returns), which is replayed and rewritten compactly on startup.</p>
+ *
+ * <p>Crash safety relies on ordering by the caller ({@link BackPackDedupStore}): references are
+ * acquired before the record that uses them is written, and released only after the record that
+ * dropped them is written. A crash can therefore leave counts too high (a leaked blob), never too
+ * low. Blobs whose count reached zero are deleted by a background collector once they have been
+ * unreferenced for {@value #GC_GRACE_MILLIS} ms; blob files with no count at all (a crash
+ * between writing a blob and logging its reference) are collected the same way.</p>
+ *
+ * <p>Recently read blobs are kept in a small shared cache, so an item held by many backpacks is
+ * held in memory once. The store is safe for concurrent use.</p>
+ */
+public final class BackPackBlobStore implements Closeable {
+
+    /** Length of a blob address in bytes. */
+    public static final int HASH_BYTES = 16;
+
+    /** Bytes per reference log record (hash plus count delta). */
+    private static final int LOG_RECORD_BYTES = HASH_BYTES + 4;
+
+    /** Minimum time a blob stays unreferenced before it is deleted, in milliseconds. */
+    private static final long GC_GRACE_MILLIS = 60_000L;
+
+    /** Budget of the shared read cache, in bytes. */
+    private static final long READ_CACHE_BYTES = 8L * 1024 * 1024;
+
+    /** Lowercase hex codec for file names. */
+    private static final HexFormat HEX = HexFormat.of();
+
+    /** Logger used for collector reports. */
+    private final Logger logger;
+
+    /** Root directory of the blobs. */
+    private final Path root;
+
+    /** Reference count per blob (hex address); entries at zero await collection. */
+    private final Map<String, Integer> counts = new ConcurrentHashMap<>();
+
+    /** Time each unreferenced blob reached zero, in epoch milliseconds. */
+    private final Map<String, Long> unreferencedSince = new ConcurrentHashMap<>();
+
+    /** Recently read blobs in access order; guarded by itself. */
+    private final LinkedHashMap<String, byte[]> readCache = new LinkedHashMap<>(64, 0.75F, true);
+
+    /** Background collector. */
+    private final ScheduledExecutorService collector;
+
+    /** Reference log, appended under {@code this}. */
+    private FileChannel refLog;
+
+    /** Bytes held by {@link #readCache}. */
+    private long readCacheBytes;
+
+    /**
+     * Opens (creating if needed) a blob store and replays its reference log.
+     *
+     * @param root   blob directory
+     * @param logger logger for collector reports
+     * @throws IOException if the directory or the reference log cannot be opened
+     */
+    public BackPackBlobStore(Path root, Logger logger) throws IOException {
+        this.root = Files.createDirectories(root);
+        this.logger = logger;
+        replayAndCompactLog();
+        findUntrackedBlobs();
+
+        this.collector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCEngineBackPack-BlobCollector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        collector.scheduleWithFixedDelay(this::collect, 1L, 1L, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Computes the address of a blob.
+     *
+     * @param content blob content
+     * @return the first {@value #HASH_BYTES} bytes of its SHA-256
+     */
+    public static byte[] addressOf(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            byte[] address = new byte[HASH_BYTES];
+            System.arraycopy(digest, 0, address, 0, HASH_BYTES);
+            return address;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+    }
+
+    /**
+     * Adds one reference to each blob, writing blobs that are not stored yet. Must complete
+     * before the record holding the references is written.
+     *
+     * @param addresses blob addresses
+     * @param contents  blob contents, parallel to {@code addresses}
+     * @throws IOException if a blob or the reference log cannot be written
+     */
+    public synchronized void acquire(List<byte[]> addresses, List<byte[]> contents) throws IOException {
+        if (addresses.isEmpty()) return;
+        for (int i = 0; i < addresses.size(); i++) {
+            String key = HEX.formatHex(addresses.get(i));
+            Path file = file(key);
+            if (!Files.exists(file)) writeBlob(file, contents.get(i));
+        }
+        appendLog(addresses, 1);
+        for (byte[] address : addresses) {
+            String key = HEX.formatHex(address);
+            counts.merge(key, 1, Integer::sum);
+            unreferencedSince.remove(key);
+        }
+    }
+
+    /**
+     * Removes one reference from each blob. Must only be called once the record that dropped the
+     * references has been written.
+     *
+     * @param addresses blob addresses
+     * @throws IOException if the reference log cannot be written
+     */
+    public synchronized void release(List<byte[]> addresses) throws IOException {
+        if (addresses.isEmpty()) return;
+        appendLog(addresses, -1);
+        long now = System.currentTimeMillis();
+        for (byte[] address : addresses) {
+            String key = HEX.formatHex(address);
+            int count = counts.merge(key, -1, Integer::sum);
+            if (count <= 0) {
+                counts.put(key, 0);
+                unreferencedSince.putIfAbsent(key, now);
+            }
+        }
+    }
+
+    /**
+     * Reads a blob.
+     *
+     * @param address blob address
+     * @return blob content
+     * @throws IOException if the blob is missing or cannot be read
+     */
+    public byte[] read(byte[] address) throws IOException {
+        String key = HEX.formatHex(address);
+        synchronized (readCache) {
+            byte[] cached = readCache.get(key);
+            if (cached != null) return cached;
+        }
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file(key));
+        } catch (NoSuchFileException e) {
+            throw new IOException("Missing backpack item blob " + key, e);
+        }
+        synchronized (readCache) {
+            if (readCache.put(key, content) == null) readCacheBytes += content.length;
+            var eldest = readCache.entrySet().iterator();
+            while (readCacheBytes > READ_CACHE_BYTES && eldest.hasNext()) {
+                readCacheBytes -= eldest.next().getValue().length;
+                eldest.remove();
+            }
+        }
+        return content;
+    }
+
+    /**
+     * @return number of blobs with at least one reference
+     */
+    public int size() {
+        int live = 0;
+        for (int count : counts.values()) {
+            if (count > 0) live++;
+        }
+        return live;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        collector.shutdownNow();
+        refLog.force(false);
+        refLog.close();
+    }
+
+    /**
+     * Deletes blobs that have stayed unreferenced for the grace period.
+     */
+    private void collect() {
+        long cutoff = System.currentTimeMillis() - GC_GRACE_MILLIS;
+        int deleted = 0;
+        for (Map.Entry<String, Long> orphan : unreferencedSince.entrySet()) {
+            if (orphan.getValue() > cutoff) continue;
+            String key = orphan.getKey();
+            synchronized (this) {
+                // Re-check under the lock: an acquire may have revived the blob
+                if (counts.getOrDefault(key, 0) > 0 || !unreferencedSince.remove(key, orphan.getValue())) continue;
+                try {
+                    Files.deleteIfExists(file(key));
+                    counts.remove(key);
+                    deleted++;
+                } catch (IOException e) {
+                    logger.log(Level.FINE, "Could not delete backpack item blob " + key + ".", e);
+                }
+            }
+            synchronized (readCache) {
+                byte[] evicted = readCache.remove(key);
+                if (evicted != null) readCacheBytes -= evicted.length;
+            }
+        }
+        if (deleted > 0) logger.fine("Collected " + deleted + " unreferenced backpack item blobs.");
+    }
+
+    /**
+     * Replays the reference log into {@link #counts} and rewrites it with one record per live blob.
+     *
+     * @throws IOException if the log cannot be read or rewritten
+     */
+    private void replayAndCompactLog() throws IOException {
+        Path log = root.resolve("refs.log");
+        if (Files.exists(log)) {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(log));
+            byte[] address = new byte[HASH_BYTES];
+            while (in.remaining() >= LOG_RECORD_BYTES) {
+                in.get(address);
+                counts.merge(HEX.formatHex(address), in.getInt(), Integer::sum);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        Path temp = root.resolve("refs.log.tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer record = ByteBuffer.allocate(LOG_RECORD_BYTES);
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                if (entry.getValue() <= 0) {
+                    entry.setValue(0);
+                    unreferencedSince.put(entry.getKey(), now);
+                    continue;
+                }
+                record.clear();
+                record.put(HEX.parseHex(entry.getKey())).putInt(entry.getValue()).flip();
+                while (record.hasRemaining()) out.write(record);
+            }
+            out.force(false);
+        }
+        try {
+            Files.move(temp, log, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, log, StandardCopyOption.REPLACE_EXISTING);
+        }
+        refLog = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Schedules blob files that have no reference count for collection.
+     *
+     * @throws IOException if the blob directory cannot be walked
+     */
+    private void findUntrackedBlobs() throws IOException {
+        long now = System.currentTimeMillis();
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".blob"))
+                    .map(name -> name.substring(0, name.length() - ".blob".length()))
+                    .filter(key -> !counts.containsKey(key))
+                    .forEach(key -> {
+                        counts.put(key, 0);
+                        unreferencedSince.put(key, now);
+                    });
+        }
+    }
+
+    /**
+     * Appends one count change per address to the reference log and forces it. Caller holds {@code this}.
+     *
+     * @param addresses blob addresses
+     * @param delta     count change per address
+     * @throws IOException if the log cannot be written
+     */
+    private void appendLog(List<byte[]> addresses, int delta) throws IOException {
+        ByteBuffer batch = ByteBuffer.allocate(addresses.size() * LOG_RECORD_BYTES);
+        for (byte[] address : addresses) batch.put(address).putInt(delta);
+        batch.flip();
+        while (batch.hasRemaining()) refLog.write(batch);
+        refLog.force(false);
+    }
+
+    /**
+     * Writes a blob atomically.
+     *
+     * @param file    target path
+     * @param content blob content
+     * @throws IOException if the blob cannot be written
+     */
+    private static void writeBlob(Path file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, content);
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @param key hex blob address
+     * @return blob path
+     */
+    private Path file(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key + ".blob");
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Thrown by a versioned {@link BackPackStore} when a write expected a version of the record that
+ * is no longer current, because another writer (a second server, admin tooling) changed it.
+ *
+ * <p>The write is not applied. The store forgets the version it expected, so the next load of the
+ * backpack picks up the other writer's contents.</p>
+ */
+public class BackPackConflictException extends IOException {
+
+    /** Serialization id. */
+    private static final long serialVersionUID = 1L;
+
+    /** Id of the backpack whose write was rejected. */
+    private final UUID backpackId;
+
+    /**
+     * Creates a conflict exception.
+     *
+     * @param backpackId id of the backpack whose write was rejected
+     * @param expected   version the write expected, or {@code 0} if it expected no record
+     */
+    public BackPackConflictException(UUID backpackId, long expected) {
+        super("Backpack " + backpackId + " was changed by another writer (expected version " + expected + ")");
+        this.backpackId = backpackId;
+    }
+
+    /**
+     * @return id of the backpack whose write was rejected
+     */
+    public UUID getBackpackId() {
+        return backpackId;
+    }
+}
@@ -0,0 +1,247 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import io.github.mcengine.common.backpack.core.codec.BackPackBinaryFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * {@link BackPackStore} decorator that stores large items once, in a shared {@link BackPackBlobStore}.
+ *
+ * <p>Uncompressed {@link BackPackBinaryFormat} payloads are rewritten into a manifest before they
+ * reach the delegate: slots whose item bytes are at least {@code minItemBytes} long become a
+ * reference to a content-addressed blob, smaller slots stay inline. {@link #load(UUID)} rebuilds the
+ * original payload byte for byte (the binary format is deterministic), so callers, including delta
+ * stamps, never see the manifest. Compressed or legacy payloads are passed through unchanged.</p>
+ *
+ * <p>Manifest layout:</p>
+ * <pre>
+ * byte[2]  magic 'B' 'X'
+ * byte     version (1)
+ * byte     item format tag
+ * int      slot count
+ * per slot:
+ *   byte   0 = empty, 1 = inline, 2 = blob
+ *   inline: int length, byte[] item bytes
+ *   blob:   byte[16] blob address
+ * </pre>
+ *
+ * <p>Blob references of the new record are acquired before it is written and those of the
+ * replaced record released after, so a crash can only leak a blob, never lose one.
+ * Delta records are passed through to the delegate untouched.</p>
+ */
+public final class BackPackDedupStore implements BackPackStore {
+
+    /** Current manifest version. */
+    private static final int VERSION = 1;
+
+    /** Slot tag of an empty slot. */
+    private static final int EMPTY = 0;
+
+    /** Slot tag of an inline item. */
+    private static final int INLINE = 1;
+
+    /** Slot tag of a blob reference. */
+    private static final int BLOB = 2;
+
+    /** Store holding the records. */
+    private final BackPackStore delegate;
+
+    /** Shared item blobs. */
+    private final BackPackBlobStore blobs;
+
+    /** Item size in bytes from which an item is stored as a blob. */
+    private final int minItemBytes;
+
+    /** Non-compressing format used to rebuild payloads. */
+    private final BackPackBinaryFormat format = new BackPackBinaryFormat(Integer.MAX_VALUE);
+
+    /**
+     * Creates a deduplicating store.
+     *
+     * @param delegate     store holding the records
+     * @param blobs        shared item blobs
+     * @param minItemBytes item size in bytes from which an item is stored as a blob
+     */
+    public BackPackDedupStore(BackPackStore delegate, BackPackBlobStore blobs, int minItemBytes) {
+        this.delegate = delegate;
+        this.blobs = blobs;
+        this.minItemBytes = Math.max(BackPackBlobStore.HASH_BYTES + 1, minItemBytes);
+    }
+
+    @Override
+    public byte[] load(UUID backpackId) throws IOException {
+        return rebuild(backpackId, delegate.load(backpackId));
+    }
+
+    @Override
+    public Map<UUID, byte[]> loadAll(Collection<UUID> backpackIds) throws IOException {
+        Map<UUID, byte[]> records = new HashMap<>(delegate.loadAll(backpackIds));
+        for (Map.Entry<UUID, byte[]> record : records.entrySet()) {
+            record.setValue(rebuild(record.getKey(), record.getValue()));
+        }
+        return records;
+    }
+
+    /**
+     * Rebuilds the payload a stored record stands for.
+     *
+     * @param backpackId stable backpack id
+     * @param stored     stored record, or {@code null}
+     * @return the original payload, or {@code null} if there is no record
+     * @throws IOException if the manifest is malformed or a blob is missing
+     */
+    private byte[] rebuild(UUID backpackId, byte[] stored) throws IOException {
+        if (stored == null || !isManifest(stored)) return stored;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(stored, 4, stored.length - 4));
+        int itemFormat = stored[3] & 0xFF;
+        byte[][] slots = new byte[in.readInt()][];
+        byte[] address = new byte[BackPackBlobStore.HASH_BYTES];
+        for (int slot = 0; slot < slots.length; slot++) {
+            switch (in.readUnsignedByte()) {
+                case EMPTY -> {}
+                case INLINE -> {
+                    slots[slot] = new byte[in.readInt()];
+                    in.readFully(slots[slot]);
+                }
+                case BLOB -> {
+                    in.readFully(address);
+                    slots[slot] = blobs.read(address);
+                }
+                default -> throw new IOException("Malformed backpack manifest for " + backpackId);
+            }
+        }
+        return format.encode(slots, itemFormat);
+    }
+
+    @Override
+    public void store(UUID backpackId, byte[] data) throws IOException {
+        List<byte[]> previous = referencesOf(delegate.load(backpackId));
+
+        List<byte[]> acquired = new ArrayList<>();
+        byte[] record = data;
+        if (BackPackBinaryFormat.matches(data) && !BackPackBinaryFormat.isCompressed(data)) {
+            List<byte[]> contents = new ArrayList<>();
+            record = toManifest(format.decode(data), acquired, contents);
+            blobs.acquire(acquired, contents);
+        }
+
+        try {
+            delegate.store(backpackId, record);
+        } catch (IOException | RuntimeException e) {
+            blobs.release(acquired);
+            throw e;
+        }
+        blobs.release(previous);
+    }
+
+    @Override
+    public void delete(UUID backpackId) throws IOException {
+        List<byte[]> previous = referencesOf(delegate.load(backpackId));
+        delegate.delete(backpackId);
+        blobs.release(previous);
+    }
+
+    @Override
+    public boolean supportsDeltas() {
+        return delegate.supportsDeltas();
+    }
+
+    @Override
+    public void appendDelta(UUID backpackId, byte[] delta) throws IOException {
+        delegate.appendDelta(backpackId, delta);
+    }
+
+    @Override
+    public List<byte[]> loadDeltas(UUID backpackId) throws IOException {
+        return delegate.loadDeltas(backpackId);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            blobs.close();
+        }
+    }
+
+    /**
+     * Builds the manifest of a decoded payload.
+     *
+     * @param decoded   decoded payload
+     * @param addresses receives the address of every blob slot
+     * @param contents  receives the bytes of every blob slot, parallel to {@code addresses}
+     * @return the manifest
+     */
+    private byte[] toManifest(BackPackBinaryFormat.Decoded decoded, List<byte[]> addresses, List<byte[]> contents) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write('B');
+        bytes.write('X');
+        bytes.write(VERSION);
+        bytes.write(decoded.itemFormat());
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(decoded.slots().length);
+            for (byte[] item : decoded.slots()) {
+                if (item == null) {
+                    out.writeByte(EMPTY);
+                } else if (item.length < minItemBytes) {
+                    out.writeByte(INLINE);
+                    out.writeInt(item.length);
+                    out.write(item);
+                } else {
+                    byte[] address = BackPackBlobStore.addressOf(item);
+                    addresses.add(address);
+                    contents.add(item);
+                    out.writeByte(BLOB);
+                    out.write(address);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory write failed", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Lists the blob references held by a stored record.
+     *
+     * @param stored stored record, or {@code null}
+     * @return blob addresses, one per referencing slot
+     * @throws IOException if the manifest is malformed
+     */
+    private static List<byte[]> referencesOf(byte[] stored) throws IOException {
+        if (stored == null || !isManifest(stored)) return List.of();
+        List<byte[]> addresses = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(stored, 4, stored.length - 4));
+        int slotCount = in.readInt();
+        for (int slot = 0; slot < slotCount; slot++) {
+            switch (in.readUnsignedByte()) {
+                case EMPTY -> {}
+                case INLINE -> in.skipNBytes(in.readInt());
+                case BLOB -> addresses.add(in.readNBytes(BackPackBlobStore.HASH_BYTES));
+                default -> throw new IOException("Malformed backpack manifest");
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * @param data stored record
+     * @return {@code true} if the record is a manifest of a supported version
+     */
+    private static boolean isManifest(byte[] data) {
+        return data.length >= 8 && data[0] == 'B' && data[1] == 'X' && data[2] >= 1 && data[2] <= VERSION;
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tracks, per backpack, the full payload in the store and the deltas appended on top of it,
+ * and decides when the next save must be a full snapshot again.
+ *
+ * <p>A save may be written as a delta only while the chain is known (the base was written or
+ * read during this run) and short: fewer than {@code fullEvery} deltas, and no more delta bytes
+ * than half the base. Otherwise a full snapshot is written, which restarts the chain, so loads
+ * never replay more than a bounded amount. Chains of the least recently saved backpacks are
+ * forgotten beyond {@value #MAX_CHAINS} entries; their next save is simply a full one.</p>
+ *
+ * <p>The log is safe for concurrent use.</p>
+ */
+public final class BackPackDeltaLog {
+
+    /** Maximum number of tracked chains. */
+    private static final int MAX_CHAINS = 8192;
+
+    /** Maximum number of deltas before a full snapshot is forced. */
+    private final int fullEvery;
+
+    /** Chains in access order (eldest first). */
+    private final Map<UUID, Chain> chains = new LinkedHashMap<>(64, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Chain> eldest) {
+            return size() > MAX_CHAINS;
+        }
+    };
+
+    /**
+     * Creates a delta log.
+     *
+     * @param fullEvery maximum number of deltas on top of one full snapshot
+     */
+    public BackPackDeltaLog(int fullEvery) {
+        this.fullEvery = fullEvery;
+    }
+
+    /**
+     * Records the chain just written by a full save.
+     *
+     * @param backpackId stable backpack id
+     * @param baseStamp  stamp of the full payload
+     * @param baseLength full payload length in bytes
+     */
+    public synchronized void recordFull(UUID backpackId, long baseStamp, int baseLength) {
+        chains.put(backpackId, new Chain(baseStamp, baseLength, 0, 0L));
+    }
+
+    /**
+     * Records the chain found in the store by a load, unless a write already recorded one:
+     * writes go through this log, so a chain they recorded is never older than what a
+     * concurrent load read.
+     *
+     * @param backpackId stable backpack id
+     * @param baseStamp  stamp of the full payload
+     * @param baseLength full payload length in bytes
+     * @param deltas     number of deltas on top of the base
+     * @param deltaBytes total bytes of those deltas
+     */
+    public synchronized void recordLoaded(UUID backpackId, long baseStamp, int baseLength, int deltas, long deltaBytes) {
+        chains.putIfAbsent(backpackId, new Chain(baseStamp, baseLength, deltas, deltaBytes));
+    }
+
+    /**
+     * Returns the chain a delta would extend, or {@code null} if the next save must be full.
+     *
+     * @param backpackId stable backpack id
+     * @return the current chain, or {@code null}
+     */
+    public synchronized Chain plan(UUID backpackId) {
+        Chain chain = chains.get(backpackId);
+        return (chain != null && chain.deltas < fullEvery) ? chain : null;
+    }
+
+    /**
+     * Records a delta appended to a planned chain.
+     *
+     * @param backpackId  stable backpack id
+     * @param planned     chain returned by {@link #plan(UUID)}
+     * @param deltaLength length of the appended delta
+     */
+    public synchronized void recordDelta(UUID backpackId, Chain planned, int deltaLength) {
+        chains.replace(backpackId, planned, new Chain(planned.baseStamp, planned.baseLength, planned.deltas + 1, planned.deltaBytes + deltaLength));
+    }
+
+    /**
+     * Drops the chain of a backpack whose stored record changed outside this log.
+     *
+     * @param backpackId stable backpack id
+     */
+    public synchronized void forget(UUID backpackId) {
+        chains.remove(backpackId);
+    }
+
+    /**
+     * A full payload plus the deltas appended on top of it.
+     *
+     * @param baseStamp  stamp of the full payload
+     * @param baseLength full payload length in bytes
+     * @param deltas     number of deltas
+     * @param deltaBytes total delta bytes
+     */
+    public record Chain(long baseStamp, int baseLength, int deltas, long deltaBytes) {
+
+        /**
+         * @param deltaLength length of a candidate delta
+         * @return {@code true} if the delta keeps the chain within half the base size
+         */
+        public boolean accepts(int deltaLength) {
+            return (deltaBytes + deltaLength) * 2 <= baseLength;
+        }
+
+        /**
+         * @return approximate encoded size of the contents (base plus deltas)
+         */
+        public long weight() {
+            return baseLength + deltaBytes;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * {@link BackPackStore} keeping one file per backpack under a root directory.
+ *
+ * <p>Layout: {@code <root>/<first two id chars>/<id>.bin}. Writes go to a temporary sibling file
+ * and are moved into place atomically, so a crash mid-write leaves the previous record intact.</p>
+ *
+ * <p>Delta records are appended to a sidecar {@code <id>.delta} file and forced to disk before the
+ * call returns. The sidecar starts with the magic {@code 0x42504453} ("BPDS"), followed by one
+ * frame per delta: {@code int length}, {@code int crc32} of the delta bytes, then the bytes. A
+ * full write deletes the sidecar.</p>
+ *
+ * <p>Loading stops at the first torn or corrupt frame. Before each append the sidecar is
+ * validated and truncated to its last good frame, so a new delta never lands behind garbage
+ * where loading could not reach it. Sidecars written before frames carried a checksum
+ * ({@code int length} and bytes, no magic) still load, and are rewritten in the current layout on
+ * their next append.</p>
+ */
+public final class BackPackFileStore implements BackPackStore {
+
+    /** Sidecar magic ("BPDS"). */
+    private static final int SIDECAR_MAGIC = 0x42504453;
+
+    /** Frame header size in bytes (length and checksum). */
+    private static final int FRAME_HEADER_BYTES = 8;
+
+    /** Root directory of the store. */
+    private final Path root;
+
+    /**
+     * Opens (creating if needed) a file store rooted at the given directory.
+     *
+     * @param root store directory
+     * @throws IOException if the directory cannot be created
+     */
+    public BackPackFileStore(Path root) throws IOException {
+        this.root = Files.createDirectories(root);
+    }
+
+    @Override
+    public byte[] load(UUID backpackId) throws IOException {
+        try {
+            return Files.readAllBytes(file(backpackId));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void store(UUID backpackId, byte[] data) throws IOException {
+        Path target = file(backpackId);
+        Files.createDirectories(target.getParent());
+        replace(target, ByteBuffer.wrap(data));
+        Files.deleteIfExists(deltaFile(backpackId));
+    }
+
+    @Override
+    public void delete(UUID backpackId) throws IOException {
+        Files.deleteIfExists(deltaFile(backpackId));
+        Files.deleteIfExists(file(backpackId));
+    }
+
+    @Override
+    public boolean supportsDeltas() {
+        return true;
+    }
+
+    @Override
+    public void appendDelta(UUID backpackId, byte[] delta) throws IOException {
+        Path target = deltaFile(backpackId);
+        Files.createDirectories(target.getParent());
+        Sidecar sidecar = parse(readSidecar(target));
+
+        if (sidecar.legacy()) {
+            // Rewrite the whole sidecar in the checksummed layout, with the new delta appended
+            int bytes = 4;
+            for (byte[] existing : sidecar.deltas()) bytes += FRAME_HEADER_BYTES + existing.length;
+            ByteBuffer out = ByteBuffer.allocate(bytes + FRAME_HEADER_BYTES + delta.length).putInt(SIDECAR_MAGIC);
+            for (byte[] existing : sidecar.deltas()) putFrame(out, existing);
+            replace(target, putFrame(out, delta).flip());
+            return;
+        }
+
+        long position = sidecar.end();
+        ByteBuffer out = ByteBuffer.allocate((position == 0 ? 4 : 0) + FRAME_HEADER_BYTES + delta.length);
+        if (position == 0) out.putInt(SIDECAR_MAGIC);
+        putFrame(out, delta).flip();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Drop a torn or corrupt tail so the new frame follows the last good one
+            if (channel.size() > position) channel.truncate(position);
+            while (out.hasRemaining()) position += channel.write(out, position);
+            channel.force(false);
+        }
+    }
+
+    @Override
+    public List<byte[]> loadDeltas(UUID backpackId) throws IOException {
+        return parse(readSidecar(deltaFile(backpackId))).deltas();
+    }
+
+    @Override
+    public void close() {
+        // Nothing held open between calls
+    }
+
+    /**
+     * Reads a delta sidecar.
+     *
+     * @param sidecar sidecar path
+     * @return its bytes, or an empty array if it does not exist
+     * @throws IOException if the file cannot be read
+     */
+    private static byte[] readSidecar(Path sidecar) throws IOException {
+        try {
+            return Files.readAllBytes(sidecar);
+        } catch (NoSuchFileException e) {
+            return new byte[0];
+        }
+    }
+
+    /**
+     * Parses a delta sidecar up to its first torn or corrupt frame.
+     *
+     * @param data sidecar bytes
+     * @return the intact deltas and where they end
+     */
+    private static Sidecar parse(byte[] data) {
+        // Shorter than the magic: absent, or torn while its first frame was written
+        if (data.length < 4) return new Sidecar(List.of(), 0, false);
+
+        ByteBuffer in = ByteBuffer.wrap(data);
+        boolean legacy = in.getInt(0) != SIDECAR_MAGIC;
+        if (!legacy) in.position(4);
+        int headerBytes = legacy ? 4 : FRAME_HEADER_BYTES;
+        List<byte[]> deltas = new ArrayList<>();
+        int end = in.position();
+        while (in.remaining() >= headerBytes) {
+            int length = in.getInt();
+            int crc = legacy ? 0 : in.getInt();
+            if (length < 0 || length > in.remaining()) break;
+            byte[] delta = new byte[length];
+            in.get(delta);
+            if (!legacy && crc != checksum(delta)) break;
+            deltas.add(delta);
+            end = in.position();
+        }
+        return new Sidecar(deltas, end, legacy);
+    }
+
+    /**
+     * Writes one sidecar frame.
+     *
+     * @param out   target buffer
+     * @param delta delta bytes
+     * @return {@code out}
+     */
+    private static ByteBuffer putFrame(ByteBuffer out, byte[] delta) {
+        return out.putInt(delta.length).putInt(checksum(delta)).put(delta);
+    }
+
+    /**
+     * @param data bytes to check
+     * @return CRC32 of the bytes
+     */
+    private static int checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Replaces a file by writing a forced temporary sibling and moving it into place.
+     *
+     * @param target file to replace
+     * @param data   new contents
+     * @throws IOException if the file cannot be written or moved
+     */
+    private static void replace(Path target, ByteBuffer data) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) channel.write(data);
+            channel.force(false);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Resolves the record file of a backpack.
+     *
+     * @param backpackId stable backpack id
+     * @return record path
+     */
+    private Path file(UUID backpackId) {
+        String name = backpackId.toString();
+        return root.resolve(name.substring(0, 2)).resolve(name + ".bin");
+    }
+
+    /**
+     * Resolves the delta sidecar file of a backpack.
+     *
+     * @param backpackId stable backpack id
+     * @return sidecar path
+     */
+    private Path deltaFile(UUID backpackId) {
+        String name = backpackId.toString();
+        return root.resolve(name.substring(0, 2)).resolve(name + ".delta");
+    }
+
+    /**
+     * Intact contents of a delta sidecar.
+     *
+     * @param deltas intact deltas, oldest first
+     * @param end    offset just past the last intact frame
+     * @param legacy whether the sidecar predates checksummed frames
+     */
+    private record Sidecar(List<byte[]> deltas, int end, boolean legacy) {}
+}
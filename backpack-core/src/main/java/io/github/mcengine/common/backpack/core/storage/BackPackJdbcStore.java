@@ -0,0 +1,512 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * {@link BackPackStore} backed by a SQL table, reachable over JDBC (SQLite and H2 embedded, or any
+ * server database with a compatible dialect), so contents can be queried by external tooling.
+ *
+ * <p>Schema (created if missing):</p>
+ * <pre>
+ * CREATE TABLE &lt;table&gt; (
+ *   backpack_id VARCHAR(36) NOT NULL PRIMARY KEY,
+ *   version     BIGINT      NOT NULL,  -- 1 on insert, +1 per write
+ *   updated_at  BIGINT      NOT NULL,  -- epoch milliseconds of the last write
+ *   data        BLOB        NOT NULL)  -- encoded contents
+ * </pre>
+ *
+ * <p>Writes are group-committed: {@link #store(UUID, byte[])} queues the row and blocks until a
+ * single writer thread has committed it, together with every other row queued within
+ * {@code batchDelayNanos} (up to {@code batchSize} rows), as one transaction of batched statements.
+ * Concurrent savers therefore share one commit instead of paying one each.</p>
+ *
+ * <p>Every row carries an optimistic version. The store remembers the version it last read or
+ * wrote per backpack, and a write only applies if the row still has it (or, for a backpack it has
+ * never seen, if there is no row yet); otherwise the write fails with a
+ * {@link BackPackConflictException} and the remembered version is dropped.</p>
+ *
+ * <p>Connections come from a small pool of at most {@code poolSize} connections, each keeping its
+ * prepared statements for reuse. Reports {@link BackPackMetrics#JDBC_BATCHES},
+ * {@link BackPackMetrics#JDBC_ROWS}, and {@link BackPackMetrics#STORAGE_CONFLICTS}.</p>
+ */
+public final class BackPackJdbcStore implements BackPackStore {
+
+    /** Allowed table names; the name is spliced into SQL. */
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]{0,63}");
+
+    /** Queue marker that stops the writer thread. */
+    private static final Write STOP = new Write(null, null, 0L);
+
+    /** JDBC URL. */
+    private final String url;
+
+    /** Database user, or {@code null}. */
+    private final String user;
+
+    /** Database password, or {@code null}. */
+    private final String password;
+
+    /** Maximum number of pooled connections. */
+    private final int poolSize;
+
+    /** Maximum number of rows per transaction. */
+    private final int batchSize;
+
+    /** Time the writer waits for more rows after the first one, in nanoseconds. */
+    private final long batchDelayNanos;
+
+    /** Shared counters. */
+    private final BackPackMetrics metrics;
+
+    /** Row lookup. */
+    private final String selectSql;
+
+    /** Insert that only applies if no row exists. */
+    private final String insertSql;
+
+    /** Update that only applies if the row still has the expected version. */
+    private final String updateSql;
+
+    /** Row removal. */
+    private final String deleteSql;
+
+    /** Idle pooled connections. */
+    private final BlockingQueue<PooledConnection> idle;
+
+    /** Rows waiting for the writer thread. */
+    private final BlockingQueue<Write> writes = new LinkedBlockingQueue<>();
+
+    /** Last version read or written per backpack. */
+    private final Map<UUID, Long> versions = new ConcurrentHashMap<>();
+
+    /** Group-commit thread. */
+    private final Thread writer;
+
+    /** Number of open pooled connections; guarded by {@code this}. */
+    private int opened;
+
+    /** Whether {@link #close()} ran. */
+    private volatile boolean closed;
+
+    /**
+     * Connects to the database, creates the table if needed, and starts the writer thread.
+     *
+     * @param url             JDBC URL
+     * @param user            database user, or {@code null}
+     * @param password        database password, or {@code null}
+     * @param table           table name
+     * @param poolSize        maximum number of pooled connections
+     * @param batchSize       maximum number of rows per transaction
+     * @param batchDelayNanos time the writer waits for more rows after the first one
+     * @param metrics         shared counters
+     * @throws IOException              if the database cannot be reached or the table created
+     * @throws IllegalArgumentException if the table name is not a plain identifier
+     */
+    public BackPackJdbcStore(String url, String user, String password, String table, int poolSize,
+                             int batchSize, long batchDelayNanos, BackPackMetrics metrics) throws IOException {
+        if (!TABLE_NAME.matcher(table).matches()) throw new IllegalArgumentException("Invalid backpack table name: " + table);
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.poolSize = Math.max(1, poolSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.batchDelayNanos = Math.max(0L, batchDelayNanos);
+        this.metrics = metrics;
+        this.idle = new ArrayBlockingQueue<>(this.poolSize);
+        this.selectSql = "SELECT version, data FROM " + table + " WHERE backpack_id = ?";
+        this.insertSql = "INSERT INTO " + table + " (backpack_id, version, updated_at, data) SELECT ?, 1, ?, ?"
+                + " WHERE NOT EXISTS (SELECT 1 FROM " + table + " WHERE backpack_id = ?)";
+        this.updateSql = "UPDATE " + table + " SET version = version + 1, updated_at = ?, data = ?"
+                + " WHERE backpack_id = ? AND version = ?";
+        this.deleteSql = "DELETE FROM " + table + " WHERE backpack_id = ?";
+
+        PooledConnection connection = borrow();
+        try (Statement statement = connection.connection.createStatement()) {
+            if (isSqlite()) statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                    + "backpack_id VARCHAR(36) NOT NULL PRIMARY KEY, "
+                    + "version BIGINT NOT NULL, "
+                    + "updated_at BIGINT NOT NULL, "
+                    + "data BLOB NOT NULL)");
+        } catch (SQLException e) {
+            connection.broken = true;
+            throw new IOException("Failed to create backpack table " + table, e);
+        } finally {
+            release(connection);
+        }
+
+        this.writer = new Thread(this::runWriter, "MCEngineBackPack-JdbcWriter");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public byte[] load(UUID backpackId) throws IOException {
+        PooledConnection connection = borrow();
+        try {
+            PreparedStatement select = connection.prepare(selectSql);
+            select.setString(1, backpackId.toString());
+            try (ResultSet row = select.executeQuery()) {
+                if (!row.next()) {
+                    versions.remove(backpackId);
+                    return null;
+                }
+                // A load racing a write may read the older row; versions only grow
+                versions.merge(backpackId, row.getLong(1), Math::max);
+                return row.getBytes(2);
+            }
+        } catch (SQLException e) {
+            connection.broken = true;
+            throw new IOException("Failed to load backpack " + backpackId, e);
+        } finally {
+            release(connection);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Blocks until the transaction holding the row commits.</p>
+     *
+     * @throws BackPackConflictException if the row changed since this store last read or wrote it
+     */
+    @Override
+    public void store(UUID backpackId, byte[] data) throws IOException {
+        if (closed) throw new IOException("Backpack store is closed");
+        Write write = new Write(backpackId, data, versions.getOrDefault(backpackId, 0L));
+        writes.add(write);
+        try {
+            versions.merge(backpackId, write.done.get(), Math::max);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving backpack " + backpackId);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BackPackConflictException conflict) {
+                versions.remove(backpackId);
+                metrics.increment(BackPackMetrics.STORAGE_CONFLICTS);
+                throw conflict;
+            }
+            throw new IOException("Failed to save backpack " + backpackId, e.getCause());
+        }
+    }
+
+    @Override
+    public void delete(UUID backpackId) throws IOException {
+        PooledConnection connection = borrow();
+        try {
+            PreparedStatement delete = connection.prepare(deleteSql);
+            delete.setString(1, backpackId.toString());
+            delete.executeUpdate();
+            versions.remove(backpackId);
+        } catch (SQLException e) {
+            connection.broken = true;
+            throw new IOException("Failed to delete backpack " + backpackId, e);
+        } finally {
+            release(connection);
+        }
+    }
+
+    /**
+     * Commits queued rows, then closes the pooled connections.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        writes.add(STOP);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Rows queued behind the stop marker by callers racing close()
+        Write straggler;
+        while ((straggler = writes.poll()) != null) {
+            straggler.done.completeExceptionally(new IOException("Backpack store is closed"));
+        }
+        synchronized (this) {
+            PooledConnection connection;
+            while ((connection = idle.poll()) != null) {
+                connection.close();
+                opened--;
+            }
+        }
+    }
+
+    /**
+     * Writer loop: collects rows into batches by size and delay and commits each batch.
+     */
+    private void runWriter() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                Write first = writes.take();
+                if (first == STOP) break;
+                batch.add(first);
+                long deadline = System.nanoTime() + batchDelayNanos;
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    Write next = (wait > 0L) ? writes.poll(wait, TimeUnit.NANOSECONDS) : writes.poll();
+                    if (next == null) break;
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                stopping = true;
+            }
+            if (!batch.isEmpty()) commit(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Writes a batch of rows in one transaction and completes each row's future.
+     *
+     * @param batch rows to write; each backpack appears at most once
+     */
+    private void commit(List<Write> batch) {
+        PooledConnection connection;
+        try {
+            connection = borrow();
+        } catch (IOException e) {
+            for (Write write : batch) write.done.completeExceptionally(e);
+            return;
+        }
+
+        List<Write> inserts = new ArrayList<>();
+        List<Write> updates = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        try {
+            connection.connection.setAutoCommit(false);
+            PreparedStatement insert = connection.prepare(insertSql);
+            PreparedStatement update = connection.prepare(updateSql);
+            for (Write write : batch) {
+                String id = write.backpackId.toString();
+                if (write.expected == 0L) {
+                    insert.setString(1, id);
+                    insert.setLong(2, now);
+                    insert.setBytes(3, write.data);
+                    insert.setString(4, id);
+                    insert.addBatch();
+                    inserts.add(write);
+                } else {
+                    update.setLong(1, now);
+                    update.setBytes(2, write.data);
+                    update.setString(3, id);
+                    update.setLong(4, write.expected);
+                    update.addBatch();
+                    updates.add(write);
+                }
+            }
+            int[] inserted = inserts.isEmpty() ? new int[0] : insert.executeBatch();
+            int[] updated = updates.isEmpty() ? new int[0] : update.executeBatch();
+            connection.connection.commit();
+
+            metrics.increment(BackPackMetrics.JDBC_BATCHES);
+            metrics.add(BackPackMetrics.JDBC_ROWS, batch.size());
+            complete(inserts, inserted);
+            complete(updates, updated);
+        } catch (SQLException e) {
+            try {
+                connection.connection.rollback();
+            } catch (SQLException rollback) {
+                e.addSuppressed(rollback);
+            }
+            connection.broken = true;
+            IOException failure = new IOException("Failed to commit " + batch.size() + " backpack rows", e);
+            for (Write write : batch) write.done.completeExceptionally(failure);
+        } finally {
+            try {
+                if (!connection.broken) connection.connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                connection.broken = true;
+            }
+            release(connection);
+        }
+    }
+
+    /**
+     * Completes the futures of a batched statement from its update counts.
+     *
+     * @param writes rows in batch order
+     * @param counts update counts returned by the batch
+     */
+    private static void complete(List<Write> writes, int[] counts) {
+        for (int i = 0; i < writes.size(); i++) {
+            Write write = writes.get(i);
+            int count = i < counts.length ? counts[i] : Statement.SUCCESS_NO_INFO;
+            if (count == 0) write.done.completeExceptionally(new BackPackConflictException(write.backpackId, write.expected));
+            else write.done.complete(write.expected + 1L);
+        }
+    }
+
+    /**
+     * Takes an idle connection, opening one if the pool is not full, or waits for one.
+     *
+     * @return a connection owned by the caller until {@link #release(PooledConnection)}
+     * @throws IOException if a connection cannot be opened or the wait is interrupted
+     */
+    private PooledConnection borrow() throws IOException {
+        PooledConnection connection = idle.poll();
+        if (connection != null) return connection;
+        synchronized (this) {
+            if (opened < poolSize) {
+                opened++;
+                try {
+                    return new PooledConnection(open());
+                } catch (SQLException e) {
+                    opened--;
+                    throw new IOException("Failed to connect to backpack database", e);
+                }
+            }
+        }
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a backpack database connection");
+        }
+    }
+
+    /**
+     * Returns a connection to the pool, or closes it if it failed or the store is closed.
+     *
+     * @param connection borrowed connection
+     */
+    private void release(PooledConnection connection) {
+        if (connection.broken || (closed && Thread.currentThread() != writer)) {
+            connection.close();
+            synchronized (this) {
+                opened--;
+            }
+            return;
+        }
+        idle.add(connection);
+    }
+
+    /**
+     * Opens a new database connection.
+     *
+     * @return the connection, in auto-commit mode
+     * @throws SQLException if the database cannot be reached
+     */
+    private Connection open() throws SQLException {
+        Connection connection = (user == null) ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password);
+        if (isSqlite()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA busy_timeout=5000");
+                statement.execute("PRAGMA synchronous=NORMAL");
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * @return {@code true} if the URL targets SQLite
+     */
+    private boolean isSqlite() {
+        return url.startsWith("jdbc:sqlite:");
+    }
+
+    /**
+     * A pooled connection and its prepared statements.
+     */
+    private static final class PooledConnection {
+
+        /** Underlying connection. */
+        final Connection connection;
+
+        /** Prepared statements by SQL text. */
+        final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        /** Whether the connection failed and must not be reused. */
+        boolean broken;
+
+        /**
+         * @param connection underlying connection
+         */
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * @param sql statement text
+         * @return the cached prepared statement for {@code sql}, preparing it on first use
+         * @throws SQLException if the statement cannot be prepared
+         */
+        PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement statement = statements.get(sql);
+            if (statement == null) {
+                statement = connection.prepareStatement(sql);
+                statements.put(sql, statement);
+            }
+            return statement;
+        }
+
+        /**
+         * Closes the connection and its statements, ignoring failures.
+         */
+        void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // Already unusable
+            }
+        }
+    }
+
+    /**
+     * A row waiting for the writer thread.
+     */
+    private static final class Write {
+
+        /** Backpack id. */
+        final UUID backpackId;
+
+        /** Encoded contents. */
+        final byte[] data;
+
+        /** Version the row must have, or {@code 0} if it must not exist. */
+        final long expected;
+
+        /** Completed with the new version once committed. */
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+
+        /**
+         * @param backpackId backpack id
+         * @param data       encoded contents
+         * @param expected   version the row must have, or {@code 0} if it must not exist
+         */
+        Write(UUID backpackId, byte[] data, long expected) {
+            this.backpackId = backpackId;
+            this.data = data;
+            this.expected = expected;
+        }
+    }
+}
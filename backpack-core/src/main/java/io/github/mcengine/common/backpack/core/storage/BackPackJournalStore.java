@@ -0,0 +1,704 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Log-structured, memory-mapped {@link BackPackStore}.
+ *
+ * <p>Every save appends one record to the current journal generation instead of rewriting a file:</p>
+ * <pre>
+ * int   marker   (0x42504A52, "BPJR")
+ * long  id (most significant bits)
+ * long  id (least significant bits)
+ * long  version  (per-backpack, increasing)
+ * int   length   (payload bytes; -1 for a delete tombstone)
+ * int   crc32    (over id, version, length, and payload)
+ * byte[length] payload
+ * </pre>
+ *
+ * <p>Slot-level deltas use the same layout with the marker {@code 0x42504A44} ("BPJD"); they
+ * attach to the latest full record of their id and are superseded together with it.</p>
+ *
+ * <p>An in-memory index maps each backpack id to its latest record, so reads are a single copy out
+ * of the mapping. Each append is forced to disk before the call returns. On startup the newest
+ * generation is replayed and validated; replay stops at the first torn or corrupt record, so a crash
+ * mid-save loses at most that record.</p>
+ *
+ * <p>A background compactor rewrites the live records into a new generation once dead records
+ * exceed the configured share of the journal. Generations are separate files
+ * ({@code journal-<n>.dat}). The next generation is written to {@code journal-<n>.dat.tmp}, forced,
+ * read back and validated, and only then atomically renamed to its final name, so a generation
+ * file is always complete: a crash mid-compaction leaves only a temporary file, which is deleted on
+ * the next startup while the previous generation stays current. Older generations are deleted
+ * after the switch, or on the next startup if the platform still holds them mapped.</p>
+ */
+public final class BackPackJournalStore implements BackPackStore {
+
+    /** Record marker ("BPJR"). */
+    private static final int MARKER = 0x42504A52;
+
+    /** Delta record marker ("BPJD"). */
+    private static final int DELTA_MARKER = 0x42504A44;
+
+    /** Fixed record header size in bytes. */
+    private static final int HEADER_BYTES = 4 + 8 + 8 + 8 + 4 + 4;
+
+    /** Length value marking a delete tombstone. */
+    private static final int TOMBSTONE = -1;
+
+    /** Minimum journal size before compaction is considered. */
+    private static final long MIN_COMPACT_BYTES = 4L * 1024 * 1024;
+
+    /** Logger used for replay and compaction reports. */
+    private final Logger logger;
+
+    /** Directory holding the journal generations. */
+    private final Path directory;
+
+    /** Initial mapping capacity of a new generation, in bytes. */
+    private final int initialCapacity;
+
+    /** Dead-byte share of the journal that triggers compaction (0–1). */
+    private final double compactRatio;
+
+    /** Latest live record per backpack id. */
+    private final Map<UUID, Entry> index = new ConcurrentHashMap<>();
+
+    /** Guards the mapping: readers share, appends and remaps are exclusive. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Background compaction scheduler. */
+    private final ScheduledExecutorService compactor;
+
+    /** Current generation number. */
+    private long generation;
+
+    /** Channel of the current generation. */
+    private FileChannel channel;
+
+    /** Mapping of the current generation. */
+    private MappedByteBuffer mapping;
+
+    /** Offset at which the next record is appended. */
+    private int writePosition;
+
+    /** Bytes occupied by superseded records and tombstones. */
+    private long deadBytes;
+
+    /** Records accepted during the last replay. */
+    private int replayedRecords;
+
+    /** Whether the last replay stopped at a torn or corrupt record. */
+    private boolean replayTruncated;
+
+    /**
+     * Opens (creating if needed) a journal store and replays its newest generation.
+     *
+     * @param directory       journal directory
+     * @param initialCapacity initial mapping capacity of a new generation, in bytes
+     * @param compactRatio    dead-byte share that triggers compaction (0–1)
+     * @param logger          logger for replay and compaction reports
+     * @throws IOException if the journal cannot be opened or mapped
+     */
+    public BackPackJournalStore(Path directory, int initialCapacity, double compactRatio, Logger logger) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.initialCapacity = Math.max(initialCapacity, 64 * 1024);
+        this.compactRatio = compactRatio;
+        this.logger = logger;
+
+        deleteTemporaryGenerations();
+        this.generation = latestGeneration();
+        openGeneration(generation);
+        replay();
+        deleteOlderGenerations();
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCEngineBackPack-JournalCompactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.scheduleWithFixedDelay(this::compactIfNeeded, 1L, 1L, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public byte[] load(UUID backpackId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = index.get(backpackId);
+            if (entry == null) return null;
+            byte[] data = new byte[entry.length];
+            mapping.get(entry.offset + HEADER_BYTES, data);
+            return data;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void store(UUID backpackId, byte[] data) throws IOException {
+        append(backpackId, data);
+    }
+
+    @Override
+    public boolean supportsDeltas() {
+        return true;
+    }
+
+    @Override
+    public void appendDelta(UUID backpackId, byte[] delta) throws IOException {
+        int recordBytes = HEADER_BYTES + delta.length;
+
+        lock.writeLock().lock();
+        try {
+            Entry previous = index.get(backpackId);
+            if (previous == null) throw new IOException("No full record to attach the delta of backpack " + backpackId + " to");
+            ensureCapacity(recordBytes);
+
+            int offset = writePosition;
+            writeRecord(mapping, offset, DELTA_MARKER, backpackId, previous.version + 1, delta.length, delta);
+            mapping.force(offset, recordBytes);
+            writePosition += recordBytes;
+            index.put(backpackId, previous.withDelta(offset, delta.length, previous.version + 1));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<byte[]> loadDeltas(UUID backpackId) {
+        lock.readLock().lock();
+        try {
+            Entry entry = index.get(backpackId);
+            if (entry == null || entry.deltaOffsets.length == 0) return List.of();
+            List<byte[]> deltas = new ArrayList<>(entry.deltaOffsets.length);
+            for (int i = 0; i < entry.deltaOffsets.length; i++) {
+                byte[] delta = new byte[entry.deltaLengths[i]];
+                mapping.get(entry.deltaOffsets[i] + HEADER_BYTES, delta);
+                deltas.add(delta);
+            }
+            return deltas;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(UUID backpackId) throws IOException {
+        if (index.containsKey(backpackId)) append(backpackId, null);
+    }
+
+    @Override
+    public void close() throws IOException {
+        compactor.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            mapping.force();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of live backpacks in the index
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return records accepted during the startup replay
+     */
+    public int getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    /**
+     * @return {@code true} if the startup replay discarded a torn or corrupt tail
+     */
+    public boolean isReplayTruncated() {
+        return replayTruncated;
+    }
+
+    /**
+     * Appends a record (or tombstone when {@code data} is {@code null}) and forces it to disk.
+     *
+     * @param backpackId stable backpack id
+     * @param data       payload, or {@code null} for a delete
+     * @throws IOException if the journal cannot grow or be written
+     */
+    private void append(UUID backpackId, byte[] data) throws IOException {
+        int length = (data == null) ? TOMBSTONE : data.length;
+        int recordBytes = HEADER_BYTES + Math.max(length, 0);
+
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(recordBytes);
+
+            Entry previous = index.get(backpackId);
+            long version = (previous == null) ? 1L : previous.version + 1;
+            int offset = writePosition;
+            writeRecord(mapping, offset, MARKER, backpackId, version, length, data);
+            mapping.force(offset, recordBytes);
+            writePosition += recordBytes;
+
+            if (previous != null) deadBytes += previous.recordBytes();
+            if (data == null) {
+                index.remove(backpackId);
+                deadBytes += recordBytes;
+            } else {
+                index.put(backpackId, Entry.full(offset, length, version));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replays the current generation into the index, stopping at the first invalid record.
+     */
+    private void replay() {
+        int position = 0;
+        int limit = mapping.capacity();
+        replayedRecords = 0;
+        replayTruncated = false;
+
+        while (position + HEADER_BYTES <= limit) {
+            int marker = mapping.getInt(position);
+            if (marker != MARKER && marker != DELTA_MARKER) {
+                // Zeroed header: clean end of journal; anything else is a torn record
+                replayTruncated = !isZero(position, Math.min(limit, position + HEADER_BYTES));
+                break;
+            }
+            UUID id = new UUID(mapping.getLong(position + 4), mapping.getLong(position + 12));
+            long version = mapping.getLong(position + 20);
+            int length = mapping.getInt(position + 28);
+            int crc = mapping.getInt(position + 32);
+            int payloadBytes = Math.max(length, 0);
+
+            if (length < (marker == MARKER ? TOMBSTONE : 0) || position + HEADER_BYTES + payloadBytes > limit
+                    || crc != checksum(mapping, position, payloadBytes)) {
+                replayTruncated = true;
+                break;
+            }
+
+            Entry previous = index.get(id);
+            if (marker == DELTA_MARKER) {
+                // A delta without a live full record before it is unreachable
+                if (previous == null) deadBytes += HEADER_BYTES + payloadBytes;
+                else index.put(id, previous.withDelta(position, length, version));
+            } else {
+                if (previous != null) deadBytes += previous.recordBytes();
+                if (length == TOMBSTONE) {
+                    index.remove(id);
+                    deadBytes += HEADER_BYTES;
+                } else {
+                    index.put(id, Entry.full(position, length, version));
+                }
+            }
+            position += HEADER_BYTES + payloadBytes;
+            replayedRecords++;
+        }
+
+        writePosition = position;
+        if (replayTruncated) {
+            // Clear the torn tail so it cannot be mistaken for data after later appends
+            for (int i = position; i < limit; i++) mapping.put(i, (byte) 0);
+            mapping.force();
+            logger.warning("Backpack journal replay stopped at a corrupt record (offset " + position
+                    + "); " + replayedRecords + " records recovered.");
+        }
+    }
+
+    /**
+     * Checks whether a range of the mapping is all zero bytes.
+     *
+     * @param from inclusive start offset
+     * @param to   exclusive end offset
+     * @return {@code true} if every byte in the range is zero
+     */
+    private boolean isZero(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (mapping.get(i) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rewrites live records into a new generation when the dead-byte share exceeds the threshold.
+     */
+    private void compactIfNeeded() {
+        try {
+            lock.writeLock().lock();
+            try {
+                if (writePosition < MIN_COMPACT_BYTES || deadBytes < writePosition * compactRatio) return;
+                compact();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            deleteOlderGenerations();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Backpack journal compaction failed.", e);
+        }
+    }
+
+    /**
+     * Compacts immediately, regardless of the dead-byte share. Used by recovery tests.
+     *
+     * @throws IOException if the new generation cannot be written
+     */
+    void compactNow() throws IOException {
+        lock.writeLock().lock();
+        try {
+            compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        deleteOlderGenerations();
+    }
+
+    /**
+     * Copies every live record into the next generation and switches to it. Caller holds the write lock.
+     * <p>
+     * The generation is written under a temporary name, forced, and validated by reading it back
+     * before it is atomically renamed; until the rename the current generation stays authoritative.
+     * </p>
+     *
+     * @throws IOException if the new generation cannot be written or fails validation
+     */
+    private void compact() throws IOException {
+        long nextGeneration = generation + 1;
+        Path target = generationFile(nextGeneration);
+        Path temporary = temporaryFile(nextGeneration);
+        Files.deleteIfExists(temporary);
+
+        Map<UUID, Entry> compacted = new ConcurrentHashMap<>();
+        int position = 0;
+        int records = 0;
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for (Map.Entry<UUID, Entry> live : index.entrySet()) {
+                Entry entry = live.getValue();
+                byte[] data = new byte[entry.length];
+                mapping.get(entry.offset + HEADER_BYTES, data);
+                writeRecord(out, position, MARKER, live.getKey(), entry.version, data);
+                Entry moved = Entry.full(position, entry.length, entry.version);
+                position += HEADER_BYTES + entry.length;
+                records++;
+                for (int i = 0; i < entry.deltaOffsets.length; i++) {
+                    byte[] delta = new byte[entry.deltaLengths[i]];
+                    mapping.get(entry.deltaOffsets[i] + HEADER_BYTES, delta);
+                    writeRecord(out, position, DELTA_MARKER, live.getKey(), entry.version, delta);
+                    moved = moved.withDelta(position, delta.length, entry.version);
+                    position += HEADER_BYTES + delta.length;
+                    records++;
+                }
+                compacted.put(live.getKey(), moved);
+            }
+            out.force(true);
+            validate(out, position, records);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+
+        long reclaimed = writePosition - position;
+        mapping.force();
+        channel.close();
+        generation = nextGeneration;
+        openGeneration(generation);
+        index.clear();
+        index.putAll(compacted);
+        writePosition = position;
+        deadBytes = 0;
+        logger.info("Compacted backpack journal to generation " + generation + " (" + reclaimed + " bytes reclaimed).");
+    }
+
+    /**
+     * Reads a written generation back from disk and checks every record's marker and checksum.
+     *
+     * @param in      channel of the written generation
+     * @param end     expected end offset of the last record
+     * @param records expected number of records
+     * @throws IOException if the file cannot be read or does not hold exactly the expected records
+     */
+    private static void validate(FileChannel in, int end, int records) throws IOException {
+        if (in.size() != end) throw new IOException("Compacted backpack journal has " + in.size() + " bytes, expected " + end);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        int position = 0;
+        int seen = 0;
+        while (position < end) {
+            header.clear();
+            readFully(in, header, position);
+            int marker = header.getInt(0);
+            int length = header.getInt(28);
+            if ((marker != MARKER && marker != DELTA_MARKER) || length < 0 || (long) position + HEADER_BYTES + length > end) {
+                throw new IOException("Compacted backpack journal is malformed at offset " + position);
+            }
+            ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + length);
+            readFully(in, record, position);
+            if (record.getInt(32) != checksum(record, 0, length)) {
+                throw new IOException("Compacted backpack journal has a bad checksum at offset " + position);
+            }
+            position += HEADER_BYTES + length;
+            seen++;
+        }
+        if (seen != records) throw new IOException("Compacted backpack journal holds " + seen + " records, expected " + records);
+    }
+
+    /**
+     * Fills a buffer from a channel at an absolute position.
+     *
+     * @param in       source channel
+     * @param buffer   buffer to fill
+     * @param position file position
+     * @throws IOException if the file ends first
+     */
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Unexpected end of backpack journal");
+        }
+    }
+
+    /**
+     * Forces the directory entry of a rename to disk where the platform supports it.
+     */
+    private void forceDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform (e.g. Windows); the rename itself is still atomic
+        }
+    }
+
+    /**
+     * Grows the mapping so that {@code recordBytes} more bytes fit. Caller holds the write lock.
+     *
+     * @param recordBytes bytes about to be appended
+     * @throws IOException if the journal would exceed 2 GiB or cannot be remapped
+     */
+    private void ensureCapacity(int recordBytes) throws IOException {
+        long required = (long) writePosition + recordBytes;
+        if (required <= mapping.capacity()) return;
+
+        long capacity = mapping.capacity();
+        while (capacity < required) capacity *= 2;
+        if (capacity > Integer.MAX_VALUE) {
+            if (required > Integer.MAX_VALUE) throw new IOException("Backpack journal exceeds 2 GiB; compaction required.");
+            capacity = Integer.MAX_VALUE;
+        }
+        mapping.force();
+        mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Opens and maps a generation file, creating it with the initial capacity if absent.
+     *
+     * @param gen generation number
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    private void openGeneration(long gen) throws IOException {
+        channel = FileChannel.open(generationFile(gen), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), initialCapacity);
+        mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(size, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Finds the newest generation number present in the directory.
+     *
+     * @return newest generation, or {@code 0} if none exists
+     * @throws IOException if the directory cannot be listed
+     */
+    private long latestGeneration() throws IOException {
+        long latest = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.dat")) {
+            for (Path file : files) latest = Math.max(latest, parseGeneration(file));
+        }
+        return latest;
+    }
+
+    /**
+     * Deletes generations left under their temporary name by a compaction that did not finish.
+     *
+     * @throws IOException if the directory cannot be listed or a file cannot be deleted
+     */
+    private void deleteTemporaryGenerations() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.dat.tmp")) {
+            for (Path file : files) {
+                Files.delete(file);
+                logger.warning("Deleted unfinished backpack journal compaction " + file.getFileName() + ".");
+            }
+        }
+    }
+
+    /**
+     * Deletes generation files older than the current one, ignoring files the platform still holds.
+     */
+    private void deleteOlderGenerations() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.dat")) {
+            for (Path file : files) {
+                if (parseGeneration(file) < generation) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException ignored) {
+                        // Still mapped on this platform; removed on next startup
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Could not list backpack journal generations.", e);
+        }
+    }
+
+    /**
+     * @param gen generation number
+     * @return path of the generation file
+     */
+    private Path generationFile(long gen) {
+        return directory.resolve("journal-" + gen + ".dat");
+    }
+
+    /**
+     * @param gen generation number
+     * @return path a generation is written to before it is complete
+     */
+    private Path temporaryFile(long gen) {
+        return directory.resolve("journal-" + gen + ".dat.tmp");
+    }
+
+    /**
+     * @param file generation file
+     * @return its generation number, or {@code -1} if the name is malformed
+     */
+    private static long parseGeneration(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring("journal-".length(), name.length() - ".dat".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Writes one record at an absolute offset.
+     *
+     * @param buffer  target mapping
+     * @param offset  record offset
+     * @param marker  {@link #MARKER} or {@link #DELTA_MARKER}
+     * @param id      backpack id
+     * @param version record version
+     * @param length  payload length or {@link #TOMBSTONE}
+     * @param data    payload, or {@code null} for a tombstone
+     */
+    private static void writeRecord(ByteBuffer buffer, int offset, int marker, UUID id, long version, int length, byte[] data) {
+        buffer.putLong(offset + 4, id.getMostSignificantBits());
+        buffer.putLong(offset + 12, id.getLeastSignificantBits());
+        buffer.putLong(offset + 20, version);
+        buffer.putInt(offset + 28, length);
+        if (data != null) buffer.put(offset + HEADER_BYTES, data);
+        buffer.putInt(offset + 32, checksum(buffer, offset, Math.max(length, 0)));
+        // Marker last: a record only becomes visible to replay once fully written
+        buffer.putInt(offset, marker);
+    }
+
+    /**
+     * Writes one record at an absolute file position through a channel.
+     *
+     * @param out      target channel
+     * @param position record position
+     * @param marker   {@link #MARKER} or {@link #DELTA_MARKER}
+     * @param id       backpack id
+     * @param version  record version
+     * @param data     payload
+     * @throws IOException if the write fails
+     */
+    private static void writeRecord(FileChannel out, int position, int marker, UUID id, long version, byte[] data) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + data.length);
+        writeRecord(record, 0, marker, id, version, data.length, data);
+        while (record.hasRemaining()) out.write(record, position + record.position());
+    }
+
+    /**
+     * Computes the CRC32 of a record's id, version, length, and payload.
+     *
+     * @param buffer       mapping holding the record
+     * @param offset       record offset
+     * @param payloadBytes payload length
+     * @return checksum
+     */
+    private static int checksum(ByteBuffer buffer, int offset, int payloadBytes) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset + 4, 28));
+        if (payloadBytes > 0) crc.update(buffer.slice(offset + HEADER_BYTES, payloadBytes));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Location of a live record and of the deltas attached to it.
+     *
+     * @param offset       record offset in the current generation
+     * @param length       payload length
+     * @param version      version of the latest record (full or delta)
+     * @param deltaOffsets offsets of the attached delta records, oldest first
+     * @param deltaLengths payload lengths of the attached delta records
+     */
+    private record Entry(int offset, int length, long version, int[] deltaOffsets, int[] deltaLengths) {
+
+        /**
+         * @param offset  record offset
+         * @param length  payload length
+         * @param version record version
+         * @return entry of a full record without deltas
+         */
+        static Entry full(int offset, int length, long version) {
+            return new Entry(offset, length, version, new int[0], new int[0]);
+        }
+
+        /**
+         * @param deltaOffset  offset of the new delta record
+         * @param deltaLength  payload length of the new delta record
+         * @param deltaVersion version of the new delta record
+         * @return this entry with the delta attached
+         */
+        Entry withDelta(int deltaOffset, int deltaLength, long deltaVersion) {
+            int n = deltaOffsets.length;
+            int[] offsets = Arrays.copyOf(deltaOffsets, n + 1);
+            int[] lengths = Arrays.copyOf(deltaLengths, n + 1);
+            offsets[n] = deltaOffset;
+            lengths[n] = deltaLength;
+            return new Entry(offset, length, deltaVersion, offsets, lengths);
+        }
+
+        /**
+         * @return total bytes occupied by the record and its deltas
+         */
+        int recordBytes() {
+            int bytes = HEADER_BYTES + length;
+            for (int deltaLength : deltaLengths) bytes += HEADER_BYTES + deltaLength;
+            return bytes;
+        }
+    }
+}
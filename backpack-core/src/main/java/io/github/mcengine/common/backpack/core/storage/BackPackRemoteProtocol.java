@@ -0,0 +1,122 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Wire format between {@link BackPackRemoteStore} and the network's shared backpack service.
+ *
+ * <p>Every message is a frame: an {@code int} length of the rest of the frame, then the payload.
+ * Requests and responses carry a request id, so a connection can have many requests in flight and
+ * the server may answer them in any order.</p>
+ *
+ * <pre>
+ * request  := byte op, long requestId, body
+ *   GET    := int count, count x uuid                      (one round trip for any number of backpacks)
+ *   PUT    := uuid, long expectedVersion (0 = must not exist), int length, byte[] data
+ *   DELETE := uuid
+ * response := long requestId, byte status, body
+ *   GET    OK       := count x (long version, int length (-1 = no record), byte[] data)
+ *   PUT    OK       := long newVersion
+ *   PUT    CONFLICT := long currentVersion (0 = no record)
+ *   DELETE OK       := (empty)
+ *   any    ERROR    := UTF message
+ * uuid     := long mostSignificantBits, long leastSignificantBits
+ * </pre>
+ */
+final class BackPackRemoteProtocol {
+
+    /** Batch read of one or more records. */
+    static final int OP_GET = 1;
+
+    /** Versioned write of one record. */
+    static final int OP_PUT = 2;
+
+    /** Removal of one record. */
+    static final int OP_DELETE = 3;
+
+    /** Request applied. */
+    static final int STATUS_OK = 0;
+
+    /** Write rejected: the record's version differs from the expected one. */
+    static final int STATUS_CONFLICT = 1;
+
+    /** Request failed on the server. */
+    static final int STATUS_ERROR = 2;
+
+    /** Largest accepted frame, in bytes. */
+    static final int MAX_FRAME_BYTES = 64 * 1024 * 1024;
+
+    /** Utility class; not instantiable. */
+    private BackPackRemoteProtocol() {}
+
+    /**
+     * Reads one frame.
+     *
+     * @param in source stream
+     * @return the frame payload
+     * @throws IOException if the stream ends or the frame is too large
+     */
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) throw new IOException("Invalid backpack protocol frame length " + length);
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+
+    /**
+     * Writes and flushes one frame. Callers serialize writes to the same stream.
+     *
+     * @param out   target stream
+     * @param frame frame payload
+     * @throws IOException if the stream fails
+     */
+    static void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+        out.writeInt(frame.length);
+        out.write(frame);
+        out.flush();
+    }
+
+    /**
+     * @param out target
+     * @param id  UUID to write
+     * @throws IOException if the stream fails
+     */
+    static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    /**
+     * @param in source
+     * @return the UUID read
+     * @throws IOException if the stream ends
+     */
+    static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    /**
+     * In-memory frame builder.
+     */
+    static final class Frame extends DataOutputStream {
+
+        /**
+         * Creates an empty frame.
+         */
+        Frame() {
+            super(new ByteArrayOutputStream());
+        }
+
+        /**
+         * @return the bytes written so far
+         */
+        byte[] toByteArray() {
+            return ((ByteArrayOutputStream) out).toByteArray();
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link BackPackStore} client for a backpack service shared by several game servers, so a
+ * backpack's contents follow it across the network. The service speaks the
+ * {@code BackPackRemoteProtocol} wire format.
+ *
+ * <p>All requests share one TCP connection and are pipelined: a request is written as soon as it
+ * is issued and answered by request id, so concurrent loads and saves never wait for each other's
+ * round trips. {@link #loadAll(Collection)} fetches any number of backpacks in a single request.
+ * The connection is opened on first use and re-opened after a failure; requests in flight on a
+ * failed connection fail with an {@link IOException}.</p>
+ *
+ * <p>Requests are written by the connection's own writer thread from a bounded queue, so a caller
+ * never blocks on the socket. A request that cannot be queued within the timeout fails, and a
+ * write stuck for longer than the timeout (e.g. a server that stopped reading) fails the connection.</p>
+ *
+ * <p>Writes carry the version this client last read or wrote; the server rejects them with
+ * {@link BackPackConflictException} if another server wrote the backpack since. Reports
+ * {@link BackPackMetrics#STORAGE_CONFLICTS}.</p>
+ */
+public final class BackPackRemoteStore implements BackPackStore {
+
+    /** Requests waiting to be written on one connection before further requests are refused. */
+    private static final int WRITE_QUEUE_CAPACITY = 1024;
+
+    /** Server host. */
+    private final String host;
+
+    /** Server port. */
+    private final int port;
+
+    /** Connect and per-request timeout, in milliseconds. */
+    private final int timeoutMillis;
+
+    /** Shared counters. */
+    private final BackPackMetrics metrics;
+
+    /** Request id source. */
+    private final AtomicLong nextRequestId = new AtomicLong();
+
+    /** Last version read or written per backpack. */
+    private final Map<UUID, Long> versions = new ConcurrentHashMap<>();
+
+    /** Current connection, or {@code null} before first use and after a failure; guarded by {@code this}. */
+    private Connection connection;
+
+    /** Whether {@link #close()} ran; guarded by {@code this}. */
+    private boolean closed;
+
+    /**
+     * Creates a client. No connection is made until the first request.
+     *
+     * @param host          server host
+     * @param port          server port
+     * @param timeoutMillis connect and per-request timeout, in milliseconds
+     * @param metrics       shared counters
+     */
+    public BackPackRemoteStore(String host, int port, int timeoutMillis, BackPackMetrics metrics) {
+        this.host = host;
+        this.port = port;
+        this.timeoutMillis = timeoutMillis;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public byte[] load(UUID backpackId) throws IOException {
+        return loadAll(List.of(backpackId)).get(backpackId);
+    }
+
+    /**
+     * Loads several backpacks in one round trip.
+     *
+     * @param backpackIds stable backpack ids
+     * @return encoded contents by id; ids without a record are absent
+     * @throws IOException if the request fails
+     */
+    @Override
+    public Map<UUID, byte[]> loadAll(Collection<UUID> backpackIds) throws IOException {
+        if (backpackIds.isEmpty()) return Map.of();
+        BackPackRemoteProtocol.Frame body = new BackPackRemoteProtocol.Frame();
+        body.writeInt(backpackIds.size());
+        for (UUID id : backpackIds) BackPackRemoteProtocol.writeUuid(body, id);
+
+        DataInputStream in = expectOk(call(BackPackRemoteProtocol.OP_GET, body));
+        Map<UUID, byte[]> records = new HashMap<>();
+        for (UUID id : backpackIds) {
+            long version = in.readLong();
+            int length = in.readInt();
+            if (length < 0) {
+                versions.remove(id);
+                continue;
+            }
+            byte[] data = new byte[length];
+            in.readFully(data);
+            // A load racing a write may read the older record; versions only grow
+            versions.merge(id, version, Math::max);
+            records.put(id, data);
+        }
+        return records;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws BackPackConflictException if another server wrote the backpack since this client last read or wrote it
+     */
+    @Override
+    public void store(UUID backpackId, byte[] data) throws IOException {
+        long expected = versions.getOrDefault(backpackId, 0L);
+        BackPackRemoteProtocol.Frame body = new BackPackRemoteProtocol.Frame();
+        BackPackRemoteProtocol.writeUuid(body, backpackId);
+        body.writeLong(expected);
+        body.writeInt(data.length);
+        body.write(data);
+
+        Response response = call(BackPackRemoteProtocol.OP_PUT, body);
+        if (response.status == BackPackRemoteProtocol.STATUS_CONFLICT) {
+            versions.remove(backpackId);
+            metrics.increment(BackPackMetrics.STORAGE_CONFLICTS);
+            throw new BackPackConflictException(backpackId, expected);
+        }
+        versions.merge(backpackId, expectOk(response).readLong(), Math::max);
+    }
+
+    @Override
+    public void delete(UUID backpackId) throws IOException {
+        BackPackRemoteProtocol.Frame body = new BackPackRemoteProtocol.Frame();
+        BackPackRemoteProtocol.writeUuid(body, backpackId);
+        expectOk(call(BackPackRemoteProtocol.OP_DELETE, body));
+        versions.remove(backpackId);
+    }
+
+    @Override
+    public void close() {
+        Connection current;
+        synchronized (this) {
+            closed = true;
+            current = connection;
+            connection = null;
+        }
+        if (current != null) current.fail(new IOException("Backpack store is closed"));
+    }
+
+    /**
+     * Sends a request and waits for its response.
+     *
+     * @param op   operation code
+     * @param body request body
+     * @return the response
+     * @throws IOException if the request fails or times out
+     */
+    private Response call(int op, BackPackRemoteProtocol.Frame body) throws IOException {
+        long requestId = nextRequestId.incrementAndGet();
+        BackPackRemoteProtocol.Frame frame = new BackPackRemoteProtocol.Frame();
+        frame.writeByte(op);
+        frame.writeLong(requestId);
+        frame.write(body.toByteArray());
+
+        Connection current = connection();
+        CompletableFuture<byte[]> response = current.send(requestId, frame.toByteArray(), timeoutMillis);
+        byte[] payload;
+        try {
+            payload = response.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the backpack server");
+        } catch (TimeoutException e) {
+            current.pending.remove(requestId);
+            current.checkStalled(timeoutMillis);
+            throw new IOException("Backpack server did not answer within " + timeoutMillis + " ms", e);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof IOException io) ? io : new IOException(e.getCause());
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        return new Response(in.readUnsignedByte(), in);
+    }
+
+    /**
+     * @param response a response
+     * @return its body, if the request was applied
+     * @throws IOException if the server reported an error
+     */
+    private static DataInputStream expectOk(Response response) throws IOException {
+        return switch (response.status) {
+            case BackPackRemoteProtocol.STATUS_OK -> response.body;
+            case BackPackRemoteProtocol.STATUS_ERROR -> throw new IOException("Backpack server error: " + response.body.readUTF());
+            default -> throw new IOException("Unexpected backpack server status " + response.status);
+        };
+    }
+
+    /**
+     * Returns the open connection, connecting if there is none.
+     *
+     * @return the connection
+     * @throws IOException if the store is closed or the server cannot be reached
+     */
+    private synchronized Connection connection() throws IOException {
+        if (closed) throw new IOException("Backpack store is closed");
+        if (connection != null && !connection.failed) return connection;
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+        } catch (IOException e) {
+            socket.close();
+            throw new IOException("Failed to connect to backpack server " + host + ":" + port, e);
+        }
+        connection = new Connection(socket);
+        return connection;
+    }
+
+    /**
+     * One TCP connection and the requests in flight on it.
+     */
+    private static final class Connection {
+
+        /** Underlying socket. */
+        final Socket socket;
+
+        /** Request frames waiting for the writer thread. */
+        final BlockingQueue<byte[]> outbound = new ArrayBlockingQueue<>(WRITE_QUEUE_CAPACITY);
+
+        /** Response futures by request id. */
+        final Map<Long, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+
+        /** Writer thread, the only thread touching the request stream. */
+        final Thread writer;
+
+        /** {@link System#nanoTime()} at which the current write started, or {@code 0} while idle. */
+        volatile long writeStarted;
+
+        /** Whether the connection failed; set once. */
+        volatile boolean failed;
+
+        /**
+         * Wraps a connected socket and starts its writer and response reader.
+         *
+         * @param socket connected socket
+         * @throws IOException if the socket streams cannot be opened
+         */
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.writer = new Thread(() -> write(out), "MCEngineBackPack-RemoteWriter");
+            writer.setDaemon(true);
+            writer.start();
+            Thread reader = new Thread(() -> read(in), "MCEngineBackPack-RemoteReader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        /**
+         * Queues a request for writing without waiting for earlier requests to be answered.
+         *
+         * @param requestId     request id
+         * @param frame         request frame
+         * @param timeoutMillis longest wait for room in the write queue, in milliseconds
+         * @return future of the response payload (status and body)
+         * @throws IOException if the request cannot be queued
+         */
+        CompletableFuture<byte[]> send(long requestId, byte[] frame, int timeoutMillis) throws IOException {
+            checkStalled(timeoutMillis);
+            CompletableFuture<byte[]> response = new CompletableFuture<>();
+            pending.put(requestId, response);
+            try {
+                if (!outbound.offer(frame, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    pending.remove(requestId);
+                    throw new IOException("Backpack server is not keeping up; " + outbound.size() + " requests are waiting to be written");
+                }
+            } catch (InterruptedException e) {
+                pending.remove(requestId);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while queueing a backpack server request");
+            }
+            // A failure racing the registration above may have missed this request
+            if (failed) response.completeExceptionally(new IOException("Connection to backpack server lost"));
+            return response;
+        }
+
+        /**
+         * Fails the connection if a write has been stuck for longer than a timeout, which closes
+         * the socket and so releases the writer thread.
+         *
+         * @param timeoutMillis longest acceptable write, in milliseconds
+         */
+        void checkStalled(int timeoutMillis) {
+            long started = writeStarted;
+            if (started != 0L && System.nanoTime() - started > TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) {
+                fail(new IOException("Write to backpack server stalled for over " + timeoutMillis + " ms"));
+            }
+        }
+
+        /**
+         * Writer loop: writes queued requests in order until the connection fails.
+         *
+         * @param out request stream
+         */
+        private void write(DataOutputStream out) {
+            try {
+                while (!failed) {
+                    byte[] frame = outbound.take();
+                    writeStarted = System.nanoTime();
+                    BackPackRemoteProtocol.writeFrame(out, frame);
+                    writeStarted = 0L;
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (InterruptedException e) {
+                // Interrupted by fail(): the connection is gone
+            }
+        }
+
+        /**
+         * Reader loop: completes pending requests as their responses arrive.
+         *
+         * @param in response stream
+         */
+        private void read(DataInputStream in) {
+            try {
+                while (true) {
+                    byte[] frame = BackPackRemoteProtocol.readFrame(in);
+                    if (frame.length < Long.BYTES + 1) throw new IOException("Truncated backpack server response");
+                    long requestId = 0L;
+                    for (int i = 0; i < Long.BYTES; i++) requestId = (requestId << 8) | (frame[i] & 0xFF);
+                    CompletableFuture<byte[]> response = pending.remove(requestId);
+                    if (response != null) response.complete(Arrays.copyOfRange(frame, Long.BYTES, frame.length));
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Marks the connection failed, closes it, and fails every pending request.
+         *
+         * @param cause failure reported to the pending requests
+         */
+        void fail(IOException cause) {
+            failed = true;
+            writer.interrupt();
+            outbound.clear();
+            try {
+                socket.close();
+            } catch (IOException e) {
+                cause.addSuppressed(e);
+            }
+            IOException lost = new IOException("Connection to backpack server lost", cause);
+            for (Long requestId : pending.keySet()) {
+                CompletableFuture<byte[]> response = pending.remove(requestId);
+                if (response != null) response.completeExceptionally(lost);
+            }
+        }
+    }
+
+    /**
+     * A decoded response.
+     *
+     * @param status response status
+     * @param body   response body, positioned after the status
+     */
+    private record Response(int status, DataInputStream body) {}
+}
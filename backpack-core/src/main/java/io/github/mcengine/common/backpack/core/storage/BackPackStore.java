@@ -0,0 +1,101 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Plugin-owned store for encoded backpack contents, keyed by backpack id.
+ *
+ * <p>Used by the external storage mode, in which backpack items carry only their id and the
+ * encoded slot contents live here. Implementations perform blocking I/O and are called off the
+ * main thread by the save queue and open pipeline; they must be safe for concurrent use with
+ * distinct ids. Writes to the same id are serialized by the caller.</p>
+ *
+ * <p>Stores may also keep slot-level delta records ({@link #supportsDeltas()}): deltas are appended
+ * after the full record and returned in order by {@link #loadDeltas(UUID)}. Storing or deleting a
+ * record discards its deltas.</p>
+ *
+ * <p>Stores shared with other writers (other servers, external tooling) may version their records
+ * and reject a write made against a stale version with a {@link BackPackConflictException}; the
+ * save queue then discards the save and forgets what it cached for the backpack.</p>
+ */
+public interface BackPackStore extends Closeable {
+
+    /**
+     * Loads the encoded contents of a backpack.
+     *
+     * @param backpackId stable backpack id
+     * @return encoded contents, or {@code null} if the store has no record for the id
+     * @throws IOException if the record cannot be read
+     */
+    byte[] load(UUID backpackId) throws IOException;
+
+    /**
+     * Loads the encoded contents of several backpacks. Remote stores override this to fetch all
+     * of them in one round trip; the default loads them one by one.
+     *
+     * @param backpackIds stable backpack ids
+     * @return encoded contents by id; ids without a record are absent
+     * @throws IOException if a record cannot be read
+     */
+    default Map<UUID, byte[]> loadAll(Collection<UUID> backpackIds) throws IOException {
+        Map<UUID, byte[]> records = new HashMap<>();
+        for (UUID id : backpackIds) {
+            byte[] data = load(id);
+            if (data != null) records.put(id, data);
+        }
+        return records;
+    }
+
+    /**
+     * Stores (replacing) the encoded contents of a backpack.
+     *
+     * @param backpackId stable backpack id
+     * @param data       encoded contents
+     * @throws IOException if the record cannot be written
+     */
+    void store(UUID backpackId, byte[] data) throws IOException;
+
+    /**
+     * Deletes the record of a backpack if present.
+     *
+     * @param backpackId stable backpack id
+     * @throws IOException if the record cannot be deleted
+     */
+    void delete(UUID backpackId) throws IOException;
+
+    /**
+     * @return {@code true} if the store implements {@link #appendDelta} and {@link #loadDeltas}
+     */
+    default boolean supportsDeltas() {
+        return false;
+    }
+
+    /**
+     * Appends a delta record on top of the stored record of a backpack.
+     *
+     * @param backpackId stable backpack id
+     * @param delta      encoded delta
+     * @throws IOException                   if the delta cannot be written
+     * @throws UnsupportedOperationException if the store does not support deltas
+     */
+    default void appendDelta(UUID backpackId, byte[] delta) throws IOException {
+        throw new UnsupportedOperationException("Backpack store does not support delta records");
+    }
+
+    /**
+     * Loads the delta records appended since the last full record, oldest first.
+     *
+     * @param backpackId stable backpack id
+     * @return delta records (empty if none or unsupported)
+     * @throws IOException if the deltas cannot be read
+     */
+    default List<byte[]> loadDeltas(UUID backpackId) throws IOException {
+        return List.of();
+    }
+}
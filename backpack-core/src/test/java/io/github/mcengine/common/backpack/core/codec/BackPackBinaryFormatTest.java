@@ -0,0 +1,82 @@
+package io.github.mcengine.common.backpack.core.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link BackPackBinaryFormat}, including rejection of hostile compressed headers.
+ */
+class BackPackBinaryFormatTest {
+
+    private static final int ITEM_FORMAT = 1;
+
+    private static byte[][] slots(int count, String prefix) {
+        byte[][] slots = new byte[count][];
+        for (int slot = 0; slot < count; slot += 2) slots[slot] = (prefix + slot).repeat(20).getBytes(StandardCharsets.UTF_8);
+        return slots;
+    }
+
+    private static void assertSlots(byte[][] expected, byte[][] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int slot = 0; slot < expected.length; slot++) assertArrayEquals(expected[slot], actual[slot]);
+    }
+
+    @Test
+    void roundTripsPlainAndCompressedBodies() throws IOException {
+        byte[][] slots = slots(27, "item-");
+        byte[] plain = new BackPackBinaryFormat(Integer.MAX_VALUE).encode(slots, ITEM_FORMAT);
+        byte[] compressed = new BackPackBinaryFormat(0).encode(slots, ITEM_FORMAT);
+        assertFalse(BackPackBinaryFormat.isCompressed(plain));
+        assertTrue(BackPackBinaryFormat.isCompressed(compressed));
+
+        for (byte[] data : List.of(plain, compressed)) {
+            BackPackBinaryFormat.Decoded decoded = new BackPackBinaryFormat(0).decode(data);
+            assertEquals(ITEM_FORMAT, decoded.itemFormat());
+            assertSlots(slots, decoded.slots());
+            assertNull(decoded.slots()[1]);
+        }
+    }
+
+    @Test
+    void rejectsOversizedDecompressedLength() {
+        // Header claiming a 2 GB body behind two bytes of input; must fail before allocating it
+        byte[] data = {'B', 'P', 1, 1, ITEM_FORMAT, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 0x03, 0x00};
+        assertThrows(IOException.class, () -> new BackPackBinaryFormat(0).decode(data));
+    }
+
+    @Test
+    void rejectsNegativeDecompressedLength() {
+        byte[] data = {'B', 'P', 1, 1, ITEM_FORMAT, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 0x03, 0x00};
+        assertThrows(IOException.class, () -> new BackPackBinaryFormat(0).decode(data));
+    }
+
+    @Test
+    void encodesAndDecodesConcurrentlyOnVirtualThreads() throws Exception {
+        BackPackBinaryFormat format = new BackPackBinaryFormat(0);
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int task = 0; task < 500; task++) {
+                byte[][] slots = slots(54, "t" + task + "-");
+                tasks.add(threads.submit(() -> {
+                    assertSlots(slots, format.decode(format.encode(slots, ITEM_FORMAT)).slots());
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) task.get();
+        }
+    }
+}
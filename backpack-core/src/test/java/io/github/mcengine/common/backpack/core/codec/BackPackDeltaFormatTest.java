@@ -0,0 +1,109 @@
+package io.github.mcengine.common.backpack.core.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link BackPackDeltaFormat}, including folding deltas onto a full payload.
+ */
+class BackPackDeltaFormatTest {
+
+    private static final int ITEM_FORMAT = 1;
+
+    private static byte[] item(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        byte[] record = BackPackDeltaFormat.encode(42L, ITEM_FORMAT, 27, new int[] {1, 5}, new byte[][] {item("a"), null});
+        BackPackDeltaFormat.Delta delta = BackPackDeltaFormat.decode(record);
+
+        assertEquals(42L, delta.baseStamp());
+        assertEquals(ITEM_FORMAT, delta.itemFormat());
+        assertEquals(27, delta.slotCount());
+        assertArrayEquals(new int[] {1, 5}, delta.slots());
+        assertArrayEquals(item("a"), delta.items()[0]);
+        assertNull(delta.items()[1]);
+    }
+
+    @Test
+    void rejectsOutOfRangeSlot() {
+        byte[] record = BackPackDeltaFormat.encode(0L, ITEM_FORMAT, 9, new int[] {9}, new byte[][] {item("x")});
+        assertThrows(IOException.class, () -> BackPackDeltaFormat.decode(record));
+    }
+
+    @Test
+    void foldKeepsLastChangePerSlot() throws IOException {
+        byte[] base = new BackPackBinaryFormat(Integer.MAX_VALUE).encode(new byte[][] {item("a"), item("b"), null}, ITEM_FORMAT);
+        long stamp = BackPackDeltaFormat.baseStampOf(base);
+        List<byte[]> deltas = List.of(
+                BackPackDeltaFormat.encode(stamp, ITEM_FORMAT, 3, new int[] {0, 2}, new byte[][] {item("c"), item("d")}),
+                BackPackDeltaFormat.encode(stamp, 2, 3, new int[] {0}, new byte[][] {null}));
+
+        BackPackDeltaFormat.Folded folded = BackPackDeltaFormat.fold(stamp, 3, deltas);
+
+        assertEquals(3, folded.slotCount());
+        assertTrue(folded.replaced().get(0));
+        assertFalse(folded.replaced().get(1), "untouched slots keep the base item");
+        assertNull(folded.items()[0]);
+        assertEquals(2, folded.itemFormats()[0]);
+        assertArrayEquals(item("d"), folded.items()[2]);
+        assertEquals(ITEM_FORMAT, folded.itemFormats()[2]);
+    }
+
+    @Test
+    void foldSkipsDeltasOfReplacedBase() throws IOException {
+        byte[] base = new BackPackBinaryFormat(Integer.MAX_VALUE).encode(new byte[][] {item("a")}, ITEM_FORMAT);
+        long stamp = BackPackDeltaFormat.baseStampOf(base);
+        List<byte[]> deltas = List.of(
+                BackPackDeltaFormat.encode(stamp + 1, ITEM_FORMAT, 1, new int[] {0}, new byte[][] {item("stale")}));
+
+        BackPackDeltaFormat.Folded folded = BackPackDeltaFormat.fold(stamp, 1, deltas);
+
+        assertEquals(1, folded.slotCount());
+        assertTrue(folded.replaced().isEmpty());
+    }
+
+    @Test
+    void shrinkThenGrowClearsDroppedSlots() throws IOException {
+        long stamp = 7L;
+        List<byte[]> deltas = List.of(
+                BackPackDeltaFormat.encode(stamp, ITEM_FORMAT, 2, new int[0], new byte[0][]),
+                BackPackDeltaFormat.encode(stamp, ITEM_FORMAT, 6, new int[] {5}, new byte[][] {item("e")}));
+
+        BackPackDeltaFormat.Folded folded = BackPackDeltaFormat.fold(stamp, 4, deltas);
+
+        assertEquals(6, folded.slotCount());
+        assertFalse(folded.replaced().get(1));
+        assertTrue(folded.replaced().get(2));
+        assertTrue(folded.replaced().get(3));
+        assertNull(folded.items()[2]);
+        assertNull(folded.items()[3]);
+        assertFalse(folded.replaced().get(4), "slots new to the backpack start empty without a delta entry");
+        assertArrayEquals(item("e"), folded.items()[5]);
+    }
+
+    @Test
+    void shrinkDropsReplacedSlotsBeyondCount() throws IOException {
+        long stamp = 7L;
+        List<byte[]> deltas = List.of(
+                BackPackDeltaFormat.encode(stamp, ITEM_FORMAT, 4, new int[] {3}, new byte[][] {item("x")}),
+                BackPackDeltaFormat.encode(stamp, ITEM_FORMAT, 2, new int[0], new byte[0][]));
+
+        BackPackDeltaFormat.Folded folded = BackPackDeltaFormat.fold(stamp, 4, deltas);
+
+        assertEquals(2, folded.slotCount());
+        assertTrue(folded.replaced().isEmpty());
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.mcengine.common.backpack.core.memory;
+
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Tests that {@link BackPackMemoryPressureMonitor} shares the JVM-wide usage thresholds politely.
+ */
+class BackPackMemoryPressureMonitorTest {
+
+    private final Logger logger = Logger.getLogger("BackPackMemoryPressureMonitorTest");
+
+    private static List<MemoryPoolMXBean> thresholdPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() && pool.getUsage().getMax() > 0)
+                .toList();
+    }
+
+    @Test
+    void armsFreePoolsAndClearsThemOnClose() {
+        List<MemoryPoolMXBean> pools = thresholdPools();
+        assumeFalse(pools.isEmpty(), "no heap pool supports usage thresholds");
+        pools.forEach(pool -> assertEquals(0L, pool.getUsageThreshold()));
+
+        BackPackMemoryPressureMonitor monitor = new BackPackMemoryPressureMonitor(0.99, new BackPackMetrics(), logger);
+        assertTrue(monitor.isArmed());
+        pools.forEach(pool -> assertTrue(pool.getUsageThreshold() > 0));
+
+        monitor.close();
+        pools.forEach(pool -> assertEquals(0L, pool.getUsageThreshold()));
+    }
+
+    @Test
+    void leavesThresholdsSetByOthersAlone() {
+        List<MemoryPoolMXBean> pools = thresholdPools();
+        assumeFalse(pools.isEmpty(), "no heap pool supports usage thresholds");
+        long[] foreign = new long[pools.size()];
+        for (int i = 0; i < foreign.length; i++) {
+            foreign[i] = pools.get(i).getUsage().getMax() - 1;
+            pools.get(i).setUsageThreshold(foreign[i]);
+        }
+        try {
+            BackPackMemoryPressureMonitor monitor = new BackPackMemoryPressureMonitor(0.5, new BackPackMetrics(), logger);
+            assertFalse(monitor.isArmed());
+            for (int i = 0; i < foreign.length; i++) assertEquals(foreign[i], pools.get(i).getUsageThreshold());
+
+            monitor.close();
+            for (int i = 0; i < foreign.length; i++) assertEquals(foreign[i], pools.get(i).getUsageThreshold());
+        } finally {
+            pools.forEach(pool -> pool.setUsageThreshold(0L));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.mcengine.common.backpack.core.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link BackPackHandOff}.
+ */
+class BackPackHandOffTest {
+
+    /** Target queueing tasks until the test runs them or retires the target. */
+    private static final class FakeTarget implements BackPackHandOff.Target {
+
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<Runnable> retired = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable task, Runnable retired) {
+            tasks.add(task);
+            this.retired.add(retired);
+        }
+
+        void runAll() {
+            tasks.forEach(Runnable::run);
+            tasks.clear();
+            retired.clear();
+        }
+
+        void retireAll() {
+            retired.forEach(Runnable::run);
+            tasks.clear();
+            retired.clear();
+        }
+    }
+
+    @Test
+    void completesOnTheTarget() {
+        FakeTarget target = new FakeTarget();
+        CompletableFuture<String> source = new CompletableFuture<>();
+        List<String> discarded = new ArrayList<>();
+        CompletableFuture<String> handed = BackPackHandOff.handOff(source, target, discarded::add);
+
+        source.complete("contents");
+        assertFalse(handed.isDone(), "nothing completes before the target runs the task");
+
+        target.runAll();
+        assertEquals("contents", handed.join());
+        assertTrue(discarded.isEmpty());
+    }
+
+    @Test
+    void retiredTargetDiscardsTheResultAndCancels() {
+        FakeTarget target = new FakeTarget();
+        CompletableFuture<String> source = new CompletableFuture<>();
+        List<String> discarded = new ArrayList<>();
+        CompletableFuture<String> handed = BackPackHandOff.handOff(source, target, discarded::add);
+        List<Throwable> seen = new ArrayList<>();
+        handed.whenComplete((value, error) -> seen.add(error));
+
+        source.complete("contents");
+        target.retireAll();
+
+        assertEquals(List.of("contents"), discarded);
+        assertTrue(handed.isCancelled());
+        assertEquals(1, seen.size(), "dependent stages still run, so leases waiting on them are released");
+        assertInstanceOf(CancellationException.class, seen.get(0));
+    }
+
+    @Test
+    void failureReachesTheTargetWithoutDiscarding() {
+        FakeTarget target = new FakeTarget();
+        CompletableFuture<String> source = new CompletableFuture<>();
+        List<String> discarded = new ArrayList<>();
+        CompletableFuture<String> handed = BackPackHandOff.handOff(source, target, discarded::add);
+        IllegalStateException failure = new IllegalStateException("load failed");
+
+        source.completeExceptionally(failure);
+        target.retireAll();
+
+        CompletionException thrown = assertThrows(CompletionException.class, handed::join);
+        assertSame(failure, thrown.getCause());
+        assertTrue(discarded.isEmpty());
+    }
+
+    @Test
+    void schedulingFailureCountsAsRetired() {
+        CompletableFuture<String> source = CompletableFuture.completedFuture("contents");
+        List<String> discarded = new ArrayList<>();
+        CompletableFuture<String> handed = BackPackHandOff.handOff(source, (task, retired) -> {
+            throw new IllegalStateException("scheduler shut down");
+        }, discarded::add);
+
+        assertEquals(List.of("contents"), discarded);
+        assertThrows(CancellationException.class, handed::join);
+    }
+
+    @Test
+    void nullDiscardIsAllowed() {
+        FakeTarget target = new FakeTarget();
+        CompletableFuture<String> handed = BackPackHandOff.handOff(CompletableFuture.completedFuture("contents"), target, null);
+
+        target.retireAll();
+        assertThrows(CancellationException.class, handed::join);
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.mcengine.common.backpack.core.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link BackPackLockTable}.
+ */
+class BackPackLockTableTest {
+
+    @Test
+    void contendedAcquireReportsHolder() {
+        BackPackLockTable<Object> locks = new BackPackLockTable<>(4);
+        UUID id = UUID.randomUUID();
+        Object first = new Object();
+        Object second = new Object();
+
+        assertNull(locks.tryAcquire(id, first));
+        assertSame(first, locks.tryAcquire(id, second));
+        assertSame(first, locks.holder(id));
+        assertNull(locks.tryAcquire(id, first), "re-acquiring with the holder succeeds");
+    }
+
+    @Test
+    void releaseOnlyByHolder() {
+        BackPackLockTable<Object> locks = new BackPackLockTable<>(4);
+        UUID id = UUID.randomUUID();
+        Object holder = new Object();
+        locks.tryAcquire(id, holder);
+
+        assertFalse(locks.release(id, new Object()));
+        assertSame(holder, locks.holder(id));
+        assertTrue(locks.release(id, holder));
+        assertNull(locks.holder(id));
+        assertEquals(0, locks.size());
+    }
+
+    @Test
+    void exactlyOneConcurrentAcquirerWins() throws InterruptedException {
+        BackPackLockTable<Object> locks = new BackPackLockTable<>(16);
+        int ids = 64;
+        int threads = 8;
+        List<UUID> backpacks = new ArrayList<>();
+        for (int i = 0; i < ids; i++) backpacks.add(UUID.randomUUID());
+
+        AtomicInteger wins = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> racers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread racer = new Thread(() -> {
+                Object lease = new Object();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (UUID id : backpacks) {
+                    if (locks.tryAcquire(id, lease) == null) wins.incrementAndGet();
+                }
+            });
+            racer.start();
+            racers.add(racer);
+        }
+        start.countDown();
+        for (Thread racer : racers) racer.join();
+
+        assertEquals(ids, wins.get());
+        assertEquals(ids, locks.size());
+        locks.clear();
+        assertEquals(0, locks.size());
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link BackPackFileStore}, including recovery of its delta sidecar.
+ */
+class BackPackFileStoreTest {
+
+    @TempDir
+    Path folder;
+
+    private final UUID id = UUID.fromString("0f4c9a2e-0000-4000-8000-000000000001");
+
+    private Path sidecar() {
+        return folder.resolve("0f").resolve(id + ".delta");
+    }
+
+    @Test
+    void fullWriteReplacesRecordAndDropsDeltas() throws IOException {
+        BackPackFileStore store = new BackPackFileStore(folder);
+        assertNull(store.load(id));
+        store.store(id, new byte[] {1, 2});
+        store.appendDelta(id, new byte[] {3});
+        assertEquals(1, store.loadDeltas(id).size());
+
+        store.store(id, new byte[] {4});
+        assertArrayEquals(new byte[] {4}, store.load(id));
+        assertTrue(store.loadDeltas(id).isEmpty());
+        store.delete(id);
+        assertNull(store.load(id));
+    }
+
+    @Test
+    void appendAfterTornFrameTruncatesToLastGoodFrame() throws IOException {
+        BackPackFileStore store = new BackPackFileStore(folder);
+        store.appendDelta(id, new byte[] {1, 1, 1});
+        store.appendDelta(id, new byte[] {2, 2, 2});
+        // Crash mid-append: the last frame lost its final bytes
+        try (FileChannel channel = FileChannel.open(sidecar(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+        assertEquals(1, store.loadDeltas(id).size());
+
+        store.appendDelta(id, new byte[] {3});
+        List<byte[]> deltas = store.loadDeltas(id);
+        assertEquals(2, deltas.size());
+        assertArrayEquals(new byte[] {1, 1, 1}, deltas.get(0));
+        assertArrayEquals(new byte[] {3}, deltas.get(1));
+    }
+
+    @Test
+    void corruptFrameStopsLoadAndIsReplacedOnAppend() throws IOException {
+        BackPackFileStore store = new BackPackFileStore(folder);
+        store.appendDelta(id, new byte[] {1, 1});
+        store.appendDelta(id, new byte[] {2, 2});
+        store.appendDelta(id, new byte[] {3, 3});
+        // Flip a payload byte of the second frame; its length still fits, only the checksum catches it
+        byte[] data = Files.readAllBytes(sidecar());
+        data[4 + 8 + 2 + 8] ^= 0x7F;
+        Files.write(sidecar(), data);
+
+        List<byte[]> deltas = store.loadDeltas(id);
+        assertEquals(1, deltas.size());
+
+        store.appendDelta(id, new byte[] {4});
+        deltas = store.loadDeltas(id);
+        assertEquals(2, deltas.size());
+        assertArrayEquals(new byte[] {4}, deltas.get(1));
+        assertEquals(4 + (8 + 2) + (8 + 1), Files.size(sidecar()));
+    }
+
+    @Test
+    void tornMagicStartsFreshSidecar() throws IOException {
+        BackPackFileStore store = new BackPackFileStore(folder);
+        Files.createDirectories(sidecar().getParent());
+        Files.write(sidecar(), new byte[] {0x42, 0x50});
+        assertTrue(store.loadDeltas(id).isEmpty());
+
+        store.appendDelta(id, new byte[] {9});
+        assertEquals(1, store.loadDeltas(id).size());
+    }
+
+    @Test
+    void legacySidecarLoadsAndIsRewrittenOnAppend() throws IOException {
+        BackPackFileStore store = new BackPackFileStore(folder);
+        Files.createDirectories(sidecar().getParent());
+        ByteBuffer legacy = ByteBuffer.allocate(4 + 2 + 4 + 1).putInt(2).put(new byte[] {1, 1}).putInt(1).put(new byte[] {2});
+        Files.write(sidecar(), legacy.array());
+        assertEquals(2, store.loadDeltas(id).size());
+
+        store.appendDelta(id, new byte[] {3});
+        List<byte[]> deltas = store.loadDeltas(id);
+        assertEquals(3, deltas.size());
+        assertArrayEquals(new byte[] {1, 1}, deltas.get(0));
+        assertArrayEquals(new byte[] {2}, deltas.get(1));
+        assertArrayEquals(new byte[] {3}, deltas.get(2));
+        assertEquals(0x42504453, ByteBuffer.wrap(Files.readAllBytes(sidecar())).getInt(0));
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link BackPackJdbcStore} against an embedded SQLite database.
+ */
+class BackPackJdbcStoreTest {
+
+    @TempDir
+    Path folder;
+
+    private BackPackJdbcStore open(BackPackMetrics metrics) throws IOException {
+        String url = "jdbc:sqlite:" + folder.resolve("backpacks.db");
+        return new BackPackJdbcStore(url, null, null, "backpacks", 2, 16, 0L, metrics);
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        try (BackPackJdbcStore store = open(new BackPackMetrics())) {
+            UUID id = UUID.randomUUID();
+            assertNull(store.load(id));
+            store.store(id, new byte[] {1, 2, 3});
+            store.store(id, new byte[] {4});
+            assertArrayEquals(new byte[] {4}, store.load(id));
+            store.delete(id);
+            assertNull(store.load(id));
+        }
+    }
+
+    @Test
+    void staleWriteConflicts() throws IOException {
+        BackPackMetrics metrics = new BackPackMetrics();
+        try (BackPackJdbcStore first = open(metrics); BackPackJdbcStore second = open(metrics)) {
+            UUID id = UUID.randomUUID();
+            first.store(id, new byte[] {1});
+            assertArrayEquals(new byte[] {1}, second.load(id));
+
+            first.store(id, new byte[] {2});
+            BackPackConflictException conflict = assertThrows(BackPackConflictException.class, () -> second.store(id, new byte[] {3}));
+            assertEquals(id, conflict.getBackpackId());
+            assertEquals(1L, metrics.get(BackPackMetrics.STORAGE_CONFLICTS));
+            assertArrayEquals(new byte[] {2}, first.load(id));
+
+            // After re-reading, the writer holds the current version again and may write
+            assertArrayEquals(new byte[] {2}, second.load(id));
+            second.store(id, new byte[] {3});
+            assertArrayEquals(new byte[] {3}, first.load(id));
+        }
+    }
+
+    @Test
+    void blindInsertOverExistingRowConflicts() throws IOException {
+        try (BackPackJdbcStore first = open(new BackPackMetrics()); BackPackJdbcStore second = open(new BackPackMetrics())) {
+            UUID id = UUID.randomUUID();
+            first.store(id, new byte[] {1});
+            assertThrows(BackPackConflictException.class, () -> second.store(id, new byte[] {2}));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Child process for {@link BackPackJournalStoreRecoveryTest}: writes to a journal until killed.
+ *
+ * <p>Prints {@code ack <slot> <counter>} after each save returns, so the parent knows which
+ * writes were acknowledged when it kills the process. In {@code compact} mode it compacts between
+ * rounds of saves, printing {@code compacting} before each compaction.</p>
+ */
+final class BackPackJournalCrashChild {
+
+    /** Number of distinct backpacks written. */
+    static final int BACKPACKS = 256;
+
+    /** Payload size in bytes. */
+    static final int PAYLOAD_BYTES = 8 * 1024;
+
+    /** Not instantiable. */
+    private BackPackJournalCrashChild() {}
+
+    /**
+     * @param args journal directory, then {@code append} or {@code compact}, then the first counter value
+     * @throws Exception on any failure; the parent sees the process exit
+     */
+    public static void main(String[] args) throws Exception {
+        Path directory = Path.of(args[0]);
+        boolean compact = args[1].equals("compact");
+        long counter = Long.parseLong(args[2]);
+        PrintStream out = System.out;
+
+        BackPackJournalStore store = new BackPackJournalStore(directory, 64 * 1024, 0.5, Logger.getLogger("journal-crash-child"));
+        for (;;) {
+            for (int slot = 0; slot < BACKPACKS; slot++) {
+                store.store(id(slot), payload(slot, ++counter));
+                out.println("ack " + slot + " " + counter);
+            }
+            out.flush();
+            if (compact) {
+                out.println("compacting");
+                out.flush();
+                store.compactNow();
+            }
+        }
+    }
+
+    /**
+     * @param slot backpack number
+     * @return stable id of the backpack
+     */
+    static UUID id(int slot) {
+        return new UUID(0x4A4F55524E414CL, slot);
+    }
+
+    /**
+     * Builds a payload whose contents are derived from its slot and counter, so a reader can tell
+     * which write it came from and whether it is intact.
+     *
+     * @param slot    backpack number
+     * @param counter write counter
+     * @return payload bytes
+     */
+    static byte[] payload(int slot, long counter) {
+        byte[] data = new byte[PAYLOAD_BYTES];
+        new Random(counter * 31 + slot).nextBytes(data);
+        ByteBuffer.wrap(data).putInt(slot).putLong(counter);
+        return data;
+    }
+}
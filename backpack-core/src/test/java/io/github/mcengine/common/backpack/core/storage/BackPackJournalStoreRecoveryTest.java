@@ -0,0 +1,163 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Crash-recovery tests for {@link BackPackJournalStore}: a child JVM writes to the journal and is
+ * killed mid-append or mid-compaction, and every save it acknowledged must survive the reopen.
+ */
+class BackPackJournalStoreRecoveryTest {
+
+    private static final Logger LOGGER = Logger.getLogger("journal-recovery-test");
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void acknowledgedSavesSurviveKillMidAppend() throws Exception {
+        long[] acked = new long[BackPackJournalCrashChild.BACKPACKS];
+        long counter = 0;
+        for (int round = 0; round < 3; round++) {
+            counter = crash("append", counter, acked, 600 + ThreadLocalRandom.current().nextInt(600), false);
+            verify(acked);
+        }
+    }
+
+    @Test
+    void acknowledgedSavesSurviveKillMidCompaction() throws Exception {
+        long[] acked = new long[BackPackJournalCrashChild.BACKPACKS];
+        long counter = 0;
+        for (int round = 0; round < 4; round++) {
+            counter = crash("compact", counter, acked, 2 * BackPackJournalCrashChild.BACKPACKS, true);
+            verify(acked);
+        }
+    }
+
+    @Test
+    void unfinishedCompactionIsDiscardedOnOpen() throws IOException {
+        byte[] data = BackPackJournalCrashChild.payload(0, 1);
+        try (BackPackJournalStore store = new BackPackJournalStore(folder, 64 * 1024, 0.5, LOGGER)) {
+            store.store(BackPackJournalCrashChild.id(0), data);
+        }
+        // A torn next generation that never got its final name
+        Path temporary = folder.resolve("journal-1.dat.tmp");
+        Files.write(temporary, new byte[] {0x42, 0x50, 0x4A, 0x52, 1, 2, 3});
+
+        try (BackPackJournalStore store = new BackPackJournalStore(folder, 64 * 1024, 0.5, LOGGER)) {
+            assertFalse(Files.exists(temporary));
+            assertArrayEquals(data, store.load(BackPackJournalCrashChild.id(0)));
+            store.compactNow();
+            assertArrayEquals(data, store.load(BackPackJournalCrashChild.id(0)));
+        }
+        try (BackPackJournalStore store = new BackPackJournalStore(folder, 64 * 1024, 0.5, LOGGER)) {
+            assertArrayEquals(data, store.load(BackPackJournalCrashChild.id(0)));
+            assertEquals(List.of(folder.resolve("journal-1.dat")), journalFiles());
+        }
+    }
+
+    /**
+     * Runs the child until it has acknowledged {@code kills} saves (after its first compaction in
+     * compact mode, plus a random delay), then kills it.
+     *
+     * @return the last counter value the child may have used
+     */
+    private long crash(String mode, long counter, long[] acked, int kills, boolean midCompaction) throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process child = new ProcessBuilder(java, "-cp", classPath(),
+                BackPackJournalCrashChild.class.getName(), folder.toString(), mode, Long.toString(counter))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        long last = counter;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.US_ASCII))) {
+            int seen = 0;
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith("ack ")) {
+                    String[] parts = line.split(" ");
+                    long value = Long.parseLong(parts[2]);
+                    acked[Integer.parseInt(parts[1])] = value;
+                    last = value;
+                    seen++;
+                } else if (midCompaction && line.equals("compacting") && seen >= kills) {
+                    Thread.sleep(ThreadLocalRandom.current().nextInt(20));
+                    break;
+                }
+                if (!midCompaction && seen >= kills) break;
+            }
+            assertNotNull(line, "child exited before it was killed");
+            child.destroyForcibly().waitFor();
+        } finally {
+            child.destroyForcibly();
+        }
+        // Writes after the last ack may or may not have landed; skip past them
+        return last + BackPackJournalCrashChild.BACKPACKS;
+    }
+
+    /**
+     * Reopens the journal and checks that every backpack holds an intact payload at least as new as
+     * its last acknowledged save, that no temporary generation is left, and that compaction works.
+     */
+    private void verify(long[] acked) throws IOException {
+        try (BackPackJournalStore store = new BackPackJournalStore(folder, 64 * 1024, 0.5, LOGGER)) {
+            assertTrue(temporaryFiles().isEmpty(), "temporary generations are deleted on open");
+            for (int slot = 0; slot < acked.length; slot++) {
+                if (acked[slot] == 0) continue;
+                byte[] data = store.load(BackPackJournalCrashChild.id(slot));
+                assertNotNull(data, "acknowledged save of backpack " + slot + " lost");
+                long counter = ByteBuffer.wrap(data).getLong(4);
+                assertTrue(counter >= acked[slot], "backpack " + slot + " rolled back to " + counter + " from " + acked[slot]);
+                assertArrayEquals(BackPackJournalCrashChild.payload(slot, counter), data, "backpack " + slot + " is corrupt");
+                acked[slot] = counter;
+            }
+            store.compactNow();
+        }
+        assertEquals(1, journalFiles().size(), "older generations are deleted after compaction");
+    }
+
+    /**
+     * @return class path holding the child and the store, wherever the test runner loaded them from
+     */
+    private static String classPath() throws URISyntaxException {
+        return Path.of(BackPackJournalCrashChild.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                + File.pathSeparator
+                + Path.of(BackPackJournalStore.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    private List<Path> journalFiles() throws IOException {
+        return list("journal-*.dat");
+    }
+
+    private List<Path> temporaryFiles() throws IOException {
+        return list("journal-*.dat.tmp");
+    }
+
+    private List<Path> list(String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, glob)) {
+            for (Path file : stream) files.add(file);
+        }
+        return files;
+    }
+}
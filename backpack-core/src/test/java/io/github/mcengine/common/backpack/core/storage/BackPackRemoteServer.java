@@ -0,0 +1,289 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-process stand-in for a network's shared backpack service, backed by any local
+ * {@link BackPackStore}, for testing {@link BackPackRemoteStore}.
+ *
+ * <p>It speaks the {@link BackPackRemoteProtocol} wire format and keeps the version of every
+ * record in the record itself, as an 8-byte prefix, so versions survive restarts. Requests on a
+ * connection are handled concurrently on virtual threads and answered as they complete; writes to
+ * the same backpack are compare-and-set under a striped lock. The locks are
+ * {@link ReentrantLock}s rather than monitors, since they are held across backing-store I/O and a
+ * virtual thread blocking inside {@code synchronized} pins its carrier thread.</p>
+ *
+ * <p>The server owns the backing store and closes it on {@link #close()}.</p>
+ */
+final class BackPackRemoteServer implements Closeable {
+
+    /** Number of lock stripes for versioned writes. */
+    private static final int STRIPES = 64;
+
+    /** Backing store; records are {@code long version} followed by the client's payload. */
+    private final BackPackStore backing;
+
+    /** Logger for connection failures. */
+    private final Logger logger;
+
+    /** Listening socket. */
+    private final ServerSocket serverSocket;
+
+    /** Request handlers. */
+    private final ExecutorService handlers = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Open client connections. */
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+    /** Known record versions (0 = no record), filled on first access. */
+    private final Map<UUID, Long> versions = new ConcurrentHashMap<>();
+
+    /** Lock stripes for versioned writes. */
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    /**
+     * Binds the server and starts accepting connections.
+     *
+     * @param backing store holding the records
+     * @param bind    address to listen on; port {@code 0} picks a free port
+     * @param logger  logger for connection failures
+     * @throws IOException if the address cannot be bound
+     */
+    BackPackRemoteServer(BackPackStore backing, InetSocketAddress bind, Logger logger) throws IOException {
+        this.backing = backing;
+        this.logger = logger;
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock();
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(bind);
+
+        Thread acceptor = new Thread(this::accept, "MCEngineBackPack-RemoteServer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket client : clients) client.close();
+        handlers.close();
+        backing.close();
+    }
+
+    /**
+     * Accept loop; each connection is read on its own virtual thread.
+     */
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                client.setTcpNoDelay(true);
+                clients.add(client);
+                handlers.execute(() -> serve(client));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) logger.log(Level.WARNING, "Backpack server failed to accept a connection.", e);
+            }
+        }
+    }
+
+    /**
+     * Reads requests from one connection and hands each to its own handler.
+     *
+     * @param client connected client
+     */
+    private void serve(Socket client) {
+        try (client) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+            ReentrantLock writeLock = new ReentrantLock();
+            while (true) {
+                byte[] request = BackPackRemoteProtocol.readFrame(in);
+                handlers.execute(() -> respond(out, writeLock, request));
+            }
+        } catch (IOException e) {
+            // Client disconnected
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    /**
+     * Handles one request and writes its response.
+     *
+     * @param out       response stream of the connection
+     * @param writeLock serializes responses on the connection
+     * @param request   request frame
+     */
+    private void respond(DataOutputStream out, ReentrantLock writeLock, byte[] request) {
+        BackPackRemoteProtocol.Frame response = new BackPackRemoteProtocol.Frame();
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(request));
+            int op = in.readUnsignedByte();
+            response.writeLong(in.readLong());
+            try {
+                switch (op) {
+                    case BackPackRemoteProtocol.OP_GET -> get(in, response);
+                    case BackPackRemoteProtocol.OP_PUT -> put(in, response);
+                    case BackPackRemoteProtocol.OP_DELETE -> delete(in, response);
+                    default -> throw new IOException("Unknown backpack protocol operation " + op);
+                }
+            } catch (IOException | RuntimeException e) {
+                long requestId = new DataInputStream(new ByteArrayInputStream(request, 1, Long.BYTES)).readLong();
+                response = new BackPackRemoteProtocol.Frame();
+                response.writeLong(requestId);
+                response.writeByte(BackPackRemoteProtocol.STATUS_ERROR);
+                response.writeUTF(String.valueOf(e.getMessage()));
+            }
+            writeLock.lock();
+            try {
+                BackPackRemoteProtocol.writeFrame(out, response.toByteArray());
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Backpack server dropped a response.", e);
+        }
+    }
+
+    /**
+     * Answers a batch read.
+     *
+     * @param in  request body
+     * @param out response being built, positioned after the request id
+     * @throws IOException if a record cannot be read
+     */
+    private void get(DataInputStream in, DataOutputStream out) throws IOException {
+        int count = in.readInt();
+        UUID[] ids = new UUID[count];
+        for (int i = 0; i < count; i++) ids[i] = BackPackRemoteProtocol.readUuid(in);
+
+        out.writeByte(BackPackRemoteProtocol.STATUS_OK);
+        for (UUID id : ids) {
+            byte[] record = backing.load(id);
+            if (record == null) {
+                out.writeLong(0L);
+                out.writeInt(-1);
+                continue;
+            }
+            long version = versionOf(record);
+            out.writeLong(version);
+            out.writeInt(record.length - Long.BYTES);
+            out.write(record, Long.BYTES, record.length - Long.BYTES);
+        }
+    }
+
+    /**
+     * Applies a versioned write if the record still has the expected version.
+     *
+     * @param in  request body
+     * @param out response being built, positioned after the request id
+     * @throws IOException if the record cannot be read or written
+     */
+    private void put(DataInputStream in, DataOutputStream out) throws IOException {
+        UUID id = BackPackRemoteProtocol.readUuid(in);
+        long expected = in.readLong();
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+
+        ReentrantLock stripe = stripe(id);
+        stripe.lock();
+        try {
+            long current = currentVersion(id);
+            if (current != expected) {
+                out.writeByte(BackPackRemoteProtocol.STATUS_CONFLICT);
+                out.writeLong(current);
+                return;
+            }
+            byte[] record = new byte[Long.BYTES + data.length];
+            long next = current + 1L;
+            for (int i = 0; i < Long.BYTES; i++) record[i] = (byte) (next >>> (56 - 8 * i));
+            System.arraycopy(data, 0, record, Long.BYTES, data.length);
+            backing.store(id, record);
+            versions.put(id, next);
+            out.writeByte(BackPackRemoteProtocol.STATUS_OK);
+            out.writeLong(next);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Removes a record.
+     *
+     * @param in  request body
+     * @param out response being built, positioned after the request id
+     * @throws IOException if the record cannot be deleted
+     */
+    private void delete(DataInputStream in, DataOutputStream out) throws IOException {
+        UUID id = BackPackRemoteProtocol.readUuid(in);
+        ReentrantLock stripe = stripe(id);
+        stripe.lock();
+        try {
+            backing.delete(id);
+            versions.put(id, 0L);
+        } finally {
+            stripe.unlock();
+        }
+        out.writeByte(BackPackRemoteProtocol.STATUS_OK);
+    }
+
+    /**
+     * Returns the current version of a record, reading it on first access. Caller holds the id's stripe.
+     *
+     * @param id backpack id
+     * @return the version, or {@code 0} if there is no record
+     * @throws IOException if the record cannot be read
+     */
+    private long currentVersion(UUID id) throws IOException {
+        Long known = versions.get(id);
+        if (known != null) return known;
+        byte[] record = backing.load(id);
+        long version = (record == null) ? 0L : versionOf(record);
+        versions.put(id, version);
+        return version;
+    }
+
+    /**
+     * @param record stored record
+     * @return the version prefix of the record
+     * @throws IOException if the record is too short to hold one
+     */
+    private static long versionOf(byte[] record) throws IOException {
+        if (record.length < Long.BYTES) throw new IOException("Truncated backpack server record");
+        long version = 0L;
+        for (int i = 0; i < Long.BYTES; i++) version = (version << 8) | (record[i] & 0xFF);
+        return version;
+    }
+
+    /**
+     * @param id backpack id
+     * @return lock stripe for the id
+     */
+    private ReentrantLock stripe(UUID id) {
+        return stripes[(id.hashCode() & 0x7FFFFFFF) % STRIPES];
+    }
+}
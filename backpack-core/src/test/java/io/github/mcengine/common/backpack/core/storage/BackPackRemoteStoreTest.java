@@ -0,0 +1,150 @@
+package io.github.mcengine.common.backpack.core.storage;
+
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Round trips {@link BackPackRemoteStore} through a {@link BackPackRemoteServer} over a real socket.
+ */
+class BackPackRemoteStoreTest {
+
+    @TempDir
+    Path folder;
+
+    private BackPackRemoteServer server;
+
+    private final List<BackPackRemoteStore> clients = new ArrayList<>();
+
+    private final UUID id = UUID.fromString("0f4c9a2e-0000-4000-8000-000000000002");
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new BackPackRemoteServer(new BackPackFileStore(folder),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), Logger.getLogger("BackPackRemoteStoreTest"));
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        for (BackPackRemoteStore client : clients) client.close();
+        server.close();
+    }
+
+    private BackPackRemoteStore client(BackPackMetrics metrics) {
+        BackPackRemoteStore client = new BackPackRemoteStore(InetAddress.getLoopbackAddress().getHostAddress(),
+                server.getPort(), 5000, metrics);
+        clients.add(client);
+        return client;
+    }
+
+    @Test
+    void storesLoadsAndDeletes() throws IOException {
+        BackPackRemoteStore store = client(new BackPackMetrics());
+        UUID missing = UUID.fromString("0f4c9a2e-0000-4000-8000-000000000003");
+        assertNull(store.load(id));
+
+        store.store(id, new byte[] {1, 2, 3});
+        store.store(id, new byte[] {4});
+        Map<UUID, byte[]> records = store.loadAll(List.of(id, missing));
+        assertEquals(1, records.size());
+        assertArrayEquals(new byte[] {4}, records.get(id));
+
+        store.delete(id);
+        assertNull(store.load(id));
+        store.store(id, new byte[] {5});
+        assertArrayEquals(new byte[] {5}, store.load(id));
+    }
+
+    @Test
+    void staleWriteFromAnotherServerIsRejected() throws IOException {
+        BackPackMetrics metrics = new BackPackMetrics();
+        BackPackRemoteStore first = client(metrics);
+        BackPackRemoteStore second = client(metrics);
+        first.store(id, new byte[] {1});
+        assertArrayEquals(new byte[] {1}, second.load(id));
+
+        first.store(id, new byte[] {2});
+        BackPackConflictException conflict = assertThrows(BackPackConflictException.class, () -> second.store(id, new byte[] {3}));
+        assertEquals(id, conflict.getBackpackId());
+        assertEquals(1L, metrics.get(BackPackMetrics.STORAGE_CONFLICTS));
+        assertArrayEquals(new byte[] {2}, first.load(id));
+
+        // After re-reading, the second server's write goes through
+        assertArrayEquals(new byte[] {2}, second.load(id));
+        second.store(id, new byte[] {3});
+        assertArrayEquals(new byte[] {3}, first.load(id));
+    }
+
+    @Test
+    void pipelinedWritesAreAllAnswered() throws Exception {
+        BackPackRemoteStore store = client(new BackPackMetrics());
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) ids.add(new UUID(0x0f4c9a2eL, i));
+
+        try (ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> writes = new ArrayList<>();
+            for (UUID each : ids) {
+                writes.add(writers.submit(() -> {
+                    store.store(each, each.toString().getBytes());
+                    return null;
+                }));
+            }
+            for (Future<?> write : writes) write.get();
+        }
+
+        Map<UUID, byte[]> records = store.loadAll(ids);
+        assertEquals(ids.size(), records.size());
+        for (UUID each : ids) assertArrayEquals(each.toString().getBytes(), records.get(each));
+    }
+
+    @Test
+    void serverThatStopsReadingFailsWritesInsteadOfBlocking() throws Exception {
+        try (ServerSocket stalled = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            List<Socket> accepted = new ArrayList<>();
+            Thread acceptor = Thread.ofVirtual().start(() -> {
+                try {
+                    accepted.add(stalled.accept()); // Never reads
+                } catch (IOException ignored) {
+                    // Closed by the test
+                }
+            });
+            BackPackRemoteStore store = new BackPackRemoteStore(InetAddress.getLoopbackAddress().getHostAddress(),
+                    stalled.getLocalPort(), 300, new BackPackMetrics());
+            clients.add(store);
+
+            // Far larger than the socket buffers, so the write cannot complete
+            byte[] large = new byte[32 * 1024 * 1024];
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                assertThrows(IOException.class, () -> store.store(id, large));
+                assertThrows(IOException.class, () -> store.store(id, new byte[] {1}));
+            });
+
+            acceptor.join();
+            for (Socket socket : accepted) socket.close();
+        }
+    }
+}
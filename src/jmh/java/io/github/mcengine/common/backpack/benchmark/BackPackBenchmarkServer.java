@@ -0,0 +1,114 @@
+package io.github.mcengine.common.backpack.benchmark;
+
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared fixtures for the backpack benchmarks.
+ *
+ * <p>Benchmarks run against a MockBukkit server so item meta, inventories, and events behave
+ * like on a real server without one. A placeholder {@code HeadDatabase} plugin is registered
+ * so {@code MCEngineBackPackCommon} passes its dependency check.</p>
+ */
+final class BackPackBenchmarkServer {
+
+    /** Slot count of the largest backpack. */
+    static final int SLOTS = 54;
+
+    /** Utility class; not instantiable. */
+    private BackPackBenchmarkServer() {}
+
+    /**
+     * Starts the mocked server and registers the placeholder dependency.
+     *
+     * @return the mocked server
+     */
+    static ServerMock start() {
+        ServerMock server = MockBukkit.mock();
+        MockBukkit.createMockPlugin("HeadDatabase");
+        return server;
+    }
+
+    /**
+     * Creates the plugin that owns the backpack services.
+     *
+     * @return a mocked plugin
+     */
+    static Plugin plugin() {
+        return MockBukkit.createMockPlugin("MCEngineBackPack");
+    }
+
+    /**
+     * Stops the mocked server.
+     */
+    static void stop() {
+        MockBukkit.unmock();
+    }
+
+    /**
+     * Builds an item with heavy meta: display name, eight lore lines, enchantments, and PDC entries.
+     *
+     * @param seed value mixed into the strings so items differ
+     * @return the item
+     */
+    static ItemStack heavyItem(int seed) {
+        ItemStack item = new ItemStack(Material.DIAMOND_SWORD);
+        ItemMeta meta = item.getItemMeta();
+        meta.setDisplayName("Blade #" + seed);
+
+        List<String> lore = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            lore.add("Lore line " + i + " of item " + seed + ", padded to look like real plugin lore");
+        }
+        meta.setLore(lore);
+
+        meta.addEnchant(Enchantment.SHARPNESS, 5, true);
+        meta.addEnchant(Enchantment.UNBREAKING, 3, true);
+        meta.addEnchant(Enchantment.MENDING, 1, true);
+
+        PersistentDataContainer data = meta.getPersistentDataContainer();
+        for (int i = 0; i < 4; i++) {
+            data.set(new NamespacedKey("benchmark", "tag" + i), PersistentDataType.STRING, "value-" + seed + "-" + i);
+        }
+
+        item.setItemMeta(meta);
+        return item;
+    }
+
+    /**
+     * Builds backpack contents.
+     *
+     * @param fill how many slots to fill
+     * @return {@value #SLOTS} slots of contents
+     */
+    static ItemStack[] contents(Fill fill) {
+        ItemStack[] contents = new ItemStack[SLOTS];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (fill == Fill.FULL || (fill == Fill.HALF && slot % 2 == 0)) contents[slot] = heavyItem(slot);
+        }
+        return contents;
+    }
+
+    /**
+     * Fill level of a benchmarked backpack.
+     */
+    enum Fill {
+        /** No items. */
+        EMPTY,
+        /** Every other slot holds an item. */
+        HALF,
+        /** Every slot holds an item. */
+        FULL
+    }
+}
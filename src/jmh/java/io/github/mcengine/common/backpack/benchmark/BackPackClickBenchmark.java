@@ -0,0 +1,145 @@
+package io.github.mcengine.common.backpack.benchmark;
+
+import io.github.mcengine.common.backpack.MCEngineBackPackCommon;
+import io.github.mcengine.common.backpack.listener.MCEngineBackPackListener;
+import io.github.mcengine.common.backpack.pipeline.BackPackHolder;
+import io.github.mcengine.common.backpack.session.BackPackSession;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.Plugin;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link MCEngineBackPackListener#onInventoryClick(InventoryClickEvent)} for a player
+ * viewing a chest or an open backpack, driven by a reused mocked click event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BackPackClickBenchmark {
+
+    /**
+     * Click scenario:
+     * <ul>
+     *   <li>{@code BOTTOM_PLAIN} – click in the player inventory (fast path, no item is inspected);</li>
+     *   <li>{@code TOP_PLAIN} – click in the chest with plain items on the cursor and in the slot;</li>
+     *   <li>{@code TOP_BACKPACK_CURSOR} – click in the chest with a backpack on the cursor (cancelled);</li>
+     *   <li>{@code SESSION_TOP_PLAIN} – click in an open backpack with plain items on the cursor and
+     *   in the slot (session lookup, both items filtered);</li>
+     *   <li>{@code SESSION_BOTTOM_SHIFT} – shift-click a plain item from the player inventory into an
+     *   open backpack;</li>
+     *   <li>{@code SESSION_HOTBAR_BACKPACK} – number-key swap of a hotbar backpack into an open
+     *   backpack (cancelled).</li>
+     * </ul>
+     */
+    @Param({"BOTTOM_PLAIN", "TOP_PLAIN", "TOP_BACKPACK_CURSOR",
+            "SESSION_TOP_PLAIN", "SESSION_BOTTOM_SHIFT", "SESSION_HOTBAR_BACKPACK"})
+    public String scenario;
+
+    /** Common facade owning the services. */
+    private MCEngineBackPackCommon common;
+
+    /** Listener under test. */
+    private MCEngineBackPackListener listener;
+
+    /** Reused click event. */
+    private InventoryClickEvent event;
+
+    /**
+     * Starts the server, opens a chest or a tracked backpack for a mocked player, and builds the
+     * click event.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        ServerMock server = BackPackBenchmarkServer.start();
+        Plugin plugin = BackPackBenchmarkServer.plugin();
+        common = new MCEngineBackPackCommon(plugin);
+        listener = new MCEngineBackPackListener(plugin);
+
+        PlayerMock player = server.addPlayer();
+        boolean session = scenario.startsWith("SESSION");
+        Inventory top;
+        if (session) {
+            // Opened the way the listener does it: the backpack sits in hotbar slot 0 and is tracked
+            ItemStack backpack = common.createBackpack("Backpack", "1", BackPackBenchmarkServer.SLOTS);
+            player.getInventory().setItem(0, backpack);
+            top = common.openBackpack(backpack);
+            BackPackHolder holder = (BackPackHolder) top.getHolder();
+            common.getSessions().open(player.getUniqueId(),
+                    new BackPackSession(holder.getBackpackId(), backpack, 0, BackPackSession.slotHashes(top)));
+        } else {
+            top = server.createInventory(null, BackPackBenchmarkServer.SLOTS);
+        }
+        top.setItem(0, BackPackBenchmarkServer.heavyItem(0));
+        player.getInventory().setItem(9, BackPackBenchmarkServer.heavyItem(1));
+        InventoryView view = player.openInventory(top);
+
+        if ("TOP_BACKPACK_CURSOR".equals(scenario)) {
+            player.setItemOnCursor(common.createBackpack("Backpack", "1", BackPackBenchmarkServer.SLOTS));
+        } else {
+            player.setItemOnCursor(BackPackBenchmarkServer.heavyItem(2));
+        }
+
+        // Raw slot 0 is the first top slot; raw slot 54 is player inventory slot 9
+        event = switch (scenario) {
+            case "BOTTOM_PLAIN" -> new InventoryClickEvent(view, InventoryType.SlotType.CONTAINER,
+                    BackPackBenchmarkServer.SLOTS, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+            case "SESSION_BOTTOM_SHIFT" -> new InventoryClickEvent(view, InventoryType.SlotType.CONTAINER,
+                    BackPackBenchmarkServer.SLOTS, ClickType.SHIFT_LEFT, InventoryAction.MOVE_TO_OTHER_INVENTORY);
+            case "SESSION_HOTBAR_BACKPACK" -> new InventoryClickEvent(view, InventoryType.SlotType.CONTAINER,
+                    0, ClickType.NUMBER_KEY, InventoryAction.HOTBAR_SWAP, 0);
+            default -> new InventoryClickEvent(view, InventoryType.SlotType.CONTAINER, 0, ClickType.LEFT, InventoryAction.PICKUP_ALL);
+        };
+    }
+
+    /**
+     * Flushes the services and stops the server.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        common.shutdown();
+        BackPackBenchmarkServer.stop();
+    }
+
+    /**
+     * @return whether the listener cancelled the click
+     */
+    @Benchmark
+    public boolean onInventoryClick() {
+        event.setCancelled(false);
+        listener.onInventoryClick(event);
+        return event.isCancelled();
+    }
+
+    /**
+     * Runs the click through both handlers a server calls: the nesting guard, then the
+     * session's change tracking for clicks that were not cancelled.
+     *
+     * @return whether the listener cancelled the click
+     */
+    @Benchmark
+    public boolean onInventoryClickTracked() {
+        event.setCancelled(false);
+        listener.onInventoryClick(event);
+        if (!event.isCancelled()) listener.onBackpackClickModify(event);
+        return event.isCancelled();
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.mcengine.common.backpack.benchmark;
+
+import io.github.mcengine.common.backpack.codec.BackPackContentCodec;
+import io.github.mcengine.common.backpack.codec.BackPackObjectStreamCodec;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost of a 54-slot backpack of heavy-meta items, for the binary codec
+ * and the legacy object-stream codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BackPackCodecBenchmark {
+
+    /** Fill level of the backpack. */
+    @Param({"EMPTY", "HALF", "FULL"})
+    public BackPackBenchmarkServer.Fill fill;
+
+    /** Binary codec with the default deflate threshold. */
+    private BackPackContentCodec codec;
+
+    /** Legacy object-stream codec. */
+    private BackPackObjectStreamCodec legacyCodec;
+
+    /** Contents being encoded. */
+    private ItemStack[] contents;
+
+    /** Contents pre-encoded by the binary codec. */
+    private byte[] encoded;
+
+    /** Contents pre-encoded by the legacy codec. */
+    private byte[] legacyEncoded;
+
+    /**
+     * Starts the server and prepares the contents and encoded payloads.
+     *
+     * @throws IOException if encoding fails
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BackPackBenchmarkServer.start();
+        codec = new BackPackContentCodec(512);
+        legacyCodec = new BackPackObjectStreamCodec();
+        contents = BackPackBenchmarkServer.contents(fill);
+        encoded = codec.encode(contents);
+        legacyEncoded = legacyCodec.encode(contents);
+    }
+
+    /**
+     * Stops the server.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BackPackBenchmarkServer.stop();
+    }
+
+    /**
+     * @return contents encoded by the binary codec
+     * @throws IOException if encoding fails
+     */
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return codec.encode(contents);
+    }
+
+    /**
+     * @return contents decoded by the binary codec
+     * @throws IOException if decoding fails
+     */
+    @Benchmark
+    public ItemStack[] decode() throws IOException {
+        return codec.decode(encoded);
+    }
+
+    /**
+     * @return contents encoded by the legacy codec
+     * @throws IOException if encoding fails
+     */
+    @Benchmark
+    public byte[] encodeLegacy() throws IOException {
+        return legacyCodec.encode(contents);
+    }
+
+    /**
+     * @return contents decoded by the legacy codec
+     * @throws IOException if decoding fails
+     */
+    @Benchmark
+    public ItemStack[] decodeLegacy() throws IOException {
+        return legacyCodec.decode(legacyEncoded);
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.mcengine.common.backpack.benchmark;
+
+import io.github.mcengine.api.backpack.MCEngineBackPackApi;
+import io.github.mcengine.common.backpack.MCEngineBackPackCommon;
+import io.github.mcengine.common.backpack.storage.BackPackItemFilter;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recognizing backpack and non-backpack stacks, through the API directly and through
+ * the item filter used by the listener. {@code PLAIN} carries heavy meta, which the filter passes
+ * on to the API; {@code BARE} carries none, the common case the filter rejects by itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BackPackIsBackpackBenchmark {
+
+    /** Kind of stack being tested. */
+    @Param({"BACKPACK", "PLAIN", "BARE"})
+    public String stack;
+
+    /** Common facade owning the services. */
+    private MCEngineBackPackCommon common;
+
+    /** Uncached backpack API. */
+    private MCEngineBackPackApi api;
+
+    /** Item filter in front of the API. */
+    private BackPackItemFilter itemFilter;
+
+    /** Stack being tested. */
+    private ItemStack item;
+
+    /**
+     * Starts the server, builds the services, and creates the tested stack.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        BackPackBenchmarkServer.start();
+        common = new MCEngineBackPackCommon(BackPackBenchmarkServer.plugin());
+        api = common.getBackpackApi();
+        itemFilter = common.getItemFilter();
+        item = switch (stack) {
+            case "BACKPACK" -> common.createBackpack("Backpack", "1", BackPackBenchmarkServer.SLOTS);
+            case "PLAIN" -> BackPackBenchmarkServer.heavyItem(0);
+            default -> new ItemStack(Material.COBBLESTONE, 64);
+        };
+    }
+
+    /**
+     * Flushes the services and stops the server.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        common.shutdown();
+        BackPackBenchmarkServer.stop();
+    }
+
+    /**
+     * @return the API verdict
+     */
+    @Benchmark
+    public boolean api() {
+        return api.isBackpack(item);
+    }
+
+    /**
+     * @return the filtered verdict
+     */
+    @Benchmark
+    public boolean filtered() {
+        return itemFilter.isBackpack(item);
+    }
+}
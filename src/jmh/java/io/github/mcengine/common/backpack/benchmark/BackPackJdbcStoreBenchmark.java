@@ -0,0 +1,134 @@
+package io.github.mcengine.common.backpack.benchmark;
+
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+import io.github.mcengine.common.backpack.core.storage.BackPackJdbcStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Write throughput of {@link BackPackJdbcStore} against an embedded SQLite database, in rows per
+ * second: each operation saves one 2 KiB payload from one of 16 concurrent savers, as the storage
+ * executor does when many backpacks close at once. {@code batchSize = 1} is the one-commit-per-row
+ * baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class BackPackJdbcStoreBenchmark {
+
+    /** Number of distinct backpacks written. */
+    private static final int BACKPACKS = 4096;
+
+    /** Maximum rows per transaction. */
+    @Param({"1", "64"})
+    public int batchSize;
+
+    /** Database directory. */
+    private Path directory;
+
+    /** Store under test. */
+    private BackPackJdbcStore store;
+
+    /** Backpack ids, striped across threads. */
+    private UUID[] ids;
+
+    /** Payload written by every operation. */
+    private byte[] payload;
+
+    /**
+     * Opens the store on a fresh database and inserts every row once, so operations are updates.
+     *
+     * @throws IOException if the database cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("backpack-jdbc-bench");
+        store = new BackPackJdbcStore("jdbc:sqlite:" + directory.resolve("backpacks.db"), null, null,
+                "backpack_contents", 4, batchSize, TimeUnit.MILLISECONDS.toNanos(2L), new BackPackMetrics());
+        payload = new byte[2048];
+        ThreadLocalRandom.current().nextBytes(payload);
+        ids = new UUID[BACKPACKS];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = UUID.randomUUID();
+            store.store(ids[i], payload);
+        }
+    }
+
+    /**
+     * Closes the store and deletes the database.
+     *
+     * @throws IOException if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    /**
+     * Per-thread cursor over a disjoint slice of the backpacks, so no two threads write the same
+     * id at once (the save queue guarantees the same).
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        /** Next thread slice to hand out. */
+        private static int nextSlice;
+
+        /** First id index of this thread's slice. */
+        private int base;
+
+        /** Offset of the next id within the slice. */
+        private int offset;
+
+        /**
+         * Claims a slice of the id space.
+         */
+        @Setup(Level.Trial)
+        public void setUp() {
+            synchronized (Cursor.class) {
+                base = (nextSlice++ * (BACKPACKS / 16)) % BACKPACKS;
+            }
+        }
+
+        /**
+         * @return index of the next backpack to write
+         */
+        int next() {
+            offset = (offset + 1) % (BACKPACKS / 16);
+            return base + offset;
+        }
+    }
+
+    /**
+     * Saves one row.
+     *
+     * @param cursor per-thread id cursor
+     * @throws IOException if the write fails
+     */
+    @Benchmark
+    public void store(Cursor cursor) throws IOException {
+        store.store(ids[cursor.next()], payload);
+    }
+}
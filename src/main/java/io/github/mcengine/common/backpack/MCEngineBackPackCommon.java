@@ -2,13 +2,56 @@ package io.github.mcengine.common.backpack;
 
 import io.github.mcengine.api.backpack.MCEngineBackPackApi;
 import io.github.mcengine.api.core.util.MCEngineCoreApiDispatcher;
+import io.github.mcengine.common.backpack.cache.BackPackWarmCache;
+import io.github.mcengine.common.backpack.codec.BackPackContentCodec;
+import io.github.mcengine.common.backpack.core.cache.BackPackOffHeapTier;
+import io.github.mcengine.common.backpack.core.cache.BackPackSnapshotCache;
+import io.github.mcengine.common.backpack.core.io.BackPackStorageExecutor;
+import io.github.mcengine.common.backpack.core.memory.BackPackMemoryPressureMonitor;
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+import io.github.mcengine.common.backpack.core.scheduler.BackPackHandOff;
+import io.github.mcengine.common.backpack.core.session.BackPackInUseException;
+import io.github.mcengine.common.backpack.core.session.BackPackLockTable;
+import io.github.mcengine.common.backpack.core.session.BackPackSessionRegistry;
+import io.github.mcengine.common.backpack.core.storage.BackPackBlobStore;
+import io.github.mcengine.common.backpack.core.storage.BackPackDedupStore;
+import io.github.mcengine.common.backpack.core.storage.BackPackDeltaLog;
+import io.github.mcengine.common.backpack.core.storage.BackPackFileStore;
+import io.github.mcengine.common.backpack.core.storage.BackPackJdbcStore;
+import io.github.mcengine.common.backpack.core.storage.BackPackJournalStore;
+import io.github.mcengine.common.backpack.core.storage.BackPackRemoteStore;
+import io.github.mcengine.common.backpack.core.storage.BackPackStore;
+import io.github.mcengine.common.backpack.pipeline.BackPackHolder;
+import io.github.mcengine.common.backpack.pipeline.BackPackOpenPipeline;
+import io.github.mcengine.common.backpack.pipeline.BackPackPersonalBackpacks;
+import io.github.mcengine.common.backpack.pipeline.BackPackPrefetcher;
+import io.github.mcengine.common.backpack.pipeline.BackPackSaveQueue;
+import io.github.mcengine.common.backpack.scheduler.BackPackScheduler;
+import io.github.mcengine.common.backpack.session.BackPackLease;
+import io.github.mcengine.common.backpack.session.BackPackSession;
+import io.github.mcengine.common.backpack.storage.BackPackItemFilter;
+import io.github.mcengine.common.backpack.storage.BackPackItemPayload;
 import org.bukkit.Bukkit;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
 /**
  * Common logic and command-dispatch facade for the MCEngine Backpack plugin.
  *
@@ -20,13 +63,76 @@ import org.bukkit.plugin.Plugin;
  * <p>Key responsibilities:</p>
  * <ul>
  *   <li>Provide a singleton access point for module-wide services.</li>
+ *   <li>Own the shared service registry so listeners, commands, and future components
+ *   resolve one warmed instance of each service instead of building their own.</li>
  *   <li>Expose a command dispatcher API (namespace, subcommands, tab completion).</li>
  *   <li>Offer convenience methods that delegate to {@link MCEngineBackPackApi}:</li>
  *   <ul>
  *     <li>Create backpack items.</li>
- *     <li>Open and save backpack inventories.</li>
+ *     <li>Open and save backpack inventories (synchronously or via the async open pipeline;
+ *     contents are stored as this module's own payload, legacy items are read through the API).</li>
  *     <li>Identify backpack items.</li>
  *   </ul>
+ *   <li>Own the save queue (write-behind for external stores) and flush it on {@link #shutdown()}.</li>
+ *   <li>Own the concurrent registry of live backpack sessions ({@link #getSessions()}).</li>
+ *   <li>Own the scheduler facade ({@link #getScheduler()}) routing work to entity, global, or async threads.</li>
+ *   <li>Own the player-bound backpacks, which are keyed by player and number instead of carried as items.</li>
+ * </ul>
+ *
+ * <p>Configuration keys (read from the owning plugin's config):</p>
+ * <ul>
+ *   <li>{@code save.tick-budget-micros} – main-thread time spent issuing queued store writes per tick (default 1000).</li>
+ *   <li>{@code save.async-encode} – encode queued store saves as soon as they are queued (default {@code true}).
+ *   In item mode contents are always written into the item when the backpack is closed.</li>
+ *   <li>{@code save.delta.full-every} – in {@code file}/{@code journal} mode, closes write only the
+ *   changed slots as a delta record, with a full snapshot after this many deltas; {@code 0}
+ *   writes every save in full (default 16).</li>
+ *   <li>{@code storage.mode} – {@code item} embeds contents in the backpack item meta (default);
+ *   {@code file} keeps only the backpack id on the item and stores contents under
+ *   {@code <data folder>/backpacks}; {@code journal} does the same with an append-only,
+ *   memory-mapped journal under {@code <data folder>/backpack-journal}; {@code jdbc} stores contents
+ *   as rows of a SQL table, readable by external tooling; {@code remote} stores contents on a shared
+ *   backpack server, so they follow players across a network.</li>
+ *   <li>{@code storage.io.max-concurrent} – maximum store loads/writes running at once on the
+ *   virtual-thread storage executor (default 64).</li>
+ *   <li>{@code storage.journal.initial-capacity-mb} – initial journal mapping size (default 16).</li>
+ *   <li>{@code storage.journal.compact-ratio} – dead-record share that triggers compaction (default 0.5).</li>
+ *   <li>{@code storage.jdbc.url} – JDBC URL for {@code jdbc} mode (default: SQLite at
+ *   {@code <data folder>/backpacks.db}); {@code storage.jdbc.username} and {@code storage.jdbc.password}
+ *   are optional.</li>
+ *   <li>{@code storage.jdbc.table} – table holding backpack rows (default {@code backpack_contents}).</li>
+ *   <li>{@code storage.jdbc.pool-size} – maximum pooled database connections (default 4).</li>
+ *   <li>{@code storage.jdbc.batch-size} – maximum rows committed per transaction (default 64).</li>
+ *   <li>{@code storage.jdbc.batch-delay-millis} – time a write waits for others to share its
+ *   transaction (default 5).</li>
+ *   <li>{@code storage.remote.host} / {@code storage.remote.port} – backpack server for {@code remote}
+ *   mode (default {@code localhost:25590}).</li>
+ *   <li>{@code storage.remote.timeout-millis} – connect and request timeout in {@code remote} mode (default 5000).</li>
+ *   <li>{@code storage.dedup.enabled} – in {@code file}/{@code journal} mode, store each distinct large
+ *   item once under {@code <data folder>/backpack-blobs}, shared by every backpack holding it, with
+ *   reference counting and background collection; turns off Deflate for saved contents (default {@code false}).</li>
+ *   <li>{@code storage.dedup.min-item-bytes} – encoded item size from which an item is deduplicated (default 256).</li>
+ *   <li>{@code scheduler.async-threads} – maximum concurrent async tasks (decode, encode, storage I/O)
+ *   on the virtual-thread pool (default: half the available processors, at least 2).</li>
+ *   <li>{@code prefetch.enabled} – decode a joining player's backpacks ahead of the first open (default {@code true}).</li>
+ *   <li>{@code prefetch.players-per-tick} – joining players whose prefetch starts per tick (default 2).</li>
+ *   <li>{@code prefetch.max-inflight} – prefetch loads running at once before new players wait (default 32).</li>
+ *   <li>{@code cache.snapshot.max-mb} – memory budget of the decoded-snapshot cache, measured in
+ *   encoded bytes; {@code 0} disables it (default 32; always off in {@code remote} mode).</li>
+ *   <li>{@code cache.offheap.max-mb} – direct-memory budget for encoded payloads of cold backpacks in
+ *   {@code file}/{@code journal} mode, so they reopen without store I/O; {@code 0} disables it (default 0).</li>
+ *   <li>{@code memory.shed-threshold} – share of the old-generation heap pool at which cached
+ *   snapshots start being shed in steps; {@code 0} disables shedding (default 0.85).</li>
+ *   <li>{@code open.contended} – what a player opening a backpack that is already open elsewhere gets:
+ *   {@code share} joins the open inventory as a live view, saved once when its last viewer closes it
+ *   (default); {@code deny} answers "in use". Item mode always denies, since the contents are saved
+ *   into the item of the viewer who opened them.</li>
+ *   <li>{@code personal.slots} – number of player-bound backpacks each player gets, opened with
+ *   {@code /backpack personal <n>}; loaded on join and written back on quit. Needs a storage mode
+ *   other than {@code item}; {@code 0} disables them (default 0).</li>
+ *   <li>{@code personal.rows} – rows of a player-bound backpack, 1–6 (default 3).</li>
+ *   <li>{@code codec.deflate-threshold-bytes} – encoded body size at or above which saved contents
+ *   are Deflate-compressed (default 512).</li>
  * </ul>
  */
 public class MCEngineBackPackCommon {
@@ -40,9 +146,69 @@ public class MCEngineBackPackCommon {
     /** Core Backpack API used to create, open, and persist backpack item data. */
     private final MCEngineBackPackApi backpackApi;
 
+    /** Cheap filter in front of {@link MCEngineBackPackApi#isBackpack(ItemStack)}. */
+    private final BackPackItemFilter itemFilter;
+
+    /** Accessor for the encoded contents payload stored in backpack item meta. */
+    private final BackPackItemPayload itemPayload;
+
+    /** Codec used to encode and decode backpack contents. */
+    private final BackPackContentCodec codec;
+
+    /** External contents store, or {@code null} when contents are embedded in item meta. */
+    private final BackPackStore store;
+
+    /** Bounded virtual-thread executor for store loads and writes, or {@code null} in item mode. */
+    private final BackPackStorageExecutor storageExecutor;
+
+    /** Size-weighted cache of decoded contents keyed by backpack id, or {@code null} when disabled. */
+    private final BackPackSnapshotCache<ItemStack[]> snapshotCache;
+
+    /** Save queue: writes item-mode saves at once, and coalesces and budgets store writes. */
+    private final BackPackSaveQueue saveQueue;
+
+    /** Capture/decode/materialize pipeline used by sync and async opens. */
+    private final BackPackOpenPipeline openPipeline;
+
+    /** Repeating task draining {@link #saveQueue} once per tick; {@code null} after shutdown. */
+    private BackPackScheduler.Handle saveDrainTask;
+
+    /** Join-time prefetched snapshots, or {@code null} when prefetching is disabled. */
+    private final BackPackWarmCache warmCache;
+
+    /** Join-time prefetcher filling {@link #warmCache}, or {@code null} when prefetching is disabled. */
+    private final BackPackPrefetcher prefetcher;
+
+    /** Repeating task starting queued prefetches; {@code null} when disabled or after shutdown. */
+    private BackPackScheduler.Handle prefetchTask;
+
+    /** Player-bound backpacks of online players, or {@code null} when disabled. */
+    private final BackPackPersonalBackpacks personal;
+
+    /** Sheds the snapshot and warm caches under heap pressure, or {@code null} when disabled. */
+    private final BackPackMemoryPressureMonitor memoryMonitor;
+
+    /** Routes work to entity, global, or async threads (Spigot, Paper, and Folia). */
+    private final BackPackScheduler scheduler;
+
+    /** Live backpack sessions of all players; safe to query from any thread. */
+    private final BackPackSessionRegistry<BackPackSession> sessions;
+
+    /** Per-backpack leases; at most one open (possibly shared) inventory exists per backpack. */
+    private final BackPackLockTable<BackPackLease> locks;
+
+    /** Whether contended opens join the holder's live inventory instead of being refused; never in item mode. */
+    private final boolean shareContended;
+
+    /** Shared counters (e.g. written and skipped saves) reported by all components. */
+    private final BackPackMetrics metrics;
+
     /** Internal command dispatcher used to register namespaces and subcommands. */
     private final MCEngineCoreApiDispatcher dispatcher;
 
+    /** Shared services keyed by their lookup type; built once per plugin. */
+    private final Map<Class<?>, Object> services = new ConcurrentHashMap<>();
+
     /**
      * Constructs a new common backpack manager and initializes its dispatcher and API.
      * <p>
@@ -66,7 +232,183 @@ public class MCEngineBackPackCommon {
         // --------------------------------------
 
         this.backpackApi = new MCEngineBackPackApi(plugin);
+        this.itemFilter = new BackPackItemFilter(backpackApi::isBackpack);
+        this.itemPayload = new BackPackItemPayload(plugin, backpackApi);
+        // Deduplication splits uncompressed payloads into items, so it takes over from Deflate
+        this.codec = new BackPackContentCodec(isDedupEnabled(plugin)
+                ? Integer.MAX_VALUE
+                : plugin.getConfig().getInt("codec.deflate-threshold-bytes", 512));
+        this.metrics = new BackPackMetrics();
+        this.sessions = new BackPackSessionRegistry<>();
+        this.locks = new BackPackLockTable<>(64);
+        metrics.registerGauge(BackPackMetrics.LOCKS_HELD, locks::size);
         this.dispatcher = new MCEngineCoreApiDispatcher();
+
+        int asyncThreads = plugin.getConfig().getInt("scheduler.async-threads",
+                Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+        this.scheduler = new BackPackScheduler(plugin, asyncThreads);
+        Executor mainExecutor = scheduler.globalExecutor();
+        Executor asyncExecutor = scheduler.asyncExecutor();
+
+        long tickBudgetNanos = TimeUnit.MICROSECONDS.toNanos(plugin.getConfig().getLong("save.tick-budget-micros", 1000L));
+        boolean asyncEncode = plugin.getConfig().getBoolean("save.async-encode", true);
+        this.store = withDedup(plugin, createStore(plugin, metrics));
+        this.shareContended = store != null
+                && !"deny".equalsIgnoreCase(plugin.getConfig().getString("open.contended", "share"));
+        // Blocking store I/O runs on virtual threads behind a concurrency limit; item mode needs none
+        this.storageExecutor = (store == null) ? null : new BackPackStorageExecutor(plugin.getName() + "-backpack-io",
+                plugin.getConfig().getInt("storage.io.max-concurrent", 64), metrics);
+        Executor ioExecutor = (store == null) ? asyncExecutor : storageExecutor;
+        // A shared remote store is written by other servers too, so decoded copies cannot be reused across opens
+        long snapshotBudget = (store instanceof BackPackRemoteStore) ? 0L
+                : plugin.getConfig().getLong("cache.snapshot.max-mb", 32L) * 1024L * 1024L;
+        long offHeapBudget = plugin.getConfig().getLong("cache.offheap.max-mb", 0L) * 1024L * 1024L;
+        // Item mode needs no cold tier: the payload always travels with the item
+        BackPackOffHeapTier offHeap = (store != null && snapshotBudget > 0 && offHeapBudget > 0)
+                ? new BackPackOffHeapTier(offHeapBudget, metrics) : null;
+        this.snapshotCache = (snapshotBudget > 0) ? new BackPackSnapshotCache<>(snapshotBudget, 2048, offHeap, metrics) : null;
+        int fullEvery = plugin.getConfig().getInt("save.delta.full-every", 16);
+        BackPackDeltaLog deltaLog = (store != null && store.supportsDeltas() && fullEvery > 0) ? new BackPackDeltaLog(fullEvery) : null;
+        // Like decoded copies, snapshots prefetched at join may be outdated by another server before the open
+        this.warmCache = (plugin.getConfig().getBoolean("prefetch.enabled", true) && !(store instanceof BackPackRemoteStore))
+                ? new BackPackWarmCache(metrics) : null;
+        this.saveQueue = new BackPackSaveQueue(plugin.getLogger(), itemPayload, codec, metrics, store, deltaLog,
+                snapshotCache, warmCache, asyncEncode ? asyncExecutor : null, ioExecutor, tickBudgetNanos);
+        this.openPipeline = new BackPackOpenPipeline(backpackApi, itemPayload, codec, store, saveQueue, warmCache,
+                snapshotCache, mainExecutor, ioExecutor);
+        this.prefetcher = (warmCache == null) ? null : new BackPackPrefetcher(plugin.getLogger(), itemFilter, itemPayload,
+                codec, store, saveQueue, warmCache, scheduler, ioExecutor, metrics,
+                plugin.getConfig().getInt("prefetch.players-per-tick", 2), plugin.getConfig().getInt("prefetch.max-inflight", 32));
+        int personalSlots = plugin.getConfig().getInt("personal.slots", 0);
+        if (personalSlots > 0 && store == null) {
+            plugin.getLogger().warning("Personal backpacks need a storage.mode other than 'item'; they are disabled.");
+        }
+        this.personal = (personalSlots > 0 && store != null) ? new BackPackPersonalBackpacks(plugin.getLogger(), saveQueue,
+                scheduler, locks, ioExecutor, metrics, personalSlots, plugin.getConfig().getInt("personal.rows", 3)) : null;
+        double shedThreshold = plugin.getConfig().getDouble("memory.shed-threshold", 0.85);
+        this.memoryMonitor = (shedThreshold > 0) ? new BackPackMemoryPressureMonitor(shedThreshold, metrics, plugin.getLogger()) : null;
+        if (memoryMonitor != null) {
+            if (snapshotCache != null) memoryMonitor.register(snapshotCache);
+            if (warmCache != null) memoryMonitor.register(warmCache);
+        }
+        // Item mode writes at close, so only external stores have a queue to drain
+        this.saveDrainTask = (store == null) ? null : scheduler.runGlobalTimer(saveQueue::drain, 1L, 1L);
+        this.prefetchTask = (prefetcher == null) ? null : scheduler.runGlobalTimer(prefetcher::drain, 1L, 1L);
+
+        services.put(MCEngineBackPackApi.class, backpackApi);
+        services.put(BackPackItemFilter.class, itemFilter);
+        services.put(BackPackItemPayload.class, itemPayload);
+        services.put(BackPackContentCodec.class, codec);
+        if (store != null) services.put(BackPackStore.class, store);
+        if (storageExecutor != null) services.put(BackPackStorageExecutor.class, storageExecutor);
+        if (snapshotCache != null) services.put(BackPackSnapshotCache.class, snapshotCache);
+        services.put(BackPackSaveQueue.class, saveQueue);
+        services.put(BackPackOpenPipeline.class, openPipeline);
+        if (prefetcher != null) {
+            services.put(BackPackWarmCache.class, warmCache);
+            services.put(BackPackPrefetcher.class, prefetcher);
+        }
+        if (personal != null) services.put(BackPackPersonalBackpacks.class, personal);
+        if (memoryMonitor != null) services.put(BackPackMemoryPressureMonitor.class, memoryMonitor);
+        services.put(BackPackScheduler.class, scheduler);
+        services.put(BackPackMetrics.class, metrics);
+        services.put(BackPackSessionRegistry.class, sessions);
+        services.put(BackPackLockTable.class, locks);
+    }
+
+    /**
+     * Creates the external contents store selected by {@code storage.mode}.
+     *
+     * @param plugin  The owning plugin.
+     * @param metrics Shared counters.
+     * @return The store, or {@code null} for item mode.
+     * @throws IllegalStateException if the store cannot be opened.
+     */
+    private static BackPackStore createStore(Plugin plugin, BackPackMetrics metrics) {
+        String mode = plugin.getConfig().getString("storage.mode", "item").toLowerCase(Locale.ROOT);
+        switch (mode) {
+            case "item" -> {
+                return null;
+            }
+            case "file" -> {
+                try {
+                    return new BackPackFileStore(plugin.getDataFolder().toPath().resolve("backpacks"));
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to open backpack file store.", e);
+                }
+            }
+            case "journal" -> {
+                int capacityMb = plugin.getConfig().getInt("storage.journal.initial-capacity-mb", 16);
+                double compactRatio = plugin.getConfig().getDouble("storage.journal.compact-ratio", 0.5D);
+                try {
+                    BackPackJournalStore journal = new BackPackJournalStore(
+                            plugin.getDataFolder().toPath().resolve("backpack-journal"),
+                            capacityMb * 1024 * 1024, compactRatio, plugin.getLogger());
+                    plugin.getLogger().info("Backpack journal replayed: " + journal.getReplayedRecords()
+                            + " records, " + journal.size() + " backpacks.");
+                    return journal;
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to open backpack journal.", e);
+                }
+            }
+            case "jdbc" -> {
+                String url = plugin.getConfig().getString("storage.jdbc.url",
+                        "jdbc:sqlite:" + plugin.getDataFolder().toPath().resolve("backpacks.db").toAbsolutePath());
+                try {
+                    return new BackPackJdbcStore(url,
+                            plugin.getConfig().getString("storage.jdbc.username", null),
+                            plugin.getConfig().getString("storage.jdbc.password", null),
+                            plugin.getConfig().getString("storage.jdbc.table", "backpack_contents"),
+                            plugin.getConfig().getInt("storage.jdbc.pool-size", 4),
+                            plugin.getConfig().getInt("storage.jdbc.batch-size", 64),
+                            TimeUnit.MILLISECONDS.toNanos(plugin.getConfig().getLong("storage.jdbc.batch-delay-millis", 5L)),
+                            metrics);
+                } catch (IOException | IllegalArgumentException e) {
+                    throw new IllegalStateException("Failed to open backpack database.", e);
+                }
+            }
+            case "remote" -> {
+                return new BackPackRemoteStore(
+                        plugin.getConfig().getString("storage.remote.host", "localhost"),
+                        plugin.getConfig().getInt("storage.remote.port", 25590),
+                        plugin.getConfig().getInt("storage.remote.timeout-millis", 5000),
+                        metrics);
+            }
+            default -> {
+                plugin.getLogger().warning("Unknown storage.mode '" + mode + "', falling back to 'item'.");
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @param plugin The owning plugin.
+     * @return {@code true} if item deduplication applies: enabled, and a local file or journal store is in use.
+     */
+    private static boolean isDedupEnabled(Plugin plugin) {
+        String mode = plugin.getConfig().getString("storage.mode", "item").toLowerCase(Locale.ROOT);
+        return plugin.getConfig().getBoolean("storage.dedup.enabled", false)
+                && (mode.equals("file") || mode.equals("journal"));
+    }
+
+    /**
+     * Wraps a store in a {@link BackPackDedupStore} when {@code storage.dedup.enabled} is set.
+     *
+     * @param plugin The owning plugin.
+     * @param store  The store, or {@code null} for item mode.
+     * @return The store to use.
+     * @throws IllegalStateException if the blob store cannot be opened.
+     */
+    private static BackPackStore withDedup(Plugin plugin, BackPackStore store) {
+        if (store == null || !isDedupEnabled(plugin)) return store;
+        try {
+            BackPackBlobStore blobs = new BackPackBlobStore(
+                    plugin.getDataFolder().toPath().resolve("backpack-blobs"), plugin.getLogger());
+            plugin.getLogger().info("Backpack item blobs loaded: " + blobs.size() + " shared items.");
+            return new BackPackDedupStore(store, blobs, plugin.getConfig().getInt("storage.dedup.min-item-bytes", 256));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open backpack item blob store.", e);
+        }
     }
 
     /**
@@ -78,6 +420,37 @@ public class MCEngineBackPackCommon {
         return instance;
     }
 
+    /**
+     * Stops background work and writes every queued save immediately.
+     * <p>
+     * Must be called on the main thread from the owning plugin's {@code onDisable}; it is also
+     * invoked by {@code MCEngineBackPackListener} when the plugin is being disabled. Safe to call repeatedly.
+     * </p>
+     */
+    public void shutdown() {
+        if (saveDrainTask != null) {
+            saveDrainTask.cancel();
+            saveDrainTask = null;
+        }
+        if (prefetchTask != null) {
+            prefetchTask.cancel();
+            prefetchTask = null;
+        }
+        if (memoryMonitor != null) memoryMonitor.close();
+        if (personal != null) personal.unloadAll();
+        saveQueue.flushAll();
+        if (storageExecutor != null) storageExecutor.close();
+        if (snapshotCache != null) snapshotCache.close();
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to close backpack store: " + e.getMessage());
+            }
+        }
+        scheduler.shutdown();
+    }
+
     /**
      * Gets the associated plugin instance.
      *
@@ -96,6 +469,87 @@ public class MCEngineBackPackCommon {
         return backpackApi;
     }
 
+    /**
+     * Gets the filter placed in front of {@link MCEngineBackPackApi#isBackpack(ItemStack)}.
+     *
+     * @return The shared item filter.
+     */
+    public BackPackItemFilter getItemFilter() {
+        return itemFilter;
+    }
+
+    /**
+     * Gets the shared metrics, e.g. {@link BackPackMetrics#SAVES_SKIPPED} for saves skipped on clean closes.
+     *
+     * @return The shared metrics instance.
+     */
+    public BackPackMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the scheduler facade used for open, save, and give work.
+     *
+     * @return the shared scheduler
+     */
+    public BackPackScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the live session registry.
+     * <p>
+     * The registry is concurrent, so other components may query open sessions from any thread
+     * (including Folia region threads).
+     * </p>
+     *
+     * @return the shared session registry
+     */
+    public BackPackSessionRegistry<BackPackSession> getSessions() {
+        return sessions;
+    }
+
+    /* ===========================
+     * Service registry
+     * =========================== */
+
+    /**
+     * Registers (or replaces) a shared service under the given lookup type.
+     *
+     * @param type    Lookup type.
+     * @param service Service instance.
+     * @param <T>     Service type.
+     */
+    public <T> void registerService(Class<T> type, T service) {
+        services.put(type, type.cast(service));
+    }
+
+    /**
+     * Resolves a shared service by its lookup type.
+     *
+     * @param type Lookup type.
+     * @param <T>  Service type.
+     * @return The registered service, or {@code null} if none is registered.
+     */
+    public <T> T getService(Class<T> type) {
+        return type.cast(services.get(type));
+    }
+
+    /**
+     * Resolves a shared service, registering the supplied instance if none exists yet.
+     * <p>
+     * The factory runs at most once per type, so concurrent callers always observe the same instance.
+     * </p>
+     *
+     * @param type    Lookup type.
+     * @param factory Factory used when the service is absent.
+     * @param <T>     Service type.
+     * @return The registered service.
+     */
+    public <T> T getOrRegisterService(Class<T> type, Supplier<? extends T> factory) {
+        return type.cast(services.computeIfAbsent(type, t -> factory.get()));
+    }
+
     /* ===========================
      * Dispatcher (command wiring)
      * =========================== */
@@ -169,31 +623,347 @@ public class MCEngineBackPackCommon {
 
     /**
      * Opens a virtual inventory from the given backpack item.
+     * <p>
+     * Items that were never saved through this module are opened by {@link MCEngineBackPackApi}.
+     * If a player currently has the backpack open, their live inventory is returned instead of a copy.
+     * </p>
      *
      * @param backpackItem Backpack {@link ItemStack}.
      * @return Deserialized {@link Inventory} with contents applied.
      */
     public Inventory openBackpack(ItemStack backpackItem) {
-        return backpackApi.openBackpack(backpackItem);
+        Inventory live = liveInventory(openPipeline.resolveId(backpackItem));
+        return (live != null) ? live : openPipeline.open(backpackItem);
+    }
+
+    /**
+     * Opens a virtual inventory from the given backpack item without decoding on the main thread.
+     * <p>
+     * Must be called on the main thread. The stored payload is captured immediately, decoded
+     * asynchronously into a snapshot, and only materialized into a Bukkit {@link Inventory}
+     * on the main thread, where the returned future completes.
+     * </p>
+     *
+     * @param backpackItem Backpack {@link ItemStack}.
+     * @return Future completed on the main thread with the deserialized {@link Inventory}.
+     */
+    public CompletableFuture<Inventory> openBackpackAsync(ItemStack backpackItem) {
+        Inventory live = liveInventory(openPipeline.resolveId(backpackItem));
+        return (live != null) ? CompletableFuture.completedFuture(live) : openPipeline.openAsync(backpackItem);
+    }
+
+    /**
+     * Opens a virtual inventory for a player without decoding on the player's thread.
+     * <p>
+     * Must be called on the thread owning the player (the main thread outside Folia). The
+     * returned future completes on that thread, so the inventory can be shown directly. If the
+     * player is removed before then, it fails with a {@link java.util.concurrent.CancellationException}
+     * instead, and the backpack's lease is already handed back.
+     * </p>
+     * <p>
+     * The open takes the backpack's lease without blocking. If another viewer holds it, the
+     * player joins that viewer's live inventory ({@code open.contended: share}), waiting for it
+     * if it is still loading, so the contents are decoded once however many players view them;
+     * otherwise, and always in item mode, the future fails with {@link BackPackInUseException}. Every inventory returned here
+     * must be handed back through {@link #releaseBackpack(Inventory, boolean, BitSet)} when the
+     * player stops viewing it.
+     * </p>
+     *
+     * @param player       Player the backpack is opened for.
+     * @param backpackItem Backpack {@link ItemStack}.
+     * @return Future completed on the player's thread with the deserialized {@link Inventory}.
+     */
+    public CompletableFuture<Inventory> openBackpackAsync(Player player, ItemStack backpackItem) {
+        UUID id = openPipeline.resolveId(backpackItem);
+        BackPackLease lease = new BackPackLease(id, backpackItem, player);
+        BackPackLease holder = locks.tryAcquire(id, lease);
+        if (holder != null) {
+            metrics.increment(BackPackMetrics.OPENS_CONTENDED);
+            if (shareContended && holder.join()) {
+                metrics.increment(BackPackMetrics.OPENS_SHARED);
+                Inventory live = holder.getInventory();
+                if (live != null) return CompletableFuture.completedFuture(live);
+                return BackPackHandOff.handOff(holder.ready(), scheduler.entityTarget(player), this::releaseBackpack);
+            }
+            return CompletableFuture.failedFuture(new BackPackInUseException(id));
+        }
+
+        CompletableFuture<Inventory> open;
+        try {
+            open = openPipeline.openAsync(backpackItem, scheduler.entityTarget(player));
+        } catch (RuntimeException e) {
+            locks.release(id, lease);
+            lease.fail(e);
+            throw e;
+        }
+        return open.whenComplete((inventory, error) -> {
+            if (error == null) {
+                lease.attach(inventory);
+            } else {
+                locks.release(id, lease);
+                lease.fail(error);
+            }
+        });
+    }
+
+    /**
+     * Hands back an inventory returned by {@link #openBackpackAsync(Player, ItemStack)} that was
+     * never shown, or was closed without changes.
+     *
+     * @param inventory Inventory the viewer stopped viewing.
+     */
+    public void releaseBackpack(Inventory inventory) {
+        releaseBackpack(inventory, false, null);
+    }
+
+    /**
+     * Hands back an inventory returned by {@link #openBackpackAsync(Player, ItemStack)} once its
+     * viewer closed it.
+     * <p>
+     * The viewer's changes are recorded on the backpack's lease. While other viewers remain nothing
+     * is written; when the last viewer leaves, the inventory is saved once, naming the slots any
+     * viewer changed, and the lease ends. In item mode a lease has a single viewer, whose item
+     * receives the contents. Inventories
+     * without a lease (e.g. opened through {@link #openBackpack(ItemStack)}) are not saved here.
+     * Changes to a player-bound backpack are kept until its last viewer, normally its owner, leaves.
+     * </p>
+     *
+     * @param inventory    Inventory the viewer stopped viewing.
+     * @param modified     Whether the viewer modified the contents.
+     * @param changedSlots Slots the viewer changed, or {@code null} if unknown.
+     */
+    public void releaseBackpack(Inventory inventory, boolean modified, BitSet changedSlots) {
+        if (!(inventory.getHolder() instanceof BackPackHolder holder)) return;
+        if (holder.getOwnerId() != null) {
+            // Player-bound backpacks stay loaded for their owner's session and are saved on quit
+            if (personal != null) personal.close(holder.getBackpackId(), inventory, modified, changedSlots);
+            return;
+        }
+        BackPackLease lease = locks.holder(holder.getBackpackId());
+        if (lease == null || lease.getInventory() != inventory || !lease.leave(modified, changedSlots)) return;
+
+        // Save before releasing, so the next open of the backpack reads or claims this save
+        if (lease.isModified()) {
+            queueSave(lease.getOwner(), lease.getItem(), inventory, lease.getChangedSlots());
+        } else {
+            metrics.increment(BackPackMetrics.SAVES_SKIPPED);
+        }
+        locks.release(holder.getBackpackId(), lease);
     }
 
     /**
-     * Saves an inventory's contents back into the backpack item metadata.
+     * @param backpackId Stable backpack id.
+     * @return The inventory a player currently has open for the backpack, or {@code null}.
+     */
+    private Inventory liveInventory(UUID backpackId) {
+        BackPackLease lease = locks.holder(backpackId);
+        return (lease != null) ? lease.getInventory() : null;
+    }
+
+    /**
+     * Saves an inventory's contents back into the backpack item metadata, or into the external
+     * store when one is configured (the item then keeps only its backpack id).
+     * <p>
+     * The contents are encoded and the item updated on the calling thread. The external store
+     * write is issued and runs off-thread; use {@link #saveBackpackAsync(ItemStack, Inventory)} to
+     * learn when it is durable.
+     * </p>
      *
      * @param backpackItem Backpack {@link ItemStack}.
      * @param inventory    Inventory to serialize and store.
+     * @throws BackPackInUseException if a player has the backpack open in another inventory, whose
+     *         contents would otherwise be overwritten by this one.
+     * @throws IllegalStateException if the contents cannot be encoded.
      */
     public void saveBackpack(ItemStack backpackItem, Inventory inventory) {
-        backpackApi.saveBackpack(backpackItem, inventory);
+        saveBackpackAsync(backpackItem, inventory);
+    }
+
+    /**
+     * Saves an inventory's contents like {@link #saveBackpack(ItemStack, Inventory)} and returns
+     * the pending store write.
+     * <p>
+     * Wait on the returned future to know the contents are durable, but never on the main thread.
+     * </p>
+     *
+     * @param backpackItem Backpack {@link ItemStack}.
+     * @param inventory    Inventory to serialize and store.
+     * @return Future completed once the contents are written; already complete without an external store,
+     *         and completed exceptionally if the store write fails.
+     * @throws BackPackInUseException if a player has the backpack open in another inventory, whose
+     *         contents would otherwise be overwritten by this one.
+     * @throws IllegalStateException if the contents cannot be encoded.
+     */
+    public CompletableFuture<Void> saveBackpackAsync(ItemStack backpackItem, Inventory inventory) {
+        // A direct save supersedes any queued save of the same backpack
+        UUID id = resolveBackpackId(backpackItem, inventory);
+        Inventory live = liveInventory(id);
+        if (live != null && live != inventory) throw new BackPackInUseException(id);
+        return saveQueue.saveNow(id, backpackItem, inventory.getContents());
+    }
+
+    /**
+     * Saves an inventory's contents back into the backpack item, or queues them for the external store.
+     * <p>
+     * The contents are copied immediately, so the inventory may be discarded afterwards. In item
+     * mode the payload is written into {@code backpackItem} at once, on the calling thread, since
+     * Bukkit swaps the item's stack as soon as the backpack is moved. With an external store,
+     * repeated saves of the same backpack are coalesced and written within the per-tick budget.
+     * Inventories that were not opened through this module are saved at once, as by
+     * {@link #saveBackpack(ItemStack, Inventory)}.
+     * </p>
+     *
+     * @param backpackItem Backpack {@link ItemStack}.
+     * @param inventory    Inventory to serialize and store.
+     */
+    public void scheduleSave(ItemStack backpackItem, Inventory inventory) {
+        scheduleSave(backpackItem, inventory, null);
+    }
+
+    /**
+     * Saves an inventory's contents like {@link #scheduleSave(ItemStack, Inventory)}, naming the
+     * slots that changed since it was opened.
+     * <p>
+     * In {@code file}/{@code journal} mode only those slots are written, as a delta record, while
+     * the delta chain allows it. In item mode the whole payload is rewritten regardless.
+     * </p>
+     *
+     * @param backpackItem Backpack {@link ItemStack}.
+     * @param inventory    Inventory to serialize and store.
+     * @param changedSlots Slots changed since the inventory was opened, or {@code null} if unknown.
+     */
+    public void scheduleSave(ItemStack backpackItem, Inventory inventory, BitSet changedSlots) {
+        HumanEntity viewer = inventory.getViewers().isEmpty() ? null : inventory.getViewers().get(0);
+        queueSave(viewer, backpackItem, inventory, changedSlots);
+    }
+
+    /**
+     * Writes an inventory's contents into the item (item mode) or queues them for the store.
+     *
+     * @param owner        Entity whose quit flushes the queued save, or {@code null}.
+     * @param backpackItem Backpack {@link ItemStack}.
+     * @param inventory    Inventory to serialize and store.
+     * @param changedSlots Slots changed since the inventory was opened, or {@code null} if unknown.
+     */
+    private void queueSave(Entity owner, ItemStack backpackItem, Inventory inventory, BitSet changedSlots) {
+        if (store == null || !(inventory.getHolder() instanceof BackPackHolder holder)) {
+            saveBackpack(backpackItem, inventory);
+            return;
+        }
+
+        ItemStack[] contents = inventory.getContents();
+        for (int i = 0; i < contents.length; i++) {
+            if (contents[i] != null) contents[i] = contents[i].clone();
+        }
+        saveQueue.enqueue(holder.getBackpackId(), backpackItem, owner, contents, changedSlots);
+    }
+
+    /**
+     * Resolves the stable id of a backpack, preferring the id carried by a pipeline-opened inventory.
+     *
+     * @param backpackItem Backpack {@link ItemStack}.
+     * @param inventory    Inventory being saved.
+     * @return The backpack id (assigned to the item if it had none).
+     */
+    private UUID resolveBackpackId(ItemStack backpackItem, Inventory inventory) {
+        if (inventory.getHolder() instanceof BackPackHolder holder) return holder.getBackpackId();
+        UUID id = itemPayload.read(backpackItem).id();
+        return id != null ? id : itemPayload.assignId(backpackItem);
+    }
+
+    /**
+     * Queues a player's backpacks to be decoded into the warm cache before their first open.
+     * Does nothing when prefetching is disabled.
+     *
+     * @param player The player who joined.
+     */
+    public void prefetchBackpacks(Player player) {
+        if (prefetcher != null) prefetcher.request(player.getUniqueId());
+    }
+
+    /**
+     * Drops a player's queued prefetch and warm-cache entries, e.g. on quit.
+     *
+     * @param playerId The player's id.
+     */
+    public void releasePrefetched(UUID playerId) {
+        if (prefetcher != null) prefetcher.cancel(playerId);
+    }
+
+    /**
+     * Issues a leaving player's queued store saves now, e.g. on quit, without waiting for them, so
+     * the quit is not held up by storage. Must be called on the player's thread, after
+     * {@link #unloadPersonalBackpacks(UUID)}.
+     *
+     * @param player The player who is leaving.
+     */
+    public void flushSaves(Player player) {
+        saveQueue.flush(player);
+    }
+
+    /**
+     * Starts loading a joining player's player-bound backpacks. Does nothing when they are disabled.
+     *
+     * @param player The player who joined.
+     */
+    public void loadPersonalBackpacks(Player player) {
+        if (personal != null) personal.load(player);
+    }
+
+    /**
+     * Ends a leaving player's session on their player-bound backpacks, e.g. on quit. Changed backpacks
+     * nobody else views are queued for saving; the rest are saved when their last viewer closes them.
+     *
+     * @param playerId The player's id.
+     */
+    public void unloadPersonalBackpacks(UUID playerId) {
+        if (personal != null) personal.unload(playerId);
+    }
+
+    /**
+     * @return Number of player-bound backpacks per player, or {@code 0} when they are disabled.
+     */
+    public int getPersonalBackpackSlots() {
+        return (personal != null) ? personal.getSlots() : 0;
+    }
+
+    /**
+     * Opens one of a player's player-bound backpacks, without any backpack item.
+     * <p>
+     * Must be called on the viewer's thread; the future completes there. The owner must be online:
+     * their backpacks are loaded on join and stay live for their session, so the owner and any
+     * other viewer (e.g. staff) share one inventory. Like item backpacks, the inventory must be
+     * handed back through {@link #releaseBackpack(Inventory, boolean, BitSet)} when the viewer closes it.
+     * </p>
+     *
+     * @param viewer  Player the backpack is opened for.
+     * @param ownerId Id of the owning player.
+     * @param slot    Backpack number, from 1 to {@link #getPersonalBackpackSlots()}.
+     * @return Future completed with the live {@link Inventory}; fails with {@link IllegalStateException}
+     *         if player-bound backpacks are disabled or the owner's are not loaded.
+     * @throws IllegalArgumentException if {@code slot} is out of range.
+     */
+    public CompletableFuture<Inventory> openPersonalBackpackAsync(Player viewer, UUID ownerId, int slot) {
+        if (personal == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Personal backpacks are disabled."));
+        }
+        if (slot < 1 || slot > personal.getSlots()) {
+            throw new IllegalArgumentException("Personal backpack slot must be between 1 and " + personal.getSlots() + ".");
+        }
+        return personal.open(ownerId, slot, scheduler.entityTarget(viewer));
     }
 
     /**
      * Determines whether an {@link ItemStack} is a recognized backpack.
+     * <p>
+     * Stacks without meta are rejected by {@link BackPackItemFilter} without consulting
+     * {@link MCEngineBackPackApi}.
+     * </p>
      *
      * @param item The item to test.
      * @return {@code true} if the item is a backpack; otherwise {@code false}.
      */
     public boolean isBackpack(ItemStack item) {
-        return backpackApi.isBackpack(item);
+        return itemFilter.isBackpack(item);
     }
 }
@@ -0,0 +1,190 @@
+package io.github.mcengine.common.backpack.cache;
+
+import io.github.mcengine.common.backpack.core.memory.BackPackSheddable;
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+import io.github.mcengine.common.backpack.pipeline.BackPackSnapshot;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player cache of backpack snapshots decoded ahead of the first open.
+ *
+ * <p>Entries are filled by the join-time prefetcher and consumed (removed) by the first open of
+ * the backpack, so a snapshot is only ever materialized once. An entry goes through two states:
+ * a reservation taken before the load starts, and the filled snapshot. Saving a backpack
+ * {@linkplain #invalidate(UUID) invalidates} its entry; a load that completes after the
+ * invalidation is discarded because its reservation is gone.</p>
+ *
+ * <p>In item mode the entry also keeps the payload bytes it was decoded from, and an open only
+ * uses the snapshot if the item still carries the same bytes. Entries of a player are dropped
+ * when the player quits.</p>
+ *
+ * <p>The cache is safe for concurrent use.</p>
+ */
+public final class BackPackWarmCache implements BackPackSheddable {
+
+    /** Entries keyed by backpack id. */
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    /** Backpack ids prefetched for each player, for eviction on quit. */
+    private final Map<UUID, Set<UUID>> byPlayer = new ConcurrentHashMap<>();
+
+    /** Shared counters (hits and misses). */
+    private final BackPackMetrics metrics;
+
+    /**
+     * Creates a warm cache.
+     *
+     * @param metrics shared counters
+     */
+    public BackPackWarmCache(BackPackMetrics metrics) {
+        this.metrics = metrics;
+        metrics.registerGauge(BackPackMetrics.PREFETCH_CACHED, entries::size);
+    }
+
+    /**
+     * Reserves an entry before a load starts.
+     *
+     * @param player     player the backpack is prefetched for
+     * @param backpackId stable backpack id
+     * @return reservation token to pass to {@link #fill}, or {@code null} if the backpack is already cached or loading
+     */
+    public Object reserve(UUID player, UUID backpackId) {
+        Entry reservation = new Entry(player, null, null);
+        if (entries.putIfAbsent(backpackId, reservation) != null) return null;
+        byPlayer.computeIfAbsent(player, p -> ConcurrentHashMap.newKeySet()).add(backpackId);
+        return reservation;
+    }
+
+    /**
+     * Fills a reservation with a decoded snapshot, unless it was invalidated meanwhile.
+     *
+     * @param reservation token returned by {@link #reserve}
+     * @param snapshot    decoded contents
+     * @param source      payload bytes the snapshot was decoded from (item mode), or {@code null}
+     * @return {@code true} if the snapshot was cached
+     */
+    public boolean fill(Object reservation, BackPackSnapshot snapshot, byte[] source) {
+        Entry reserved = (Entry) reservation;
+        return entries.replace(snapshot.id(), reserved, new Entry(reserved.player, snapshot, source));
+    }
+
+    /**
+     * Releases a reservation whose load produced nothing.
+     *
+     * @param backpackId  stable backpack id
+     * @param reservation token returned by {@link #reserve}
+     */
+    public void release(UUID backpackId, Object reservation) {
+        entries.remove(backpackId, reservation);
+    }
+
+    /**
+     * Takes the cached snapshot of a backpack that is being opened.
+     *
+     * @param backpackId stable backpack id
+     * @param source     payload bytes currently carried by the item (item mode), or {@code null}
+     * @return the snapshot, or {@code null} on a miss (not prefetched, still loading, or stale)
+     */
+    public BackPackSnapshot take(UUID backpackId, byte[] source) {
+        Entry entry = entries.get(backpackId);
+        if (entry == null || entry.snapshot == null || !entries.remove(backpackId, entry)) {
+            metrics.increment(BackPackMetrics.PREFETCH_MISSES);
+            return null;
+        }
+        if (entry.source != null && !Arrays.equals(entry.source, source)) {
+            metrics.increment(BackPackMetrics.PREFETCH_MISSES);
+            return null;
+        }
+        metrics.increment(BackPackMetrics.PREFETCH_HITS);
+        return entry.snapshot;
+    }
+
+    /**
+     * Drops the entry of a backpack whose contents were just saved.
+     *
+     * @param backpackId stable backpack id
+     */
+    public void invalidate(UUID backpackId) {
+        entries.remove(backpackId);
+    }
+
+    /**
+     * Drops every entry prefetched for a player.
+     *
+     * @param player player id
+     */
+    public void evictPlayer(UUID player) {
+        Set<UUID> ids = byPlayer.remove(player);
+        if (ids == null) return;
+        for (UUID id : ids) {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.player.equals(player)) entries.remove(id, entry);
+        }
+    }
+
+    /**
+     * Drops a share of the filled entries. Warm entries keep no recency order, and every one of
+     * them is equally cold until its first open, so the entries dropped are arbitrary.
+     * Reservations are kept, so in-flight loads still land.
+     *
+     * @param fraction share of the filled entries to drop, {@code 0 < fraction <= 1}
+     * @return number of entries dropped
+     */
+    @Override
+    public int shed(double fraction) {
+        int budget = (int) Math.ceil(entries.size() * fraction);
+        int dropped = 0;
+        for (Map.Entry<UUID, Entry> entry : entries.entrySet()) {
+            if (dropped >= budget) break;
+            if (entry.getValue().snapshot != null && entries.remove(entry.getKey(), entry.getValue())) dropped++;
+        }
+        return dropped;
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public void clear() {
+        entries.clear();
+        byPlayer.clear();
+    }
+
+    /**
+     * @param backpackId stable backpack id
+     * @return {@code true} if the backpack is cached or loading
+     */
+    public boolean contains(UUID backpackId) {
+        return entries.containsKey(backpackId);
+    }
+
+    /**
+     * A reservation ({@code snapshot == null}) or a cached snapshot. Compared by identity.
+     */
+    private static final class Entry {
+
+        /** Player the backpack was prefetched for. */
+        private final UUID player;
+
+        /** Decoded contents, or {@code null} while loading. */
+        private final BackPackSnapshot snapshot;
+
+        /** Payload bytes the snapshot was decoded from (item mode), or {@code null}. */
+        private final byte[] source;
+
+        /**
+         * @param player   player the backpack was prefetched for
+         * @param snapshot decoded contents, or {@code null} for a reservation
+         * @param source   source payload bytes, or {@code null}
+         */
+        private Entry(UUID player, BackPackSnapshot snapshot, byte[] source) {
+            this.player = player;
+            this.snapshot = snapshot;
+            this.source = source;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package io.github.mcengine.common.backpack.codec;
+
+import io.github.mcengine.common.backpack.core.codec.BackPackBinaryFormat;
+import io.github.mcengine.common.backpack.core.codec.BackPackDeltaFormat;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Encodes backpack contents into the {@link BackPackBinaryFormat} container and reads both the
+ * binary format and the legacy {@link BackPackObjectStreamCodec} payloads.
+ *
+ * <p>Item bytes are the item's raw NBT when the server exposes it ({@code ItemStack#serializeAsBytes}
+ * on Paper), otherwise one Bukkit object-stream record per item. The item format is recorded in the
+ * container, so a payload written on Paper is still rejected cleanly (not misread) on a server
+ * without raw NBT support.</p>
+ *
+ * <p>Legacy payloads are decoded transparently; since every save goes through {@link #encode(ItemStack[])},
+ * a legacy backpack is rewritten in the binary format on its next save.</p>
+ *
+ * <p>Slot-level {@link BackPackDeltaFormat} records, used by external stores, are written by
+ * {@link #encodeDelta} and folded onto their full payload by {@link #decode(byte[], List)}.</p>
+ */
+public final class BackPackContentCodec {
+
+    /** Item format tag: one Bukkit object-stream record per item. */
+    public static final int ITEM_FORMAT_OBJECT_STREAM = 0;
+
+    /** Item format tag: raw item NBT via {@code ItemStack#serializeAsBytes}. */
+    public static final int ITEM_FORMAT_NBT = 1;
+
+    /** {@code ItemStack#serializeAsBytes()}, or {@code null} when unavailable. */
+    private static final MethodHandle SERIALIZE_AS_BYTES;
+
+    /** {@code ItemStack.deserializeBytes(byte[])}, or {@code null} when unavailable. */
+    private static final MethodHandle DESERIALIZE_BYTES;
+
+    static {
+        MethodHandle serialize = null;
+        MethodHandle deserialize = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            serialize = lookup.findVirtual(ItemStack.class, "serializeAsBytes", MethodType.methodType(byte[].class));
+            deserialize = lookup.findStatic(ItemStack.class, "deserializeBytes", MethodType.methodType(ItemStack.class, byte[].class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            serialize = null;
+            deserialize = null;
+        }
+        SERIALIZE_AS_BYTES = serialize;
+        DESERIALIZE_BYTES = deserialize;
+    }
+
+    /** Container format. */
+    private final BackPackBinaryFormat format;
+
+    /** Reader for payloads written before the binary format. */
+    private final BackPackObjectStreamCodec legacy;
+
+    /**
+     * Creates a content codec.
+     *
+     * @param deflateThreshold container body size at or above which Deflate is applied
+     */
+    public BackPackContentCodec(int deflateThreshold) {
+        this.format = new BackPackBinaryFormat(deflateThreshold);
+        this.legacy = new BackPackObjectStreamCodec();
+    }
+
+    /**
+     * Encodes slot contents in the binary format.
+     *
+     * @param contents inventory contents, one entry per slot ({@code null} for empty)
+     * @return encoded bytes
+     * @throws IOException if an item cannot be serialized
+     */
+    public byte[] encode(ItemStack[] contents) throws IOException {
+        int itemFormat = itemFormat();
+        byte[][] slots = new byte[contents.length][];
+        for (int slot = 0; slot < contents.length; slot++) {
+            ItemStack item = contents[slot];
+            if (item == null || item.getType().isAir()) continue;
+            slots[slot] = encodeItem(item, itemFormat);
+        }
+        return format.encode(slots, itemFormat);
+    }
+
+    /**
+     * Decodes slot contents from either the binary or the legacy format.
+     *
+     * @param data encoded bytes
+     * @return inventory contents, one entry per slot
+     * @throws IOException if the payload is corrupt or uses an unsupported item format
+     */
+    public ItemStack[] decode(byte[] data) throws IOException {
+        if (isLegacy(data)) return legacy.decode(data);
+
+        BackPackBinaryFormat.Decoded decoded = format.decode(data);
+        byte[][] slots = decoded.slots();
+        ItemStack[] contents = new ItemStack[slots.length];
+        for (int slot = 0; slot < slots.length; slot++) {
+            if (slots[slot] != null) contents[slot] = decodeItem(slots[slot], decoded.itemFormat());
+        }
+        return contents;
+    }
+
+    /**
+     * Encodes the changed slots of a backpack as a delta record.
+     *
+     * @param baseStamp {@link BackPackDeltaFormat#baseStampOf(byte[])} of the stored full payload
+     * @param contents  current inventory contents, one entry per slot
+     * @param changed   slots to include
+     * @return encoded delta
+     * @throws IOException if an item cannot be serialized
+     */
+    public byte[] encodeDelta(long baseStamp, ItemStack[] contents, BitSet changed) throws IOException {
+        int itemFormat = itemFormat();
+        int[] slots = changed.stream().filter(slot -> slot < contents.length).toArray();
+        byte[][] items = new byte[slots.length][];
+        for (int i = 0; i < slots.length; i++) {
+            ItemStack item = contents[slots[i]];
+            if (item != null && !item.getType().isAir()) items[i] = encodeItem(item, itemFormat);
+        }
+        return BackPackDeltaFormat.encode(baseStamp, itemFormat, contents.length, slots, items);
+    }
+
+    /**
+     * Decodes a full payload and applies the delta records written on top of it, in order.
+     * Deltas written against a different full payload (left over from a replaced base) are skipped.
+     *
+     * @param base   full payload
+     * @param deltas delta records, oldest first
+     * @return inventory contents, one entry per slot
+     * @throws IOException if the payload or a delta is corrupt
+     */
+    public ItemStack[] decode(byte[] base, List<byte[]> deltas) throws IOException {
+        ItemStack[] contents = decode(base);
+        BackPackDeltaFormat.Folded folded = BackPackDeltaFormat.fold(BackPackDeltaFormat.baseStampOf(base), contents.length, deltas);
+        if (folded.slotCount() != contents.length) contents = Arrays.copyOf(contents, folded.slotCount());
+        BitSet replaced = folded.replaced();
+        for (int slot = replaced.nextSetBit(0); slot >= 0; slot = replaced.nextSetBit(slot + 1)) {
+            byte[] item = folded.items()[slot];
+            contents[slot] = (item == null) ? null : decodeItem(item, folded.itemFormats()[slot]);
+        }
+        return contents;
+    }
+
+    /**
+     * Checks whether a payload predates the binary format.
+     *
+     * @param data encoded bytes
+     * @return {@code true} for legacy object-stream payloads
+     */
+    public static boolean isLegacy(byte[] data) {
+        return !BackPackBinaryFormat.matches(data);
+    }
+
+    /**
+     * @return item format used for new payloads on this server
+     */
+    private static int itemFormat() {
+        return (SERIALIZE_AS_BYTES != null) ? ITEM_FORMAT_NBT : ITEM_FORMAT_OBJECT_STREAM;
+    }
+
+    /**
+     * Encodes one item.
+     *
+     * @param item       non-empty item
+     * @param itemFormat item format tag
+     * @return item bytes
+     * @throws IOException if the item cannot be serialized
+     */
+    private static byte[] encodeItem(ItemStack item, int itemFormat) throws IOException {
+        if (itemFormat == ITEM_FORMAT_NBT) {
+            try {
+                return (byte[]) SERIALIZE_AS_BYTES.invoke(item);
+            } catch (Throwable t) {
+                throw new IOException("Failed to serialize item as NBT", t);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)) {
+            out.writeObject(item);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes one item.
+     *
+     * @param data       item bytes
+     * @param itemFormat item format tag
+     * @return the item
+     * @throws IOException if the bytes are corrupt or the format is unsupported on this server
+     */
+    private static ItemStack decodeItem(byte[] data, int itemFormat) throws IOException {
+        switch (itemFormat) {
+            case ITEM_FORMAT_NBT -> {
+                if (DESERIALIZE_BYTES == null) throw new IOException("Backpack was saved with raw NBT items, which this server cannot read");
+                try {
+                    return (ItemStack) DESERIALIZE_BYTES.invoke(data);
+                } catch (Throwable t) {
+                    throw new IOException("Failed to deserialize item from NBT", t);
+                }
+            }
+            case ITEM_FORMAT_OBJECT_STREAM -> {
+                try (BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(data))) {
+                    return (ItemStack) in.readObject();
+                } catch (ClassNotFoundException | ClassCastException e) {
+                    throw new IOException("Malformed item record", e);
+                }
+            }
+            default -> throw new IOException("Unknown backpack item format " + itemFormat);
+        }
+    }
+}
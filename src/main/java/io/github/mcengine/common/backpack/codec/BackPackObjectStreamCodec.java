@@ -0,0 +1,56 @@
+package io.github.mcengine.common.backpack.codec;
+
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Encodes backpack contents with Bukkit's object streams.
+ *
+ * <p>Layout: slot count ({@code int}) followed by one serialized {@link ItemStack} (or {@code null})
+ * per slot. Decoding does not touch any world or inventory state and may run off the main thread.</p>
+ */
+public final class BackPackObjectStreamCodec {
+
+    /**
+     * Encodes the given slot contents.
+     *
+     * @param contents inventory contents, one entry per slot ({@code null} for empty)
+     * @return encoded bytes
+     * @throws IOException if an item cannot be serialized
+     */
+    public byte[] encode(ItemStack[] contents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)) {
+            out.writeInt(contents.length);
+            for (ItemStack item : contents) {
+                out.writeObject(item);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes slot contents previously produced by {@link #encode(ItemStack[])}.
+     *
+     * @param data encoded bytes
+     * @return inventory contents, one entry per slot
+     * @throws IOException if the payload is corrupt or an item cannot be deserialized
+     */
+    public ItemStack[] decode(byte[] data) throws IOException {
+        try (BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(data))) {
+            int size = in.readInt();
+            ItemStack[] contents = new ItemStack[size];
+            for (int i = 0; i < size; i++) {
+                contents[i] = (ItemStack) in.readObject();
+            }
+            return contents;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Malformed backpack payload", e);
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package io.github.mcengine.common.backpack.command;
 
 import io.github.mcengine.common.backpack.MCEngineBackPackCommon;
+import io.github.mcengine.common.backpack.core.session.BackPackSessionRegistry;
+import io.github.mcengine.common.backpack.pipeline.BackPackHolder;
+import io.github.mcengine.common.backpack.session.BackPackSession;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
@@ -11,17 +14,24 @@ import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+
 /**
  * Command executor for {@code /backpack} administrative actions.
  *
  * <p>New syntax (two-level):</p>
  * <pre>{@code
  * /backpack default give <player> <hdb-id> <rows(1-6)>
+ * /backpack personal <n> [player]
  * }</pre>
  *
  * <p>Permissions:</p>
  * <ul>
  *   <li>{@code mcengine.backpack.give} – allows using the {@code default give} action.</li>
+ *   <li>{@code mcengine.backpack.personal} – allows opening one's own player-bound backpacks.</li>
+ *   <li>{@code mcengine.backpack.personal.others} – allows opening another online player's player-bound backpacks.</li>
  * </ul>
  */
 public class BackPackCommand implements CommandExecutor {
@@ -106,12 +116,14 @@ public class BackPackCommand implements CommandExecutor {
                         int size = rows * 9;
                         ItemStack backpack = common.createBackpack("Backpack", hdbId, size);
 
-                        // Try to add to inventory; drop remainder at feet if full.
-                        var remainder = target.getInventory().addItem(backpack);
-                        if (!remainder.isEmpty()) {
-                            Location loc = target.getLocation();
-                            remainder.values().forEach(item -> target.getWorld().dropItemNaturally(loc, item));
-                        }
+                        // Try to add to inventory; drop remainder at feet if full. Runs on the target's thread (Folia region).
+                        common.getScheduler().runForEntity(target, () -> {
+                            var remainder = target.getInventory().addItem(backpack);
+                            if (!remainder.isEmpty()) {
+                                Location loc = target.getLocation();
+                                remainder.values().forEach(item -> target.getWorld().dropItemNaturally(loc, item));
+                            }
+                        });
 
                         sender.sendMessage(ChatColor.GREEN + "Gave a " + rows + " row backpack to " + target.getName() + ".");
                         if (!sender.equals(target)) {
@@ -125,6 +137,10 @@ public class BackPackCommand implements CommandExecutor {
                     }
                 }
             }
+            case "personal" -> {
+                openPersonal(sender, label, args);
+                return true;
+            }
             default -> {
                 sendUsage(sender, label);
                 return true;
@@ -132,6 +148,83 @@ public class BackPackCommand implements CommandExecutor {
         }
     }
 
+    /**
+     * Handles {@code /backpack personal <n> [player]}: opens a player-bound backpack for the sender.
+     *
+     * @param sender command sender
+     * @param label  command label used
+     * @param args   command arguments
+     */
+    private void openPersonal(CommandSender sender, String label, String[] args) {
+        if (!(sender instanceof Player viewer)) {
+            sender.sendMessage(ChatColor.RED + "Only players can open personal backpacks.");
+            return;
+        }
+        if (!sender.hasPermission("mcengine.backpack.personal")) {
+            sender.sendMessage(ChatColor.RED + "You do not have permission: mcengine.backpack.personal");
+            return;
+        }
+        int slots = common.getPersonalBackpackSlots();
+        if (slots == 0) {
+            sender.sendMessage(ChatColor.RED + "Personal backpacks are disabled.");
+            return;
+        }
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.YELLOW + "Usage: " + ChatColor.WHITE + "/" + label + " personal <1-" + slots + "> [player]");
+            return;
+        }
+
+        int slot;
+        try {
+            slot = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            slot = 0;
+        }
+        if (slot < 1 || slot > slots) {
+            sender.sendMessage(ChatColor.RED + "Backpack number must be between 1 and " + slots + ".");
+            return;
+        }
+
+        Player owner = viewer;
+        if (args.length >= 3) {
+            if (!sender.hasPermission("mcengine.backpack.personal.others")) {
+                sender.sendMessage(ChatColor.RED + "You do not have permission: mcengine.backpack.personal.others");
+                return;
+            }
+            owner = Bukkit.getPlayerExact(args[2]);
+            if (owner == null) {
+                sender.sendMessage(ChatColor.RED + "Player not found or not online: " + args[2]);
+                return;
+            }
+        }
+
+        BackPackSessionRegistry<BackPackSession> sessions = common.getSessions();
+        UUID uuid = viewer.getUniqueId();
+        if (!sessions.beginOpen(uuid)) return; // Decode already in flight
+
+        String ownerName = owner.getName();
+        common.openPersonalBackpackAsync(viewer, owner.getUniqueId(), slot).whenComplete((inv, error) -> {
+            // Completes on the viewer's thread (main thread, or the viewer's region on Folia)
+            sessions.finishOpen(uuid);
+            if (error instanceof CancellationException) return; // The viewer left before it loaded
+            if (error != null) {
+                plugin.getLogger().log(Level.FINE, "Failed to open personal backpack of " + ownerName, error);
+                viewer.sendMessage(ChatColor.RED + "The personal backpacks of " + ownerName + " are not available.");
+                return;
+            }
+            if (!(inv.getHolder() instanceof BackPackHolder holder)) return;
+
+            // No item receives the contents; the session only tracks changes for the close-time check
+            if (viewer.isOnline() && !sessions.isOpen(uuid)
+                    && sessions.open(uuid, new BackPackSession(holder.getBackpackId(), null, -1, BackPackSession.slotHashes(inv)))) {
+                viewer.openInventory(inv);
+            } else {
+                // Never shown: leave the backpack's lease again
+                common.releaseBackpack(inv);
+            }
+        });
+    }
+
     /**
      * Sends short usage help to the sender.
      *
@@ -141,5 +234,8 @@ public class BackPackCommand implements CommandExecutor {
     private void sendUsage(CommandSender sender, String label) {
         sender.sendMessage(ChatColor.YELLOW + "Backpack commands:");
         sender.sendMessage(ChatColor.WHITE + "/" + label + " default give <player> <hdb-id> <rows(1-6)>" + ChatColor.GRAY + " - give a backpack item");
+        if (common.getPersonalBackpackSlots() > 0) {
+            sender.sendMessage(ChatColor.WHITE + "/" + label + " personal <n> [player]" + ChatColor.GRAY + " - open a personal backpack");
+        }
     }
 }
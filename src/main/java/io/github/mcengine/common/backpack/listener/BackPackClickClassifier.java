@@ -0,0 +1,79 @@
+package io.github.mcengine.common.backpack.listener;
+
+import io.github.mcengine.common.backpack.core.rules.BackPackClickRules;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.function.Predicate;
+
+/**
+ * Single-pass classifier for {@link InventoryClickEvent}s handled by {@link MCEngineBackPackListener}.
+ *
+ * <p>The classifier reduces a click to the {@link BackPackClickRules} flag set. Structural facts
+ * (session, clicked inventory, click type) are read first and are free; item facts
+ * (cursor, current item, hotbar item) are only resolved when a rule could actually
+ * consume them, and each item is tested against the backpack predicate at most once.</p>
+ *
+ * <p>All nesting rules and the hard guard are then evaluated from the flag set alone via
+ * {@link BackPackClickRules#shouldCancel(int)}.</p>
+ */
+final class BackPackClickClassifier {
+
+    /** Utility class; not instantiable. */
+    private BackPackClickClassifier() {}
+
+    /**
+     * Classifies a click into a flag set.
+     *
+     * <p>Returns {@code 0} without touching any item when neither a backpack session is
+     * open nor the top inventory was clicked, since no rule can fire in that case.</p>
+     *
+     * @param event      the click event
+     * @param player     the clicking player
+     * @param session    whether the player has a tracked backpack GUI open
+     * @param isBackpack predicate used to recognize backpack items
+     * @return the flag set describing the click
+     */
+    static int classify(InventoryClickEvent event, Player player, boolean session, Predicate<ItemStack> isBackpack) {
+        Inventory topInv = event.getView().getTopInventory();
+        Inventory clickedInv = event.getClickedInventory();
+
+        int flags = 0;
+        if (session) flags |= BackPackClickRules.SESSION;
+        if (clickedInv != null && topInv != null && clickedInv.equals(topInv)) flags |= BackPackClickRules.CLICKED_TOP;
+
+        // Nothing below can lead to a cancellation outside a session unless the top was clicked
+        if (flags == 0) return 0;
+
+        if (topInv != null && event.getRawSlot() < topInv.getSize()) flags |= BackPackClickRules.RAW_IN_TOP;
+        if (event.isShiftClick()) flags |= BackPackClickRules.SHIFT;
+        if (event.getAction() == InventoryAction.MOVE_TO_OTHER_INVENTORY) flags |= BackPackClickRules.MOVE_TO_OTHER;
+
+        boolean needCursor = (flags & BackPackClickRules.CLICKED_TOP) != 0 || (flags & (BackPackClickRules.SESSION | BackPackClickRules.RAW_IN_TOP)) == (BackPackClickRules.SESSION | BackPackClickRules.RAW_IN_TOP);
+        if (needCursor) {
+            ItemStack cursor = event.getCursor();
+            if (cursor != null && isBackpack.test(cursor)) flags |= BackPackClickRules.CURSOR_BACKPACK;
+        }
+
+        boolean needCurrent = (flags & BackPackClickRules.CLICKED_TOP) != 0 || (session && (flags & (BackPackClickRules.SHIFT | BackPackClickRules.MOVE_TO_OTHER)) != 0);
+        if (needCurrent) {
+            ItemStack current = event.getCurrentItem();
+            if (current != null && isBackpack.test(current)) flags |= BackPackClickRules.CURRENT_BACKPACK;
+        }
+
+        if (session && event.getClick() == ClickType.NUMBER_KEY) {
+            flags |= BackPackClickRules.NUMBER_KEY;
+            int hotbar = event.getHotbarButton();
+            if (hotbar >= 0 && hotbar <= 8) {
+                ItemStack hotbarItem = player.getInventory().getItem(hotbar);
+                if (hotbarItem != null && isBackpack.test(hotbarItem)) flags |= BackPackClickRules.HOTBAR_BACKPACK;
+            }
+        }
+
+        return flags;
+    }
+}
@@ -1,27 +1,39 @@
 package io.github.mcengine.common.backpack.listener;
 
 import io.github.mcengine.api.backpack.MCEngineBackPackApi;
+import io.github.mcengine.common.backpack.MCEngineBackPackCommon;
+import io.github.mcengine.common.backpack.core.rules.BackPackClickRules;
+import io.github.mcengine.common.backpack.core.session.BackPackInUseException;
+import io.github.mcengine.common.backpack.core.session.BackPackSessionRegistry;
+import io.github.mcengine.common.backpack.pipeline.BackPackHolder;
+import io.github.mcengine.common.backpack.session.BackPackSession;
+import io.github.mcengine.common.backpack.storage.BackPackItemFilter;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.Action;
-import org.bukkit.event.inventory.ClickType;
 import org.bukkit.event.inventory.InventoryAction;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerSwapHandItemsEvent;
+import org.bukkit.event.server.PluginDisableEvent;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
 
 /**
  * Listener that connects player interactions and inventory lifecycle events to the
@@ -30,34 +42,47 @@ import java.util.UUID;
  * <p>Responsibilities:</p>
  * <ul>
  *   <li>Open a virtual backpack inventory on right-clicking a backpack item (block target or air, main hand or off-hand).</li>
- *   <li>Persist backpack contents on inventory close.</li>
+ *   <li>Persist backpack contents on inventory close, into the item immediately or write-behind into a store,
+ *   skipping the save when the session stayed clean.</li>
  *   <li>Prevent placing, shifting, dragging, hotbar-swapping, or off-hand swapping of backpacks while a backpack GUI is open.</li>
  *   <li>Prevent putting backpacks inside backpacks via <em>any</em> action.</li>
- *   <li>Clean up per-player state on disconnect.</li>
+ *   <li>Prefetch a joining player's backpacks into the warm cache, and load their player-bound backpacks.</li>
+ *   <li>Clean up per-player state on disconnect, writing back changed player-bound backpacks.</li>
+ *   <li>Close open backpacks and flush queued saves when the plugin is disabled.</li>
  * </ul>
  */
 public class MCEngineBackPackListener implements Listener {
 
+    /** Player inventory slot index of the off-hand. */
+    private static final int OFF_HAND_SLOT = 40;
+
     /** Reference to the owning plugin, used for logging and scheduler-safe operations. */
     private final Plugin plugin;
 
-    /** API instance that performs create/open/save operations for backpack items. */
-    private final MCEngineBackPackApi api;
+    /** Common facade whose shared services perform open/save operations for backpack items. */
+    private final MCEngineBackPackCommon common;
+
+    /** Backpack recognizer, resolved from the common service registry. */
+    private final BackPackItemFilter itemFilter;
 
     /**
-     * Tracks the currently opened backpack item for each player while its GUI is open.
-     * Key: player's UUID; Value: the {@link ItemStack} that was used to open the backpack.
+     * Shared registry of the backpack session each player has open, and of the players whose
+     * backpack is still being decoded (guards against double-open).
      */
-    private final Map<UUID, ItemStack> openBackpacks = new HashMap<>();
+    private final BackPackSessionRegistry<BackPackSession> sessions;
 
     /**
-     * Creates a new listener bound to a plugin and its backpack API.
+     * Creates a new listener bound to a plugin and the shared backpack services.
      *
      * @param plugin the plugin instance
      */
     public MCEngineBackPackListener(Plugin plugin) {
         this.plugin = plugin;
-        this.api = new MCEngineBackPackApi(plugin);
+        // Use existing singleton if available; otherwise initialize so services are shared from here on.
+        MCEngineBackPackCommon existing = MCEngineBackPackCommon.getApi();
+        this.common = (existing != null) ? existing : new MCEngineBackPackCommon(plugin);
+        this.itemFilter = common.getService(BackPackItemFilter.class);
+        this.sessions = common.getSessions();
     }
 
     /**
@@ -71,6 +96,10 @@ public class MCEngineBackPackListener implements Listener {
      *   the main-hand event is preferred to avoid double-open.</li>
      *   <li>Runs at {@link EventPriority#HIGHEST} and does <b>not</b> ignore cancelled events,
      *   ensuring other plugins cancelling interact-in-air won’t prevent opening.</li>
+     *   <li>Decodes the contents off the main thread via {@link MCEngineBackPackCommon#openBackpackAsync(Player, ItemStack)};
+     *   repeated clicks while a decode is pending are swallowed.</li>
+     *   <li>A backpack already open elsewhere is joined as a shared live view, or refused with an
+     *   "in use" message, depending on {@code open.contended}.</li>
      * </ul>
      *
      * @param event the interaction event
@@ -91,24 +120,53 @@ public class MCEngineBackPackListener implements Listener {
         if (hand == null) return; // Safety guard
 
         // If off-hand triggered but main-hand also holds a backpack, let the main-hand event handle it
-        if (hand == EquipmentSlot.OFF_HAND && api.isBackpack(main)) {
+        if (hand == EquipmentSlot.OFF_HAND && itemFilter.isBackpack(main)) {
             return;
         }
 
         ItemStack usedItem = (hand == EquipmentSlot.HAND) ? main : off;
-        if (usedItem == null || !api.isBackpack(usedItem)) return;
+        int slot = (hand == EquipmentSlot.HAND) ? player.getInventory().getHeldItemSlot() : OFF_HAND_SLOT;
+        if (usedItem == null || !itemFilter.isBackpack(usedItem)) return;
 
         event.setCancelled(true); // Prevent placing/using the head as a normal item
 
-        Inventory inv = api.openBackpack(usedItem);
-        // Track which item should receive the saved contents on close
-        openBackpacks.put(player.getUniqueId(), usedItem);
-        player.openInventory(inv);
+        UUID uuid = player.getUniqueId();
+        if (!sessions.beginOpen(uuid)) return; // Decode already in flight
+
+        common.openBackpackAsync(player, usedItem).whenComplete((inv, error) -> {
+            // Completes on the player's thread (main thread, or the player's region on Folia)
+            sessions.finishOpen(uuid);
+            Throwable cause = (error instanceof CompletionException) ? error.getCause() : error;
+            if (cause instanceof BackPackInUseException) {
+                player.sendMessage(ChatColor.RED + "This backpack is in use.");
+                return;
+            }
+            if (cause instanceof CancellationException) return; // The player left before it loaded; nothing was kept
+            if (error != null) {
+                plugin.getLogger().log(Level.WARNING, "Failed to open backpack for " + player.getName(), error);
+                return;
+            }
+            if (!(inv.getHolder() instanceof BackPackHolder holder)) return;
+
+            // Track which item should receive the saved contents on close, and what it held at open
+            if (player.isOnline() && !sessions.isOpen(uuid)
+                    && sessions.open(uuid, new BackPackSession(holder.getBackpackId(), usedItem, slot, BackPackSession.slotHashes(inv)))) {
+                player.openInventory(inv);
+            } else {
+                common.releaseBackpack(inv);
+            }
+        });
     }
 
     /**
      * Saves the contents of an open backpack back into the backpack item when the player closes it.
      *
+     * <p>The player's changes are skipped when no modifying click/drag was observed during the
+     * session and the content hash still matches the one taken at open time (a "peek" open).
+     * Otherwise the slots that changed are passed along, so external stores can write a delta.
+     * Either way the player leaves the backpack's shared view; the save itself happens once, when
+     * the last viewer leaves.</p>
+     *
      * @param event the inventory close event
      */
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -116,15 +174,18 @@ public class MCEngineBackPackListener implements Listener {
         Player player = (Player) event.getPlayer();
         UUID uuid = player.getUniqueId();
 
-        ItemStack backpackItem = openBackpacks.get(uuid);
-        if (backpackItem == null) return; // Not a tracked backpack close
+        BackPackSession session = sessions.close(uuid);
+        if (session == null) return; // Not a tracked backpack close
 
-        // Save the inventory contents back into the item meta
         Inventory closed = event.getInventory();
-        api.saveBackpack(backpackItem, closed);
-
-        // Clean up mapping after save
-        openBackpacks.remove(uuid);
+        int[] closeHashes = BackPackSession.slotHashes(closed);
+        // Hash fallback catches changes made outside click/drag events (e.g. by other plugins)
+        if (!session.isModified(Arrays.hashCode(closeHashes))) {
+            common.releaseBackpack(closed);
+        } else {
+            // The last viewer out queues the changed slots to be written back into the item meta or the store
+            common.releaseBackpack(closed, true, session.changedSlots(closeHashes));
+        }
     }
 
     /**
@@ -138,63 +199,22 @@ public class MCEngineBackPackListener implements Listener {
      *   <li>Move-to-other-inventory actions.</li>
      * </ul>
      *
+     * <p>The click is classified once by {@link BackPackClickClassifier}; clicks outside a
+     * backpack session that do not target the top inventory return without any item checks.</p>
+     *
      * @param event the inventory click event
      */
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onInventoryClick(InventoryClickEvent event) {
         if (!(event.getWhoClicked() instanceof Player player)) return;
 
-        boolean isBackpackSession = openBackpacks.containsKey(player.getUniqueId());
-        Inventory topInv = event.getView().getTopInventory();
-        Inventory clickedInv = event.getClickedInventory();
+        boolean isBackpackSession = sessions.isOpen(player.getUniqueId());
 
-        ItemStack cursor = event.getCursor();
-        ItemStack current = event.getCurrentItem();
-
-        // If any backpack item is involved in the action while the backpack GUI is open, block it.
-        if (isBackpackSession) {
-            // Prevent placing backpacks into the top (backpack) inventory by any method
-            if (event.getView().getTopInventory() != null) {
-                // 1) Cursor into top
-                if (cursor != null && api.isBackpack(cursor) && event.getRawSlot() < topInv.getSize()) {
-                    event.setCancelled(true);
-                    return;
-                }
-                // 2) Shift-click from bottom into top
-                if (event.isShiftClick() && current != null && api.isBackpack(current)) {
-                    event.setCancelled(true);
-                    return;
-                }
-                // 3) Number key swap bringing a backpack into the top
-                if (event.getClick() == ClickType.NUMBER_KEY) {
-                    int hotbar = event.getHotbarButton();
-                    if (hotbar >= 0 && hotbar <= 8) {
-                        ItemStack hotbarItem = player.getInventory().getItem(hotbar);
-                        if (hotbarItem != null && api.isBackpack(hotbarItem)) {
-                            event.setCancelled(true);
-                            return;
-                        }
-                    }
-                }
-                // 4) Any move-to-other-inventory involving a backpack
-                if (event.getAction() == InventoryAction.MOVE_TO_OTHER_INVENTORY && current != null && api.isBackpack(current)) {
-                    event.setCancelled(true);
-                    return;
-                }
-                // 5) Prevent taking a backpack out of the top (no backpacks inside backpacks at all)
-                if (clickedInv != null && clickedInv.equals(topInv) && current != null && api.isBackpack(current)) {
-                    event.setCancelled(true);
-                    return;
-                }
-            }
-        }
-
-        // Additional hard guard: never allow backpacks to be placed inside the top backpack GUI,
-        // even if somehow the session mapping missed.
-        if (clickedInv != null && topInv != null && clickedInv.equals(topInv)) {
-            if ((cursor != null && api.isBackpack(cursor)) || (current != null && api.isBackpack(current))) {
-                event.setCancelled(true);
-            }
+        // Inspect cursor, current and hotbar items at most once, then evaluate every rule
+        // (including the hard guard for missed session mappings) from the flag set.
+        int flags = BackPackClickClassifier.classify(event, player, isBackpackSession, itemFilter::isBackpack);
+        if (BackPackClickRules.shouldCancel(flags)) {
+            event.setCancelled(true);
         }
     }
 
@@ -206,10 +226,10 @@ public class MCEngineBackPackListener implements Listener {
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onInventoryDrag(InventoryDragEvent event) {
         if (!(event.getWhoClicked() instanceof Player player)) return;
-        if (!openBackpacks.containsKey(player.getUniqueId())) return;
+        if (!sessions.isOpen(player.getUniqueId())) return;
 
         ItemStack dragged = event.getOldCursor();
-        if (dragged == null || !api.isBackpack(dragged)) return;
+        if (dragged == null || !itemFilter.isBackpack(dragged)) return;
 
         Inventory topInv = event.getView().getTopInventory();
         int topSize = topInv.getSize();
@@ -223,6 +243,49 @@ public class MCEngineBackPackListener implements Listener {
         }
     }
 
+    /**
+     * Records the backpack slot an uncancelled click may have changed.
+     *
+     * <p>Runs at {@link EventPriority#MONITOR} so only clicks that actually go through are counted.
+     * Clicks that stay entirely in the player's own inventory leave the session clean. Moves whose
+     * backpack-side slots are not known up front (shift-click into the backpack, collect-to-cursor)
+     * only mark the session dirty; the slot hashes compared at close pin down which slots changed.</p>
+     *
+     * @param event the inventory click event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBackpackClickModify(InventoryClickEvent event) {
+        BackPackSession session = sessions.get(event.getWhoClicked().getUniqueId());
+        if (session == null) return;
+
+        InventoryAction action = event.getAction();
+        if (action == InventoryAction.NOTHING) return;
+
+        Inventory topInv = event.getView().getTopInventory();
+        Inventory clickedInv = event.getClickedInventory();
+        if (clickedInv != null && clickedInv.equals(topInv)) {
+            session.markSlot(event.getSlot());
+        } else if (action == InventoryAction.MOVE_TO_OTHER_INVENTORY || action == InventoryAction.COLLECT_TO_CURSOR) {
+            session.markDirty();
+        }
+    }
+
+    /**
+     * Records the backpack slots an uncancelled drag places items into.
+     *
+     * @param event the inventory drag event
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBackpackDragModify(InventoryDragEvent event) {
+        BackPackSession session = sessions.get(event.getWhoClicked().getUniqueId());
+        if (session == null) return;
+
+        int topSize = event.getView().getTopInventory().getSize();
+        for (int rawSlot : event.getRawSlots()) {
+            if (rawSlot < topSize) session.markSlot(rawSlot);
+        }
+    }
+
     /**
      * Prevents swapping items with the off-hand (key "F") while a backpack GUI is open,
      * especially when a backpack is involved.
@@ -232,23 +295,60 @@ public class MCEngineBackPackListener implements Listener {
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onSwapHands(PlayerSwapHandItemsEvent event) {
         Player player = event.getPlayer();
-        if (!openBackpacks.containsKey(player.getUniqueId())) return;
+        if (!sessions.isOpen(player.getUniqueId())) return;
 
         ItemStack main = event.getMainHandItem();
         ItemStack off = event.getOffHandItem();
 
-        if ((main != null && api.isBackpack(main)) || (off != null && api.isBackpack(off))) {
+        if ((main != null && itemFilter.isBackpack(main)) || (off != null && itemFilter.isBackpack(off))) {
             event.setCancelled(true);
         }
     }
 
     /**
-     * Ensures per-player tracking is cleared if a player disconnects while a backpack is open.
+     * Queues the joining player's backpacks for prefetching so the first open is a warm-cache hit,
+     * and starts loading their player-bound backpacks.
+     *
+     * @param event the player join event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        common.prefetchBackpacks(event.getPlayer());
+        common.loadPersonalBackpacks(event.getPlayer());
+    }
+
+    /**
+     * Ensures per-player tracking and prefetched snapshots are cleared if a player disconnects,
+     * and issues the player's queued store saves, including their changed player-bound backpacks,
+     * without waiting for them on the quitting thread.
      *
      * @param event the player quit event
      */
     @EventHandler(priority = EventPriority.MONITOR)
     public void onQuit(PlayerQuitEvent event) {
-        openBackpacks.remove(event.getPlayer().getUniqueId());
+        sessions.forget(event.getPlayer().getUniqueId());
+        common.releasePrefetched(event.getPlayer().getUniqueId());
+        common.unloadPersonalBackpacks(event.getPlayer().getUniqueId());
+        // The open backpack was closed (and its save queued) just before this event
+        common.flushSaves(event.getPlayer());
+    }
+
+    /**
+     * Closes every open backpack and flushes queued saves when the owning plugin is disabled,
+     * so no contents are lost on shutdown or reload.
+     *
+     * @param event the plugin disable event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        if (event.getPlugin() != plugin) return;
+
+        // Closing fires onBackpackClose, which queues each save and removes the session
+        for (UUID uuid : sessions.players()) {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null) player.closeInventory();
+        }
+        sessions.clear();
+        common.shutdown();
     }
 }
@@ -0,0 +1,69 @@
+package io.github.mcengine.common.backpack.pipeline;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+
+import java.util.UUID;
+
+/**
+ * Inventory holder attached to every backpack GUI opened through {@link BackPackOpenPipeline}.
+ *
+ * <p>Carries the stable backpack id so close and save paths can identify the backpack from the
+ * inventory alone, and for player-bound backpacks ({@link BackPackPersonalBackpacks}) the owning
+ * player's id.</p>
+ */
+public final class BackPackHolder implements InventoryHolder {
+
+    /** Stable id of the backpack shown by the inventory. */
+    private final UUID backpackId;
+
+    /** Id of the owning player for a player-bound backpack, or {@code null} for an item backpack. */
+    private final UUID ownerId;
+
+    /** Inventory owned by this holder; set once right after creation. */
+    private Inventory inventory;
+
+    /**
+     * @param backpackId stable backpack id
+     */
+    public BackPackHolder(UUID backpackId) {
+        this(backpackId, null);
+    }
+
+    /**
+     * @param backpackId stable backpack id
+     * @param ownerId    id of the owning player for a player-bound backpack, or {@code null}
+     */
+    public BackPackHolder(UUID backpackId, UUID ownerId) {
+        this.backpackId = backpackId;
+        this.ownerId = ownerId;
+    }
+
+    /**
+     * @return stable id of the backpack shown by the inventory
+     */
+    public UUID getBackpackId() {
+        return backpackId;
+    }
+
+    /**
+     * @return id of the owning player for a player-bound backpack, or {@code null} for an item backpack
+     */
+    public UUID getOwnerId() {
+        return ownerId;
+    }
+
+    @Override
+    public Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * Binds the inventory created for this holder.
+     *
+     * @param inventory the backpack inventory
+     */
+    void attach(Inventory inventory) {
+        this.inventory = inventory;
+    }
+}
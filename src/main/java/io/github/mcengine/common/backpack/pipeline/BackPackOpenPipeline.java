@@ -0,0 +1,255 @@
+package io.github.mcengine.common.backpack.pipeline;
+
+import io.github.mcengine.api.backpack.MCEngineBackPackApi;
+import io.github.mcengine.common.backpack.cache.BackPackWarmCache;
+import io.github.mcengine.common.backpack.codec.BackPackContentCodec;
+import io.github.mcengine.common.backpack.core.cache.BackPackSnapshotCache;
+import io.github.mcengine.common.backpack.core.scheduler.BackPackHandOff;
+import io.github.mcengine.common.backpack.core.storage.BackPackStore;
+import io.github.mcengine.common.backpack.storage.BackPackItemPayload;
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Three-stage pipeline that turns a backpack item into an open-ready {@link Inventory}.
+ *
+ * <ol>
+ *   <li><b>Capture</b> (main thread): read the backpack id, embedded payload, and title from the item meta.</li>
+ *   <li><b>Decode</b> (async): load the payload from the {@link BackPackStore} when one is configured
+ *   (falling back to the embedded payload), then decode it into a {@link BackPackSnapshot}.</li>
+ *   <li><b>Materialize</b> (main thread): create the Bukkit inventory, owned by a {@link BackPackHolder},
+ *   and apply the snapshot.</li>
+ * </ol>
+ *
+ * <p>A save still pending in the {@link BackPackSaveQueue} is claimed during capture and opened
+ * directly, skipping load and decode; so is a snapshot prefetched at join time into the
+ * {@link BackPackWarmCache}, or still held in the {@link BackPackSnapshotCache}. Backpacks without any payload written by this module are
+ * read through {@link MCEngineBackPackApi#openBackpack(ItemStack)} on the main thread.</p>
+ */
+public final class BackPackOpenPipeline {
+
+    /** Backpack API used for items that carry no payload of this module yet. */
+    private final MCEngineBackPackApi api;
+
+    /** Accessor for the encoded payload stored in item meta. */
+    private final BackPackItemPayload payload;
+
+    /** Codec used to decode the payload into slot contents. */
+    private final BackPackContentCodec codec;
+
+    /** External store, or {@code null} when contents are embedded in item meta. */
+    private final BackPackStore store;
+
+    /** Save queue consulted for pending store writes of the backpack being opened. */
+    private final BackPackSaveQueue saveQueue;
+
+    /** Snapshots decoded ahead of the first open, or {@code null} when prefetching is disabled. */
+    private final BackPackWarmCache warmCache;
+
+    /** Decoded contents of recently used backpacks, or {@code null} when disabled. */
+    private final BackPackSnapshotCache<ItemStack[]> snapshotCache;
+
+    /** Executor running tasks on the main server thread. */
+    private final Executor mainExecutor;
+
+    /** Executor running load and decode work off the main thread (the storage executor in external mode). */
+    private final Executor asyncExecutor;
+
+    /**
+     * Creates an open pipeline.
+     *
+     * @param api           backpack API for payload-less items
+     * @param payload       item payload accessor
+     * @param codec         contents codec
+     * @param store         external store, or {@code null} for item mode
+     * @param saveQueue     save queue
+     * @param warmCache     prefetched snapshots, or {@code null} when prefetching is disabled
+     * @param snapshotCache decoded-contents cache, or {@code null} when disabled
+     * @param mainExecutor  executor for main-thread stages
+     * @param asyncExecutor executor for the load/decode stage; should bound blocking I/O in external mode
+     */
+    public BackPackOpenPipeline(MCEngineBackPackApi api, BackPackItemPayload payload, BackPackContentCodec codec,
+                                BackPackStore store, BackPackSaveQueue saveQueue, BackPackWarmCache warmCache,
+                                BackPackSnapshotCache<ItemStack[]> snapshotCache, Executor mainExecutor, Executor asyncExecutor) {
+        this.api = api;
+        this.payload = payload;
+        this.codec = codec;
+        this.store = store;
+        this.saveQueue = saveQueue;
+        this.warmCache = warmCache;
+        this.snapshotCache = snapshotCache;
+        this.mainExecutor = mainExecutor;
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Runs all stages on the calling (main) thread, including any blocking store read.
+     *
+     * @param item the backpack item
+     * @return the materialized inventory
+     */
+    public Inventory open(ItemStack item) {
+        BackPackItemPayload.Captured captured = payload.read(item);
+        UUID id = resolveId(item, captured);
+
+        BackPackSnapshot ready = captureReady(id, item, captured);
+        if (ready != null) return materialize(ready);
+
+        saveQueue.awaitWrites(id).join();
+        BackPackSnapshot loaded = load(id, captured);
+        return materialize(loaded != null ? loaded : fromApi(id, item, captured));
+    }
+
+    /**
+     * Captures on the calling (main) thread, decodes asynchronously, and materializes on the main thread.
+     *
+     * @param item the backpack item
+     * @return future completed on the main thread with the materialized inventory
+     */
+    public CompletableFuture<Inventory> openAsync(ItemStack item) {
+        return openAsync(item, BackPackHandOff.Target.of(mainExecutor));
+    }
+
+    /**
+     * Captures on the calling thread, decodes asynchronously, and materializes on the given target.
+     *
+     * @param item  the backpack item
+     * @param owner thread owning the viewer (e.g. the player's region thread)
+     * @return future completed on {@code owner} with the materialized inventory, or failed with a
+     *         {@link java.util.concurrent.CancellationException} if the viewer is gone first
+     */
+    public CompletableFuture<Inventory> openAsync(ItemStack item, BackPackHandOff.Target owner) {
+        BackPackItemPayload.Captured captured = payload.read(item);
+        UUID id = resolveId(item, captured);
+
+        BackPackSnapshot ready = captureReady(id, item, captured);
+        if (ready != null) return CompletableFuture.completedFuture(materialize(ready));
+
+        CompletableFuture<BackPackSnapshot> loaded = saveQueue.awaitWrites(id)
+                .thenApplyAsync(ignored -> load(id, captured), asyncExecutor);
+        return BackPackHandOff.handOff(loaded, owner, null)
+                .thenApply(snapshot -> materialize(snapshot != null ? snapshot : fromApi(id, item, captured)));
+    }
+
+    /**
+     * Returns the stable id of a backpack item, assigning one to items that predate backpack ids.
+     *
+     * @param item the backpack item
+     * @return stable backpack id
+     */
+    public UUID resolveId(ItemStack item) {
+        return resolveId(item, payload.read(item));
+    }
+
+    /**
+     * Returns the captured id, assigning one to items that predate backpack ids.
+     *
+     * @param item     the backpack item
+     * @param captured captured payload
+     * @return stable backpack id
+     */
+    private UUID resolveId(ItemStack item, BackPackItemPayload.Captured captured) {
+        return captured.id() != null ? captured.id() : payload.assignId(item);
+    }
+
+    /**
+     * Capture-stage shortcuts that need no load or decode: a pending queued save, (in item mode)
+     * an item without an embedded payload, a snapshot prefetched into the warm cache, or
+     * contents still held by the snapshot cache.
+     *
+     * @param id       stable backpack id
+     * @param item     the backpack item
+     * @param captured captured payload
+     * @return a ready snapshot, or {@code null} if the payload must be loaded and decoded
+     */
+    private BackPackSnapshot captureReady(UUID id, ItemStack item, BackPackItemPayload.Captured captured) {
+        ItemStack[] pending = saveQueue.claim(id, item);
+        if (pending != null) return new BackPackSnapshot(id, captured.title(), pending);
+        if (store == null && captured.data() == null) return fromApi(id, item, captured);
+        BackPackSnapshot warm = (warmCache != null) ? warmCache.take(id, captured.data()) : null;
+        if (warm != null) return warm;
+        if (snapshotCache == null) return null;
+        ItemStack[] cached = snapshotCache.get(id, stamp(captured.data()));
+        return (cached != null) ? new BackPackSnapshot(id, captured.title(), cached) : null;
+    }
+
+    /**
+     * Load/decode stage: reads the stored payload (off-heap tier, then store with its deltas
+     * folded in, then the embedded payload) and decodes it.
+     *
+     * @param id       stable backpack id
+     * @param captured payload captured from the item
+     * @return decoded snapshot, or {@code null} if neither source holds a payload
+     */
+    private BackPackSnapshot load(UUID id, BackPackItemPayload.Captured captured) {
+        // Read before loading so a save racing this load keeps the stale result out of the cache
+        long generation = (snapshotCache != null) ? snapshotCache.generation(id) : 0L;
+        try {
+            byte[] data = (store != null && snapshotCache != null) ? snapshotCache.getEncoded(id, stamp(captured.data())) : null;
+            if (data == null && store != null) {
+                BackPackSaveQueue.Stored stored = saveQueue.readStore(id);
+                if (stored != null) {
+                    // With deltas folded in, the full record alone is outdated and is not kept off-heap
+                    if (snapshotCache != null && stored.folded()) snapshotCache.putLoaded(id, stored.contents(), stored.weight(), 0L, generation);
+                    else if (snapshotCache != null) snapshotCache.putLoaded(id, stored.contents(), stored.base(), 0L, generation);
+                    return new BackPackSnapshot(id, captured.title(), stored.contents());
+                }
+            }
+            if (data == null) data = captured.data();
+            if (data == null) return null;
+            ItemStack[] contents = codec.decode(data);
+            if (snapshotCache != null) snapshotCache.putLoaded(id, contents, data, stamp(captured.data()), generation);
+            return new BackPackSnapshot(id, captured.title(), contents);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Reads a backpack that predates this module's payload through {@link MCEngineBackPackApi}. Main thread only.
+     *
+     * @param id       stable backpack id
+     * @param item     the backpack item
+     * @param captured captured payload
+     * @return snapshot of the API-stored contents
+     */
+    private BackPackSnapshot fromApi(UUID id, ItemStack item, BackPackItemPayload.Captured captured) {
+        return new BackPackSnapshot(id, captured.title(), api.openBackpack(item).getContents());
+    }
+
+    /**
+     * Computes the snapshot-cache stamp of an item's payload. In external mode the item carries no
+     * contents, so entries stay valid until a save replaces them.
+     *
+     * @param itemData payload embedded in the item, or {@code null}
+     * @return the stamp
+     */
+    private long stamp(byte[] itemData) {
+        return (store == null) ? BackPackSnapshotCache.stampOf(itemData) : 0L;
+    }
+
+    /**
+     * Materialize stage: binds a snapshot to a new Bukkit inventory. Main thread only.
+     * <p>
+     * {@link Inventory#setContents(ItemStack[])} copies the stacks, so cached arrays are never
+     * shared with a live inventory.
+     * </p>
+     *
+     * @param snapshot decoded snapshot
+     * @return the inventory
+     */
+    private Inventory materialize(BackPackSnapshot snapshot) {
+        BackPackHolder holder = new BackPackHolder(snapshot.id());
+        Inventory inventory = Bukkit.createInventory(holder, snapshot.size(), snapshot.title());
+        inventory.setContents(snapshot.contents());
+        holder.attach(inventory);
+        return inventory;
+    }
+}
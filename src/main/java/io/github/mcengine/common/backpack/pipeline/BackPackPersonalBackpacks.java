@@ -0,0 +1,389 @@
+package io.github.mcengine.common.backpack.pipeline;
+
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+import io.github.mcengine.common.backpack.core.scheduler.BackPackHandOff;
+import io.github.mcengine.common.backpack.core.session.BackPackInUseException;
+import io.github.mcengine.common.backpack.core.session.BackPackLockTable;
+import io.github.mcengine.common.backpack.scheduler.BackPackScheduler;
+import io.github.mcengine.common.backpack.session.BackPackLease;
+import io.github.mcengine.common.backpack.session.BackPackSession;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Player-bound backpacks: numbered backpacks owned by a player rather than carried as an item.
+ *
+ * <p>Each backpack is keyed by the owner's id and a slot number ({@link #backpackId(UUID, int)})
+ * and lives only in the external store, so no payload or id travels in item meta. A player's
+ * backpacks are loaded in one batch when they join ({@link #load(Player)}) and kept as live
+ * inventories for the rest of their session, so every open, by the owner or by staff, shows the
+ * same inventory without touching storage.</p>
+ *
+ * <p>Each loaded backpack holds a {@link BackPackLease} in the shared {@link BackPackLockTable},
+ * as an open item backpack does. The owner's session counts as one viewer and every open joins the
+ * lease; viewers' changes are recorded on it as they close the inventory. When the last viewer
+ * leaves, normally the owner quitting ({@link #unload(UUID)}), the changed slots are handed to the
+ * {@link BackPackSaveQueue} once and the lease is released. If staff still view a backpack when
+ * its owner quits, it stays loaded until they close it, and an owner rejoining meanwhile picks up
+ * the same live inventory.</p>
+ *
+ * <p>A save still pending from the owner's previous session is claimed on join and opened
+ * directly, as {@link BackPackOpenPipeline} does for item backpacks. Lease changes are
+ * synchronized on this object, so a load never races the last viewer's release.</p>
+ */
+public final class BackPackPersonalBackpacks {
+
+    /** Logger of the owning plugin. */
+    private final Logger logger;
+
+    /** Save queue that writes the backpacks back, and whose pending saves a load claims. */
+    private final BackPackSaveQueue saveQueue;
+
+    /** Scheduler used to create inventories on the owner's thread. */
+    private final BackPackScheduler scheduler;
+
+    /** Lock table shared with item backpacks. */
+    private final BackPackLockTable<BackPackLease> locks;
+
+    /** Executor running store loads and decodes. */
+    private final Executor loadExecutor;
+
+    /** Number of backpacks per player. */
+    private final int slots;
+
+    /** Inventory size of a new backpack (a multiple of 9). */
+    private final int size;
+
+    /** Backpack ids of every loaded player, by player id. */
+    private final Map<UUID, List<UUID>> owners = new ConcurrentHashMap<>();
+
+    /** Loaded backpacks of online players (and of players whose backpacks are still viewed), by backpack id. */
+    private final Map<UUID, Loaded> loaded = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the player-bound backpack manager.
+     *
+     * @param logger       logger for failed loads
+     * @param saveQueue    save queue of the external store
+     * @param scheduler    scheduler for the owner's thread
+     * @param locks        lock table shared with item backpacks
+     * @param loadExecutor executor for store loads and decodes
+     * @param metrics      shared counters
+     * @param slots        number of backpacks per player
+     * @param rows         rows of a new backpack (1–6)
+     */
+    public BackPackPersonalBackpacks(Logger logger, BackPackSaveQueue saveQueue, BackPackScheduler scheduler,
+                                     BackPackLockTable<BackPackLease> locks, Executor loadExecutor, BackPackMetrics metrics,
+                                     int slots, int rows) {
+        this.logger = logger;
+        this.saveQueue = saveQueue;
+        this.scheduler = scheduler;
+        this.locks = locks;
+        this.loadExecutor = loadExecutor;
+        this.slots = slots;
+        this.size = Math.max(1, Math.min(6, rows)) * 9;
+        metrics.registerGauge(BackPackMetrics.PERSONAL_LOADED, loaded::size);
+    }
+
+    /**
+     * Derives the stable id of a player-bound backpack.
+     *
+     * @param playerId owning player's id
+     * @param slot     backpack number, from 1
+     * @return the backpack id, the same on every server
+     */
+    public static UUID backpackId(UUID playerId, int slot) {
+        return UUID.nameUUIDFromBytes(("mcengine-backpack:personal:" + playerId + ":" + slot).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return number of backpacks per player
+     */
+    public int getSlots() {
+        return slots;
+    }
+
+    /**
+     * Starts loading a joining player's backpacks. Call on the player's thread.
+     *
+     * @param player the player who joined
+     */
+    public void load(Player player) {
+        UUID playerId = player.getUniqueId();
+        Map<UUID, Loaded> fresh = new HashMap<>();
+        Map<UUID, ItemStack[]> claimed = new HashMap<>();
+        List<UUID> unclaimed = new ArrayList<>();
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        synchronized (this) {
+            List<UUID> ids = new ArrayList<>(slots);
+            for (int slot = 1; slot <= slots; slot++) ids.add(backpackId(playerId, slot));
+            if (owners.putIfAbsent(playerId, List.copyOf(ids)) != null) return;
+
+            for (int slot = 1; slot <= slots; slot++) {
+                UUID id = ids.get(slot - 1);
+                // Still viewed since the owner's last session: rejoin the live inventory
+                Loaded kept = loaded.get(id);
+                if (kept != null && kept.lease.join()) continue;
+
+                Loaded backpack = new Loaded(playerId, slot, new BackPackLease(id, null, player));
+                if (locks.tryAcquire(id, backpack.lease) != null) {
+                    logger.warning("Personal backpack " + slot + " of " + player.getName() + " is leased elsewhere; it stays unavailable.");
+                    backpack.lease.fail(new BackPackInUseException(id));
+                    continue;
+                }
+                loaded.put(id, backpack);
+                fresh.put(id, backpack);
+                // A save left pending by the previous session (e.g. a quick rejoin) is opened directly
+                ItemStack[] pending = saveQueue.claim(id, null);
+                if (pending != null) {
+                    claimed.put(id, pending);
+                } else {
+                    unclaimed.add(id);
+                    writes.add(saveQueue.awaitWrites(id));
+                }
+            }
+        }
+        if (fresh.isEmpty()) return;
+
+        CompletableFuture<Map<UUID, ItemStack[]>> read = CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new))
+                .thenApplyAsync(ignored -> read(unclaimed), loadExecutor);
+        BackPackHandOff.handOff(read, scheduler.entityTarget(player), null)
+                .thenAccept(stored -> {
+                    for (Map.Entry<UUID, Loaded> backpack : fresh.entrySet()) {
+                        UUID id = backpack.getKey();
+                        ItemStack[] contents = claimed.containsKey(id) ? claimed.get(id) : stored.get(id);
+                        backpack.getValue().attach(materialize(id, backpack.getValue(), contents));
+                    }
+                })
+                .whenComplete((ignored, error) -> {
+                    if (error == null) return;
+                    // A player who left before the load finished is not an error
+                    if (!(error instanceof CancellationException || error.getCause() instanceof CancellationException)) {
+                        logger.log(Level.SEVERE, "Failed to load personal backpacks of " + player.getName() + ".", error);
+                    }
+                    synchronized (this) {
+                        for (Map.Entry<UUID, Loaded> backpack : fresh.entrySet()) {
+                            loaded.remove(backpack.getKey(), backpack.getValue());
+                            locks.release(backpack.getKey(), backpack.getValue().lease);
+                            backpack.getValue().lease.fail(error);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Returns a player's backpack, waiting for it if it is still loading. The viewer joins the
+     * backpack's lease and must hand the inventory back through {@link #close} when done.
+     *
+     * @param ownerId        owning player's id
+     * @param slot           backpack number, from 1
+     * @param viewer  thread owning the viewer
+     * @return future of the live inventory; completes on {@code viewer} unless already loaded, fails
+     *         with {@link IllegalStateException} if the owner's backpacks are not loaded, and with a
+     *         {@link CancellationException} if the viewer is gone before it loads, leaving the lease
+     */
+    public CompletableFuture<Inventory> open(UUID ownerId, int slot, BackPackHandOff.Target viewer) {
+        UUID id = backpackId(ownerId, slot);
+        Loaded backpack;
+        synchronized (this) {
+            backpack = loaded.get(id);
+            if (backpack == null || !backpack.lease.join()) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Personal backpacks of " + ownerId + " are not loaded."));
+            }
+        }
+        Inventory ready = backpack.lease.getInventory();
+        return (ready != null) ? CompletableFuture.completedFuture(ready)
+                : BackPackHandOff.handOff(backpack.lease.ready(), viewer, inventory -> close(id, inventory, false, null));
+    }
+
+    /**
+     * Hands back a player-bound backpack a viewer closed, recording what they changed. The last
+     * viewer of a backpack whose owner already left saves it.
+     *
+     * @param backpackId   stable backpack id
+     * @param inventory    the inventory the viewer closed
+     * @param modified     whether the viewer modified the contents
+     * @param changedSlots slots the viewer changed, or {@code null} if unknown
+     */
+    public synchronized void close(UUID backpackId, Inventory inventory, boolean modified, BitSet changedSlots) {
+        Loaded backpack = loaded.get(backpackId);
+        if (backpack == null || backpack.lease.getInventory() != inventory) {
+            // Force-unloaded (plugin disable) while viewed: write what the viewer holds
+            if (modified) saveQueue.enqueue(backpackId, null, null, detach(inventory.getContents()), changedSlots);
+            return;
+        }
+        if (backpack.lease.leave(modified, changedSlots)) end(backpackId, backpack);
+    }
+
+    /**
+     * Ends a leaving player's session on their backpacks. Backpacks nobody else views are queued
+     * for saving, if changed, and released; the rest are saved by their last viewer. Call on the
+     * player's thread (e.g. on quit).
+     *
+     * @param playerId the player's id
+     */
+    public synchronized void unload(UUID playerId) {
+        List<UUID> ids = owners.remove(playerId);
+        if (ids == null) return;
+        for (UUID id : ids) {
+            Loaded backpack = loaded.get(id);
+            if (backpack != null && backpack.lease.leave(false, null)) end(id, backpack);
+        }
+    }
+
+    /**
+     * Unloads every player and saves every backpack still viewed, e.g. on plugin disable before
+     * the save queue is flushed.
+     */
+    public synchronized void unloadAll() {
+        for (UUID playerId : List.copyOf(owners.keySet())) unload(playerId);
+        for (Map.Entry<UUID, Loaded> backpack : List.copyOf(loaded.entrySet())) end(backpack.getKey(), backpack.getValue());
+    }
+
+    /**
+     * Queues a save of a backpack if it changed since load, forgets it, and releases its lease.
+     * Caller holds this object's monitor.
+     *
+     * @param id       stable backpack id
+     * @param backpack the loaded backpack
+     */
+    private void end(UUID id, Loaded backpack) {
+        loaded.remove(id, backpack);
+        Inventory inventory = backpack.lease.getInventory();
+        if (inventory != null) {
+            ItemStack[] contents = detach(inventory.getContents());
+            BitSet changed = backpack.changesIn(contents);
+            // Owned by the player, so their quit-time flush writes it
+            if (changed == null || !changed.isEmpty()) saveQueue.enqueue(id, null, backpack.lease.getOwner(), contents, changed);
+        }
+        // Queued before releasing, so the next load claims this save
+        locks.release(id, backpack.lease);
+    }
+
+    /**
+     * Reads backpacks from the store. Blocking; runs on the load executor.
+     *
+     * @param ids backpack ids
+     * @return decoded contents by id; ids without a record are absent
+     * @throws UncheckedIOException if the store read fails
+     */
+    private Map<UUID, ItemStack[]> read(List<UUID> ids) {
+        if (ids.isEmpty()) return Map.of();
+        Map<UUID, ItemStack[]> contents = new HashMap<>();
+        try {
+            for (Map.Entry<UUID, BackPackSaveQueue.Stored> stored : saveQueue.readStoreAll(ids).entrySet()) {
+                contents.put(stored.getKey(), stored.getValue().contents());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return contents;
+    }
+
+    /**
+     * Creates the live inventory of a backpack. Owner's thread only.
+     *
+     * @param id       stable backpack id
+     * @param backpack the loaded backpack
+     * @param contents stored contents, or {@code null} for a backpack never saved
+     * @return the inventory
+     */
+    private Inventory materialize(UUID id, Loaded backpack, ItemStack[] contents) {
+        // A backpack saved before the configured size shrank keeps its larger size
+        int inventorySize = (contents == null) ? size : Math.max(size, contents.length);
+        BackPackHolder holder = new BackPackHolder(id, backpack.ownerId);
+        Inventory inventory = Bukkit.createInventory(holder, inventorySize, "Personal Backpack " + backpack.slot);
+        if (contents != null) inventory.setContents(contents);
+        holder.attach(inventory);
+        return inventory;
+    }
+
+    /**
+     * Copies slot contents so they can be encoded after the inventory changes again.
+     *
+     * @param contents live slot contents
+     * @return detached copies
+     */
+    private static ItemStack[] detach(ItemStack[] contents) {
+        for (int i = 0; i < contents.length; i++) {
+            if (contents[i] != null) contents[i] = contents[i].clone();
+        }
+        return contents;
+    }
+
+    /**
+     * A loaded player-bound backpack and its load-time contents.
+     */
+    private static final class Loaded {
+
+        /** Owning player's id. */
+        final UUID ownerId;
+
+        /** Backpack number, from 1. */
+        final int slot;
+
+        /** Lease shared by the owner's session and every viewer; carries the live inventory and reported changes. */
+        final BackPackLease lease;
+
+        /** Slot hashes at load time; guarded by {@code this}. */
+        private int[] loadedHashes = new int[0];
+
+        /**
+         * @param ownerId owning player's id
+         * @param slot    backpack number, from 1
+         * @param lease   lease held for the owner's session
+         */
+        Loaded(UUID ownerId, int slot, BackPackLease lease) {
+            this.ownerId = ownerId;
+            this.slot = slot;
+            this.lease = lease;
+        }
+
+        /**
+         * Publishes the live inventory, remembering its contents for the save-time change check.
+         *
+         * @param live the live inventory
+         */
+        void attach(Inventory live) {
+            synchronized (this) {
+                loadedHashes = BackPackSession.slotHashes(live);
+            }
+            lease.attach(live);
+        }
+
+        /**
+         * Determines what changed since load: the slots viewers reported plus any slot whose
+         * contents differ from load time (e.g. changed by another plugin without a viewer).
+         *
+         * @param contents current slot contents
+         * @return changed slots (empty if unchanged), or {@code null} if the whole backpack must be written
+         */
+        synchronized BitSet changesIn(ItemStack[] contents) {
+            BitSet diff = lease.isModified() ? lease.getChangedSlots() : new BitSet();
+            if (diff == null) return null;
+            for (int i = 0; i < contents.length; i++) {
+                int hash = (contents[i] == null) ? 0 : contents[i].hashCode();
+                if (i >= loadedHashes.length || hash != loadedHashes[i]) diff.set(i);
+            }
+            return diff;
+        }
+    }
+}
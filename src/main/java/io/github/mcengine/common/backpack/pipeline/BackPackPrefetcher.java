@@ -0,0 +1,236 @@
+package io.github.mcengine.common.backpack.pipeline;
+
+import io.github.mcengine.common.backpack.cache.BackPackWarmCache;
+import io.github.mcengine.common.backpack.codec.BackPackContentCodec;
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+import io.github.mcengine.common.backpack.core.storage.BackPackStore;
+import io.github.mcengine.common.backpack.scheduler.BackPackScheduler;
+import io.github.mcengine.common.backpack.storage.BackPackItemFilter;
+import io.github.mcengine.common.backpack.storage.BackPackItemPayload;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Join-time prefetcher that decodes a player's backpacks into the {@link BackPackWarmCache}
+ * before the first open.
+ *
+ * <p>Joining players are queued by {@link #request(UUID)}. {@link #drain()} runs once per tick on
+ * the global thread and starts at most {@code playersPerTick} players, and none while
+ * {@code maxInflight} loads are already running, so mass joins after a restart are spread over
+ * several ticks instead of flooding storage. For each started player the inventory is scanned on
+ * the player's thread; every backpack that was saved through this module is then loaded and decoded
+ * on the load executor. In store mode all of a player's backpacks are read in one batch, a single
+ * round trip for remote stores.</p>
+ *
+ * <p>Items that were never saved through this module (legacy API payloads) are skipped; they are
+ * opened through the API as before. So are backpacks with a save still queued: their open claims
+ * the queued contents, and the store still holds the older record.</p>
+ */
+public final class BackPackPrefetcher {
+
+    /** Logger of the owning plugin. */
+    private final Logger logger;
+
+    /** Filter used to find backpack items. */
+    private final BackPackItemFilter itemFilter;
+
+    /** Accessor for the payload stored in item meta. */
+    private final BackPackItemPayload payload;
+
+    /** Codec used to decode contents. */
+    private final BackPackContentCodec codec;
+
+    /** External store, or {@code null} in item mode. */
+    private final BackPackStore store;
+
+    /** Save queue whose in-flight writes a load must wait for. */
+    private final BackPackSaveQueue saveQueue;
+
+    /** Cache receiving the decoded snapshots. */
+    private final BackPackWarmCache warmCache;
+
+    /** Scheduler used to scan inventories on the player's thread. */
+    private final BackPackScheduler scheduler;
+
+    /** Executor running loads and decodes. */
+    private final Executor loadExecutor;
+
+    /** Shared counters. */
+    private final BackPackMetrics metrics;
+
+    /** Maximum number of players started per tick. */
+    private final int playersPerTick;
+
+    /** Maximum number of loads running at once before starting more players is deferred. */
+    private final int maxInflight;
+
+    /** Players waiting to be prefetched, in join order. */
+    private final Queue<UUID> queue = new ConcurrentLinkedQueue<>();
+
+    /** Loads currently running. */
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    /**
+     * Creates a prefetcher.
+     *
+     * @param logger         logger for failed loads
+     * @param itemFilter     filter used to find backpack items
+     * @param payload        item payload accessor
+     * @param codec          contents codec
+     * @param store          external store, or {@code null} for item mode
+     * @param saveQueue      save queue whose in-flight writes loads wait for
+     * @param warmCache      cache receiving the snapshots
+     * @param scheduler      scheduler used to reach the player's thread
+     * @param loadExecutor   executor for loads and decodes
+     * @param metrics        shared counters
+     * @param playersPerTick maximum number of players started per tick
+     * @param maxInflight    maximum number of loads running at once
+     */
+    public BackPackPrefetcher(Logger logger, BackPackItemFilter itemFilter, BackPackItemPayload payload,
+                              BackPackContentCodec codec, BackPackStore store, BackPackSaveQueue saveQueue,
+                              BackPackWarmCache warmCache, BackPackScheduler scheduler, Executor loadExecutor,
+                              BackPackMetrics metrics, int playersPerTick, int maxInflight) {
+        this.logger = logger;
+        this.itemFilter = itemFilter;
+        this.payload = payload;
+        this.codec = codec;
+        this.store = store;
+        this.saveQueue = saveQueue;
+        this.warmCache = warmCache;
+        this.scheduler = scheduler;
+        this.loadExecutor = loadExecutor;
+        this.metrics = metrics;
+        this.playersPerTick = playersPerTick;
+        this.maxInflight = maxInflight;
+        metrics.registerGauge(BackPackMetrics.PREFETCH_QUEUE_DEPTH, queue::size);
+    }
+
+    /**
+     * Queues a player for prefetching. Safe to call from any thread.
+     *
+     * @param player player id
+     */
+    public void request(UUID player) {
+        queue.add(player);
+    }
+
+    /**
+     * Forgets a player that left: drops the queued request and the player's warm entries.
+     *
+     * @param player player id
+     */
+    public void cancel(UUID player) {
+        queue.remove(player);
+        warmCache.evictPlayer(player);
+    }
+
+    /**
+     * Starts queued players within the per-tick and in-flight limits. Called once per tick.
+     */
+    public void drain() {
+        for (int started = 0; started < playersPerTick && inflight.get() < maxInflight; started++) {
+            UUID id = queue.poll();
+            if (id == null) return;
+            Player player = Bukkit.getPlayer(id);
+            if (player != null) scheduler.runForEntity(player, () -> scan(player));
+        }
+    }
+
+    /**
+     * Finds the player's backpacks and starts loading those not yet cached.
+     * Runs on the player's thread.
+     *
+     * @param player the player
+     */
+    private void scan(Player player) {
+        if (!player.isOnline()) return;
+        UUID playerId = player.getUniqueId();
+        List<Reserved> batch = new ArrayList<>();
+        for (ItemStack item : player.getInventory().getContents()) {
+            if (item == null || !itemFilter.isBackpack(item)) continue;
+
+            BackPackItemPayload.Captured captured = payload.read(item);
+            if (captured.id() == null) continue; // Never saved through this module
+            if (store == null && captured.data() == null) continue;
+            if (saveQueue.isPending(captured.id())) continue; // The open claims the queued contents
+
+            Object reservation = warmCache.reserve(playerId, captured.id());
+            if (reservation == null) continue; // Already cached or loading
+
+            // Item-mode decodes are independent; store-mode reads share one batch
+            if (store == null) start(List.of(new Reserved(captured, reservation)));
+            else batch.add(new Reserved(captured, reservation));
+        }
+        if (!batch.isEmpty()) start(batch);
+    }
+
+    /**
+     * Loads reserved backpacks on the load executor once their in-flight writes have finished.
+     *
+     * @param batch reserved backpacks loaded together
+     */
+    private void start(List<Reserved> batch) {
+        inflight.addAndGet(batch.size());
+        CompletableFuture.allOf(batch.stream()
+                        .map(reserved -> saveQueue.awaitWrites(reserved.captured.id()))
+                        .toArray(CompletableFuture[]::new))
+                .thenRunAsync(() -> load(batch), loadExecutor)
+                .whenComplete((ignored, error) -> {
+                    inflight.addAndGet(-batch.size());
+                    if (error == null) return;
+                    for (Reserved reserved : batch) warmCache.release(reserved.captured.id(), reserved.reservation);
+                    logger.log(Level.FINE, "Failed to prefetch " + batch.size() + " backpacks.", error);
+                });
+    }
+
+    /**
+     * Loads and decodes backpacks into their warm-cache reservations.
+     *
+     * @param batch reserved backpacks
+     */
+    private void load(List<Reserved> batch) {
+        try {
+            Map<UUID, BackPackSaveQueue.Stored> stored = (store != null)
+                    ? saveQueue.readStoreAll(batch.stream().map(reserved -> reserved.captured.id()).toList())
+                    : Map.of();
+            for (Reserved reserved : batch) {
+                BackPackItemPayload.Captured captured = reserved.captured;
+                BackPackSaveQueue.Stored record = stored.get(captured.id());
+                byte[] data = captured.data();
+                if (record == null && data == null) {
+                    warmCache.release(captured.id(), reserved.reservation);
+                    continue;
+                }
+                ItemStack[] contents = (record != null) ? record.contents() : codec.decode(data);
+                BackPackSnapshot snapshot = new BackPackSnapshot(captured.id(), captured.title(), contents);
+                if (warmCache.fill(reserved.reservation, snapshot, store == null ? data : null)) {
+                    metrics.increment(BackPackMetrics.PREFETCH_LOADED);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load " + batch.size() + " backpacks.", e);
+        }
+    }
+
+    /**
+     * A backpack with a warm-cache reservation, waiting to be loaded.
+     *
+     * @param captured    payload captured from the item
+     * @param reservation warm-cache reservation
+     */
+    private record Reserved(BackPackItemPayload.Captured captured, Object reservation) {}
+}
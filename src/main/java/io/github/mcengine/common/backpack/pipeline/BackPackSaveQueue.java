@@ -0,0 +1,629 @@
+package io.github.mcengine.common.backpack.pipeline;
+
+import io.github.mcengine.common.backpack.cache.BackPackWarmCache;
+import io.github.mcengine.common.backpack.codec.BackPackContentCodec;
+import io.github.mcengine.common.backpack.core.cache.BackPackSnapshotCache;
+import io.github.mcengine.common.backpack.core.codec.BackPackDeltaFormat;
+import io.github.mcengine.common.backpack.core.metrics.BackPackMetrics;
+import io.github.mcengine.common.backpack.core.storage.BackPackConflictException;
+import io.github.mcengine.common.backpack.core.storage.BackPackDeltaLog;
+import io.github.mcengine.common.backpack.core.storage.BackPackStore;
+import io.github.mcengine.common.backpack.storage.BackPackItemPayload;
+import org.bukkit.entity.Entity;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Saves backpack contents: immediately into the item in item mode, write-behind into an external store.
+ *
+ * <p><b>Item mode</b> (no {@link BackPackStore}) has no write-behind: {@link #saveNow(UUID, ItemStack, ItemStack[])}
+ * writes the payload into the item meta on the calling thread, at close. A deferred write would
+ * land on the {@link ItemStack} captured at close, and Bukkit replaces that stack as soon as the
+ * player drops, moves, splits, or trades the backpack; the item in the world would keep its old
+ * payload.</p>
+ *
+ * <p><b>External mode</b>: close-time snapshots are queued by backpack id, which stays valid
+ * however the item moves. A newer save of the same backpack replaces the pending one
+ * (coalescing). Encoding may start off the main thread as soon as a snapshot is queued. The
+ * embedded payload is stripped from the item when the save is queued, on the caller's thread.
+ * Pending saves are issued by {@link #drain()}, once per tick, within a per-tick time budget; the
+ * store writes run on the I/O executor, and writes of the same backpack are chained in order.</p>
+ *
+ * <p>With a {@link BackPackDeltaLog} (external stores that support deltas), a save that knows its
+ * changed slots is appended as a slot-level delta instead of a full rewrite, as long as the log
+ * allows it; otherwise a full snapshot is written, which restarts the chain. Coalesced saves merge
+ * their changed slots. {@link #readStore(UUID)} folds the deltas back on load.</p>
+ *
+ * <p>Read-your-writes: opening a backpack with a pending save claims it via {@link #claim(UUID, ItemStack)},
+ * and loads from the store wait for in-flight writes via {@link #awaitWrites(UUID)}. Prefetches
+ * skip backpacks with a pending save ({@link #isPending(UUID)}), and every queued, claimed, or
+ * written save drops the backpack's warm-cache entry, so a snapshot prefetched from an older record
+ * is never opened.
+ * {@link #flushAll()} writes everything immediately and must be called on plugin disable.</p>
+ *
+ * <p>A store write rejected by the store's version check ({@link BackPackConflictException}:
+ * another server wrote the backpack since this one read it) is not discarded. The newer record is
+ * read back and the save's changed slots are applied on top of it, or, for a save that does not
+ * know its changed slots, its contents replace the record, and the result is written again, up to
+ * {@value #CONFLICT_RETRIES} times.</p>
+ *
+ * <p>A save may have no item ({@code null}): player-bound backpacks live only in the store, so
+ * nothing is stripped from item meta.</p>
+ *
+ * <p>Queue operations are synchronized, so saves may be queued and claimed from any thread that
+ * owns the backpack item (e.g. a player's region thread on Folia). {@link #drain()} runs on the
+ * global thread, holds the queue for at most the tick budget, and never touches an item. A player
+ * switching servers must not race their own saves, so the player's saves are written by
+ * {@link #flush(Entity, long)} on quit.</p>
+ */
+public final class BackPackSaveQueue {
+
+    /** Attempts to write a conflicting save again before giving up. */
+    private static final int CONFLICT_RETRIES = 3;
+
+    /** Logger of the owning plugin. */
+    private final Logger logger;
+
+    /** Accessor for the encoded payload stored in item meta. */
+    private final BackPackItemPayload payload;
+
+    /** Codec used to encode snapshots. */
+    private final BackPackContentCodec codec;
+
+    /** Shared counters. */
+    private final BackPackMetrics metrics;
+
+    /** External store, or {@code null} when contents are embedded in item meta. */
+    private final BackPackStore store;
+
+    /** Delta chains of the external store, or {@code null} when every save is written in full. */
+    private final BackPackDeltaLog deltaLog;
+
+    /** Decoded-contents cache refreshed after each write, or {@code null} when disabled. */
+    private final BackPackSnapshotCache<ItemStack[]> snapshotCache;
+
+    /** Prefetched snapshots dropped whenever a save is queued or written, or {@code null} when disabled. */
+    private final BackPackWarmCache warmCache;
+
+    /** Executor used to encode snapshots as soon as they are queued, or {@code null} to encode with the write. */
+    private final Executor encodeExecutor;
+
+    /** Executor running store writes in external mode. */
+    private final Executor ioExecutor;
+
+    /** Maximum main-thread time spent by one {@link #drain()} call, in nanoseconds. */
+    private final long tickBudgetNanos;
+
+    /** Pending saves in queue order, keyed by backpack id (external mode only). */
+    private final Map<UUID, PendingSave> pending = new LinkedHashMap<>();
+
+    /** Store writes still running, keyed by backpack id (external mode only). */
+    private final Map<UUID, CompletableFuture<Void>> inflight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a save queue.
+     *
+     * @param logger          logger for failed saves
+     * @param payload         item payload accessor
+     * @param codec           contents codec
+     * @param metrics         shared counters
+     * @param store           external store, or {@code null} for item mode
+     * @param deltaLog        delta chains, or {@code null} to write every save in full; requires a store supporting deltas
+     * @param snapshotCache   decoded-contents cache, or {@code null} when disabled
+     * @param warmCache       prefetched snapshots, or {@code null} when prefetching is disabled
+     * @param encodeExecutor  executor for off-thread encoding, or {@code null} to encode on the I/O executor
+     * @param ioExecutor      executor for store writes (unused in item mode)
+     * @param tickBudgetNanos main-thread time budget per drain, in nanoseconds
+     */
+    public BackPackSaveQueue(Logger logger, BackPackItemPayload payload, BackPackContentCodec codec,
+                             BackPackMetrics metrics,
+                             BackPackStore store, BackPackDeltaLog deltaLog,
+                             BackPackSnapshotCache<ItemStack[]> snapshotCache, BackPackWarmCache warmCache,
+                             Executor encodeExecutor, Executor ioExecutor, long tickBudgetNanos) {
+        this.logger = logger;
+        this.payload = payload;
+        this.codec = codec;
+        this.metrics = metrics;
+        this.store = store;
+        this.deltaLog = deltaLog;
+        this.snapshotCache = snapshotCache;
+        this.warmCache = warmCache;
+        this.encodeExecutor = encodeExecutor;
+        this.ioExecutor = ioExecutor;
+        this.tickBudgetNanos = tickBudgetNanos;
+        metrics.registerGauge(BackPackMetrics.SAVE_QUEUE_DEPTH, this::size);
+    }
+
+    /**
+     * Queues a close-time snapshot, replacing any pending save of the same backpack. Call on the
+     * thread owning {@code item}. External mode only.
+     *
+     * @param backpackId stable backpack id
+     * @param item       the backpack item, stripped of any embedded payload now
+     * @param owner      entity whose quit flushes the save, or {@code null}
+     * @param contents   detached copy of the slot contents
+     * @throws IllegalStateException in item mode, where saves are written by {@link #saveNow(UUID, ItemStack, ItemStack[])}
+     */
+    public void enqueue(UUID backpackId, ItemStack item, Entity owner, ItemStack[] contents) {
+        enqueue(backpackId, item, owner, contents, null);
+    }
+
+    /**
+     * Queues a close-time snapshot with the slots that changed, replacing any pending save of the
+     * same backpack. Call on the thread owning {@code item}. External mode only.
+     *
+     * @param backpackId stable backpack id
+     * @param item       the backpack item, stripped of any embedded payload now, or {@code null} for a player-bound backpack
+     * @param owner      entity whose quit flushes the save, or {@code null}
+     * @param contents   detached copy of the slot contents
+     * @param changed    slots changed since the backpack was loaded, or {@code null} if unknown
+     * @throws IllegalStateException in item mode, where saves are written by {@link #saveNow(UUID, ItemStack, ItemStack[])}
+     */
+    public synchronized void enqueue(UUID backpackId, ItemStack item, Entity owner, ItemStack[] contents, BitSet changed) {
+        if (store == null) throw new IllegalStateException("Item-mode saves are written immediately, not queued.");
+        // The store will hold the contents; the item sheds them now, while we own it
+        if (item != null) stripContents(item);
+
+        // Remove first so a coalesced save moves to the back of the queue
+        PendingSave previous = pending.remove(backpackId);
+        if (previous != null) changed = merge(previous.changed, changed);
+
+        // A delta encodes only its changed slots, inside the write chain
+        boolean deltaCandidate = changed != null && deltaLog != null;
+        CompletableFuture<byte[]> encoded = (encodeExecutor == null || deltaCandidate)
+                ? null
+                : CompletableFuture.supplyAsync(() -> encode(contents), encodeExecutor);
+
+        // Cached contents are outdated from now on; the write caches the new ones
+        if (snapshotCache != null) snapshotCache.invalidate(backpackId);
+        if (warmCache != null) warmCache.invalidate(backpackId);
+
+        pending.put(backpackId, new PendingSave(owner, contents, encoded, changed));
+
+        metrics.increment(BackPackMetrics.SAVES_QUEUED);
+        if (previous != null) metrics.increment(BackPackMetrics.SAVES_COALESCED);
+    }
+
+    /**
+     * Writes a save immediately, superseding any pending save of the same backpack. Call on the
+     * thread owning {@code item}.
+     * <p>
+     * The contents are encoded, and item meta written, on the calling thread. In external mode the
+     * store write is only issued: it runs on the I/O executor after earlier writes of the same
+     * backpack, and the calling thread never waits for storage.
+     * </p>
+     *
+     * @param backpackId stable backpack id
+     * @param item       the backpack item, or {@code null} for a player-bound backpack (external mode only)
+     * @param contents   slot contents; may be live inventory stacks, which are copied
+     * @return future completed once the save is written, or exceptionally if the store write fails
+     *         (the failure is logged as well); already complete in item mode
+     * @throws IllegalStateException if the contents cannot be encoded
+     */
+    public CompletableFuture<Void> saveNow(UUID backpackId, ItemStack item, ItemStack[] contents) {
+        synchronized (this) {
+            pending.remove(backpackId);
+        }
+        if (warmCache != null) warmCache.invalidate(backpackId);
+        // Detached, so the contents can be cached and read off this thread
+        ItemStack[] copy = new ItemStack[contents.length];
+        for (int i = 0; i < contents.length; i++) copy[i] = (contents[i] == null) ? null : contents[i].clone();
+        byte[] data = encode(copy);
+        if (store == null) {
+            payload.write(item, data);
+            if (snapshotCache != null) snapshotCache.putSaved(backpackId, copy, data, BackPackSnapshotCache.stampOf(data));
+            metrics.add(BackPackMetrics.SAVE_BYTES, data.length);
+            metrics.increment(BackPackMetrics.SAVES_WRITTEN);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        if (snapshotCache != null) snapshotCache.invalidate(backpackId);
+        if (item != null) stripContents(item);
+        return writeStore(backpackId, new PendingSave(null, copy, CompletableFuture.completedFuture(data), null));
+    }
+
+    /**
+     * Reads a backpack from the external store, folding any deltas onto the full record, and
+     * records the chain so later saves can append to it. Blocking; call off the main thread
+     * once {@link #awaitWrites(UUID)} has completed.
+     *
+     * @param backpackId stable backpack id
+     * @return the stored contents, or {@code null} if the store has no record
+     * @throws IOException if the record cannot be read or decoded
+     */
+    public Stored readStore(UUID backpackId) throws IOException {
+        byte[] base = store.load(backpackId);
+        return (base == null) ? null : fold(backpackId, base);
+    }
+
+    /**
+     * Reads several backpacks from the external store in one batch (one round trip for remote
+     * stores), as {@link #readStore(UUID)} does for one. Blocking; call off the main thread once
+     * {@link #awaitWrites(UUID)} has completed for every id.
+     *
+     * @param backpackIds stable backpack ids
+     * @return the stored contents by id; ids without a record are absent
+     * @throws IOException if a record cannot be read or decoded
+     */
+    public Map<UUID, Stored> readStoreAll(Collection<UUID> backpackIds) throws IOException {
+        Map<UUID, Stored> stored = new HashMap<>();
+        for (Map.Entry<UUID, byte[]> record : store.loadAll(backpackIds).entrySet()) {
+            stored.put(record.getKey(), fold(record.getKey(), record.getValue()));
+        }
+        return stored;
+    }
+
+    /**
+     * Folds the deltas of a backpack onto its full record and records the chain.
+     *
+     * @param backpackId stable backpack id
+     * @param base       full record
+     * @return the stored contents
+     * @throws IOException if the deltas cannot be read or the contents decoded
+     */
+    private Stored fold(UUID backpackId, byte[] base) throws IOException {
+        List<byte[]> deltas = (deltaLog != null) ? store.loadDeltas(backpackId) : List.of();
+        long deltaBytes = 0L;
+        for (byte[] delta : deltas) deltaBytes += delta.length;
+        if (deltaLog != null) {
+            deltaLog.recordLoaded(backpackId, BackPackDeltaFormat.baseStampOf(base), base.length, deltas.size(), deltaBytes);
+        }
+        ItemStack[] contents = deltas.isEmpty() ? codec.decode(base) : codec.decode(base, deltas);
+        return new Stored(base, contents, !deltas.isEmpty(), base.length + deltaBytes);
+    }
+
+    /**
+     * Claims the pending save of a backpack that is about to be opened.
+     *
+     * <p>The pending save is written to the store immediately, and the queued contents are
+     * returned so the caller can open them without loading or decoding. Item mode never has
+     * pending saves.</p>
+     *
+     * @param backpackId stable backpack id
+     * @param target     the item being opened, or {@code null} for a player-bound backpack
+     * @return the pending contents, or {@code null} if no save was pending
+     */
+    public synchronized ItemStack[] claim(UUID backpackId, ItemStack target) {
+        PendingSave save = pending.remove(backpackId);
+        if (save == null) return null;
+        if (warmCache != null) warmCache.invalidate(backpackId);
+        if (target != null) stripContents(target);
+        writeStore(backpackId, save);
+        return save.contents;
+    }
+
+    /**
+     * @param backpackId stable backpack id
+     * @return {@code true} if a save of the backpack is queued and not yet written or claimed
+     */
+    public synchronized boolean isPending(UUID backpackId) {
+        return pending.containsKey(backpackId);
+    }
+
+    /**
+     * Returns a future completing once every store write of a backpack issued so far has finished.
+     * Safe to call from any thread.
+     *
+     * @param backpackId stable backpack id
+     * @return future of the in-flight writes (already complete if none)
+     */
+    public CompletableFuture<Void> awaitWrites(UUID backpackId) {
+        CompletableFuture<Void> write = inflight.get(backpackId);
+        return write == null ? CompletableFuture.completedFuture(null) : write.exceptionally(error -> null);
+    }
+
+    /**
+     * Issues queued store writes in order until the per-tick budget is exhausted. Called once per tick.
+     */
+    public synchronized void drain() {
+        if (pending.isEmpty()) return;
+
+        long deadline = System.nanoTime() + tickBudgetNanos;
+        Iterator<Map.Entry<UUID, PendingSave>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, PendingSave> entry = it.next();
+            it.remove();
+            writeStore(entry.getKey(), entry.getValue());
+            if (System.nanoTime() >= deadline) break;
+        }
+    }
+
+    /**
+     * Writes every pending save immediately, ignoring the tick budget, and waits for in-flight
+     * store writes. Call on plugin disable. The writes are issued under the queue's lock but
+     * waited for outside it.
+     */
+    public void flushAll() {
+        synchronized (this) {
+            // Issuing a store write does not block; the writes run on the I/O executor
+            for (Map.Entry<UUID, PendingSave> entry : pending.entrySet()) writeStore(entry.getKey(), entry.getValue());
+            pending.clear();
+        }
+        CompletableFuture.allOf(inflight.values().stream()
+                .map(write -> write.exceptionally(error -> null))
+                .toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * Issues the pending saves of one owner immediately, without waiting for them.
+     * <p>
+     * Call when the owner leaves, e.g. on quit. The writes are in flight when this returns, so an
+     * open on this server waits for them through {@link #awaitWrites(UUID)}, and a store shared
+     * between servers orders them against other writers by its versions.
+     * </p>
+     *
+     * @param owner entity holding the items, or owning the player-bound backpacks
+     */
+    public synchronized void flush(Entity owner) {
+        Iterator<Map.Entry<UUID, PendingSave>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, PendingSave> entry = it.next();
+            Entity saveOwner = entry.getValue().owner;
+            if (saveOwner == null || !saveOwner.getUniqueId().equals(owner.getUniqueId())) continue;
+            it.remove();
+            // Issued under the monitor, so an open never sees the save neither queued nor in flight
+            writeStore(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return number of saves waiting to be written
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Issues the store write of a pending save (external mode), chained after earlier writes of the
+     * same backpack. Touches no item, so it may run on any thread.
+     *
+     * @param backpackId stable backpack id
+     * @param save       the pending save
+     * @return future of the write, completed exceptionally if it fails (the failure is logged as well)
+     */
+    private CompletableFuture<Void> writeStore(UUID backpackId, PendingSave save) {
+        // A prefetch that read the store before this write must not be opened after it
+        if (warmCache != null) warmCache.invalidate(backpackId);
+
+        // Delta candidates are encoded inside the chain, once it is known whether a delta fits
+        boolean deltaCandidate = save.changed != null && deltaLog != null;
+        CompletableFuture<byte[]> encoded = (save.encoded != null || deltaCandidate)
+                ? save.encoded
+                : CompletableFuture.supplyAsync(() -> encode(save.contents), ioExecutor);
+        CompletableFuture<Void> write = inflight.compute(backpackId, (id, previous) -> {
+            CompletableFuture<?> ready = (encoded == null) ? CompletableFuture.completedFuture(null) : encoded;
+            if (previous != null) ready = CompletableFuture.allOf(previous.exceptionally(error -> null), ready);
+            return ready.thenRunAsync(() -> {
+                // Runs inside the per-id chain, so delta-chain and cache updates keep write order
+                try {
+                    if (deltaCandidate && writeDelta(id, save)) return;
+                    byte[] data = (encoded != null) ? encoded.join() : encode(save.contents);
+                    storeFull(id, data);
+                    if (snapshotCache != null) snapshotCache.putSaved(id, save.contents, data, 0L);
+                } catch (UncheckedIOException e) {
+                    if (!isConflict(e)) throw e;
+                    writeMerged(id, save);
+                }
+            }, ioExecutor);
+        });
+        write.whenComplete((ignored, error) -> {
+            inflight.remove(backpackId, write);
+            if (isConflict(error)) {
+                logger.severe("Backpack " + backpackId + " kept being changed by another server; this save was discarded after "
+                        + CONFLICT_RETRIES + " attempts.");
+            } else if (error != null) logger.log(Level.SEVERE, "Failed to save backpack " + backpackId + ".", error);
+            else metrics.increment(BackPackMetrics.SAVES_WRITTEN);
+        });
+        return write;
+    }
+
+    /**
+     * Writes a save whose store write conflicted: reads the newer record, applies the save's changed
+     * slots on top of it (or, with no changed slots known, keeps the save's contents), and writes
+     * the result in full, retrying while the record keeps changing. Runs inside the per-id chain.
+     *
+     * @param backpackId stable backpack id
+     * @param save       the conflicting save
+     * @throws UncheckedIOException if the record cannot be read or written, or still conflicts after the last attempt
+     */
+    private void writeMerged(UUID backpackId, PendingSave save) {
+        // What we knew of the record is outdated; reading it back refreshes the store's version
+        if (deltaLog != null) deltaLog.forget(backpackId);
+        if (snapshotCache != null) snapshotCache.invalidate(backpackId);
+        for (int attempt = 1; ; attempt++) {
+            ItemStack[] merged;
+            try {
+                Stored current = readStore(backpackId);
+                merged = (current != null && save.changed != null) ? merge(current.contents(), save.contents, save.changed) : save.contents;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (save.changed == null) {
+                logger.warning("Backpack " + backpackId + " was changed by another server; this server's contents replace those changes.");
+            }
+            try {
+                byte[] data = encode(merged);
+                storeFull(backpackId, data);
+                if (snapshotCache != null) snapshotCache.putSaved(backpackId, merged, data, 0L);
+                metrics.increment(BackPackMetrics.STORAGE_CONFLICTS_MERGED);
+                return;
+            } catch (UncheckedIOException e) {
+                if (!isConflict(e) || attempt >= CONFLICT_RETRIES) throw e;
+            }
+        }
+    }
+
+    /**
+     * Applies the changed slots of a save on top of newer stored contents.
+     *
+     * @param current  contents of the newer record
+     * @param contents contents of the save
+     * @param changed  slots the save changed
+     * @return merged contents, sized like the save
+     */
+    private static ItemStack[] merge(ItemStack[] current, ItemStack[] contents, BitSet changed) {
+        ItemStack[] merged = Arrays.copyOf(current, contents.length);
+        for (int slot = changed.nextSetBit(0); slot >= 0 && slot < contents.length; slot = changed.nextSetBit(slot + 1)) {
+            merged[slot] = contents[slot];
+        }
+        return merged;
+    }
+
+    /**
+     * Appends the changed slots of a save as a delta, if the backpack's delta chain allows it.
+     *
+     * @param backpackId stable backpack id
+     * @param save       the pending save, with its changed slots
+     * @return {@code true} if the save was written as a delta; {@code false} if it must be written in full
+     * @throws IllegalStateException if the changed slots cannot be encoded
+     * @throws UncheckedIOException  if the store write fails
+     */
+    private boolean writeDelta(UUID backpackId, PendingSave save) {
+        BackPackDeltaLog.Chain chain = deltaLog.plan(backpackId);
+        if (chain == null) return false;
+
+        if (!save.changed.isEmpty()) {
+            byte[] delta;
+            try {
+                delta = codec.encodeDelta(chain.baseStamp(), save.contents, save.changed);
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to encode backpack delta.", e);
+            }
+            if (!chain.accepts(delta.length)) return false;
+            try {
+                store.appendDelta(backpackId, delta);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            deltaLog.recordDelta(backpackId, chain, delta.length);
+            metrics.increment(BackPackMetrics.SAVES_DELTA);
+            metrics.add(BackPackMetrics.SAVE_BYTES, delta.length);
+        }
+        if (snapshotCache != null) snapshotCache.putSaved(backpackId, save.contents, chain.weight(), 0L);
+        return true;
+    }
+
+    /**
+     * Strips the embedded contents from an item whose contents live in the store. Call on the
+     * thread owning the item.
+     *
+     * @param item backpack item
+     */
+    private void stripContents(ItemStack item) {
+        payload.clearContents(item);
+    }
+
+    /**
+     * Writes a full payload to the external store, restarting the backpack's delta chain.
+     *
+     * @param backpackId stable backpack id
+     * @param data       encoded contents
+     * @throws UncheckedIOException if the store write fails
+     */
+    private void storeFull(UUID backpackId, byte[] data) {
+        try {
+            store.store(backpackId, data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (deltaLog != null) deltaLog.recordFull(backpackId, BackPackDeltaFormat.baseStampOf(data), data.length);
+        metrics.add(BackPackMetrics.SAVE_BYTES, data.length);
+    }
+
+    /**
+     * @param error failure of a store write, or {@code null}
+     * @return {@code true} if the write was rejected by the store's version check
+     */
+    private static boolean isConflict(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof BackPackConflictException) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Merges the changed slots of a coalesced save into those of the newer save.
+     *
+     * @param older changed slots of the replaced save, or {@code null} if unknown
+     * @param newer changed slots of the new save, or {@code null} if unknown
+     * @return the union, or {@code null} if either is unknown
+     */
+    private static BitSet merge(BitSet older, BitSet newer) {
+        if (older == null || newer == null) return null;
+        BitSet union = (BitSet) newer.clone();
+        union.or(older);
+        return union;
+    }
+
+    /**
+     * Encodes slot contents.
+     *
+     * @param contents slot contents
+     * @return encoded bytes
+     * @throws IllegalStateException if an item cannot be encoded
+     */
+    private byte[] encode(ItemStack[] contents) {
+        try {
+            return codec.encode(contents);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode backpack contents.", e);
+        }
+    }
+
+    /**
+     * A queued save.
+     */
+    private static final class PendingSave {
+
+        /** Entity whose quit flushes the save, or {@code null}. */
+        final Entity owner;
+
+        /** Detached slot contents. */
+        final ItemStack[] contents;
+
+        /** Async encode result, or {@code null} when encoding happens on write. */
+        final CompletableFuture<byte[]> encoded;
+
+        /** Slots changed since the backpack was loaded, or {@code null} to write in full. */
+        final BitSet changed;
+
+        /**
+         * @param owner    entity whose quit flushes the save, or {@code null}
+         * @param contents detached slot contents
+         * @param encoded  async encode result, or {@code null} when encoding happens on write
+         * @param changed  slots changed since the backpack was loaded, or {@code null} to write in full
+         */
+        PendingSave(Entity owner, ItemStack[] contents, CompletableFuture<byte[]> encoded, BitSet changed) {
+            this.owner = owner;
+            this.contents = contents;
+            this.encoded = encoded;
+            this.changed = changed;
+        }
+    }
+
+    /**
+     * Contents read by {@link #readStore(UUID)}.
+     *
+     * @param base     full payload in the store
+     * @param contents decoded contents with every delta applied
+     * @param folded   {@code true} if deltas were applied, so {@code base} alone is outdated
+     * @param weight   encoded size of the full payload plus its deltas
+     */
+    public record Stored(byte[] base, ItemStack[] contents, boolean folded, long weight) {}
+}
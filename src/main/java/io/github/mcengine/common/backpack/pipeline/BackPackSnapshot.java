@@ -0,0 +1,25 @@
+package io.github.mcengine.common.backpack.pipeline;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+
+/**
+ * Decoded backpack contents that are not yet bound to a Bukkit {@code Inventory}.
+ *
+ * <p>Snapshots are produced off the main thread and materialized into an inventory on the
+ * main thread by {@link BackPackOpenPipeline}.</p>
+ *
+ * @param id       stable backpack id
+ * @param title    GUI title for the backpack inventory
+ * @param contents slot contents, one entry per slot ({@code null} for empty)
+ */
+public record BackPackSnapshot(UUID id, String title, ItemStack[] contents) {
+
+    /**
+     * @return inventory size (number of slots)
+     */
+    public int size() {
+        return contents.length;
+    }
+}
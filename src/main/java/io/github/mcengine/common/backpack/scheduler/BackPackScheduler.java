@@ -0,0 +1,282 @@
+package io.github.mcengine.common.backpack.scheduler;
+
+import io.github.mcengine.common.backpack.core.scheduler.BackPackHandOff;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Scheduler facade routing backpack work to the right thread on Spigot, Paper, and Folia.
+ *
+ * <p>Three targets are offered:</p>
+ * <ul>
+ *   <li><b>Entity</b> – the thread owning an entity's region (Folia), otherwise the main thread.
+ *   Used for anything touching a player: opening the GUI, giving items.</li>
+ *   <li><b>Global</b> – the global region thread (Folia), otherwise the main thread.
+ *   Used for the save queue drain and work without an owning entity.</li>
+ *   <li><b>Async</b> – a bounded pool of virtual threads for decoding, encoding, and storage I/O.</li>
+ * </ul>
+ *
+ * <p>Work submitted from the thread that already owns the target runs inline. Folia's schedulers
+ * are resolved reflectively because this module compiles against the Spigot API.</p>
+ */
+public final class BackPackScheduler {
+
+    /** Whether the server is Folia (region-threaded). */
+    private static final boolean FOLIA;
+
+    /** {@code Bukkit.getGlobalRegionScheduler()}; {@code null} unless Folia. */
+    private static final MethodHandle GLOBAL_SCHEDULER;
+
+    /** {@code GlobalRegionScheduler#execute(Plugin, Runnable)}; {@code null} unless Folia. */
+    private static final MethodHandle GLOBAL_EXECUTE;
+
+    /** {@code GlobalRegionScheduler#runAtFixedRate(Plugin, Consumer, long, long)}; {@code null} unless Folia. */
+    private static final MethodHandle GLOBAL_AT_FIXED_RATE;
+
+    /** {@code ScheduledTask#cancel()}; {@code null} unless Folia. */
+    private static final MethodHandle TASK_CANCEL;
+
+    /** {@code Entity#getScheduler()}; {@code null} unless Folia. */
+    private static final MethodHandle ENTITY_SCHEDULER;
+
+    /** {@code EntityScheduler#execute(Plugin, Runnable, Runnable, long)}; {@code null} unless Folia. */
+    private static final MethodHandle ENTITY_EXECUTE;
+
+    /** {@code Bukkit.isOwnedByCurrentRegion(Entity)}; {@code null} unless Folia. */
+    private static final MethodHandle OWNED_BY_CURRENT_REGION;
+
+    /** {@code Bukkit.isGlobalTickThread()}; {@code null} unless Folia. */
+    private static final MethodHandle GLOBAL_TICK_THREAD;
+
+    static {
+        MethodHandle globalScheduler = null, globalExecute = null, globalAtFixedRate = null, taskCancel = null;
+        MethodHandle entityScheduler = null, entityExecute = null, ownedByCurrentRegion = null, globalTickThread = null;
+        boolean folia = false;
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            Class<?> globalType = Class.forName("io.papermc.paper.threadedregions.scheduler.GlobalRegionScheduler");
+            Class<?> entityType = Class.forName("io.papermc.paper.threadedregions.scheduler.EntityScheduler");
+            Class<?> taskType = Class.forName("io.papermc.paper.threadedregions.scheduler.ScheduledTask");
+            Class<?> cancelledType = Class.forName("io.papermc.paper.threadedregions.scheduler.ScheduledTask$CancelledState");
+
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            globalScheduler = lookup.findStatic(Bukkit.class, "getGlobalRegionScheduler", MethodType.methodType(globalType));
+            globalExecute = lookup.findVirtual(globalType, "execute", MethodType.methodType(void.class, Plugin.class, Runnable.class));
+            globalAtFixedRate = lookup.findVirtual(globalType, "runAtFixedRate",
+                    MethodType.methodType(taskType, Plugin.class, Consumer.class, long.class, long.class));
+            taskCancel = lookup.findVirtual(taskType, "cancel", MethodType.methodType(cancelledType));
+            entityScheduler = lookup.findVirtual(Entity.class, "getScheduler", MethodType.methodType(entityType));
+            entityExecute = lookup.findVirtual(entityType, "execute",
+                    MethodType.methodType(boolean.class, Plugin.class, Runnable.class, Runnable.class, long.class));
+            ownedByCurrentRegion = lookup.findStatic(Bukkit.class, "isOwnedByCurrentRegion", MethodType.methodType(boolean.class, Entity.class));
+            globalTickThread = lookup.findStatic(Bukkit.class, "isGlobalTickThread", MethodType.methodType(boolean.class));
+            folia = true;
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            // Not Folia: the Bukkit scheduler is used for everything
+        }
+        FOLIA = folia;
+        GLOBAL_SCHEDULER = globalScheduler;
+        GLOBAL_EXECUTE = globalExecute;
+        GLOBAL_AT_FIXED_RATE = globalAtFixedRate;
+        TASK_CANCEL = taskCancel;
+        ENTITY_SCHEDULER = entityScheduler;
+        ENTITY_EXECUTE = entityExecute;
+        OWNED_BY_CURRENT_REGION = ownedByCurrentRegion;
+        GLOBAL_TICK_THREAD = globalTickThread;
+    }
+
+    /** Plugin owning the scheduled tasks. */
+    private final Plugin plugin;
+
+    /** Bounded pool of virtual threads for off-thread work. */
+    private final ExecutorService asyncPool;
+
+    /** Executor running tasks on the global (main) thread. */
+    private final Executor globalExecutor = this::runGlobal;
+
+    /**
+     * Creates a scheduler facade.
+     *
+     * @param plugin       owning plugin
+     * @param asyncThreads maximum number of concurrently running async tasks
+     */
+    public BackPackScheduler(Plugin plugin, int asyncThreads) {
+        this.plugin = plugin;
+        this.asyncPool = Executors.newFixedThreadPool(Math.max(1, asyncThreads),
+                Thread.ofVirtual().name(plugin.getName() + "-backpack-", 0).factory());
+    }
+
+    /**
+     * @return {@code true} if running on a region-threaded (Folia) server
+     */
+    public boolean isFolia() {
+        return FOLIA;
+    }
+
+    /**
+     * Runs a task on the global thread (the main thread outside Folia), inline if already there.
+     *
+     * @param task the task
+     */
+    public void runGlobal(Runnable task) {
+        if (!FOLIA) {
+            if (Bukkit.isPrimaryThread()) task.run();
+            else Bukkit.getScheduler().runTask(plugin, task);
+            return;
+        }
+        try {
+            if ((boolean) GLOBAL_TICK_THREAD.invoke()) {
+                task.run();
+                return;
+            }
+            GLOBAL_EXECUTE.invoke(GLOBAL_SCHEDULER.invoke(), plugin, task);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to schedule on the global region", t);
+        }
+    }
+
+    /**
+     * Runs a task on the thread owning an entity (the main thread outside Folia), inline if already there.
+     * <p>
+     * On Folia the task is dropped if the entity is removed (e.g. the player logs out) before it runs.
+     * </p>
+     *
+     * @param entity the owning entity
+     * @param task   the task
+     */
+    public void runForEntity(Entity entity, Runnable task) {
+        runForEntity(entity, task, null);
+    }
+
+    /**
+     * Runs a task on the thread owning an entity (the main thread outside Folia), inline if already there.
+     * <p>
+     * On Folia, {@code retired} runs instead if the entity is removed (e.g. the player logs out)
+     * before the task runs, either on the thread that removed it or, if it was already removed,
+     * inline. Entities are never retired outside Folia.
+     * </p>
+     *
+     * @param entity  the owning entity
+     * @param task    the task
+     * @param retired run instead of {@code task} if the entity is removed first; may be {@code null}
+     */
+    public void runForEntity(Entity entity, Runnable task, Runnable retired) {
+        if (!FOLIA) {
+            runGlobal(task);
+            return;
+        }
+        boolean scheduled;
+        try {
+            if ((boolean) OWNED_BY_CURRENT_REGION.invoke(entity)) {
+                task.run();
+                return;
+            }
+            Object scheduler = ENTITY_SCHEDULER.invoke(entity);
+            scheduled = (boolean) ENTITY_EXECUTE.invoke(scheduler, plugin, task, retired, 1L);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to schedule on the entity's region", t);
+        }
+        // Folia neither schedules the task nor calls retired for an entity already removed
+        if (!scheduled && retired != null) retired.run();
+    }
+
+    /**
+     * Runs a task on the async pool.
+     *
+     * @param task the task
+     */
+    public void runAsync(Runnable task) {
+        asyncPool.execute(task);
+    }
+
+    /**
+     * Runs a task on the global thread every {@code periodTicks} ticks.
+     *
+     * @param task        the task
+     * @param delayTicks  delay before the first run, in ticks (at least 1)
+     * @param periodTicks period between runs, in ticks
+     * @return handle cancelling the repetition
+     */
+    public Handle runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        if (!FOLIA) {
+            BukkitTask bukkitTask = Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks);
+            return bukkitTask::cancel;
+        }
+        try {
+            Consumer<Object> body = scheduled -> task.run();
+            Object scheduled = GLOBAL_AT_FIXED_RATE.invoke(GLOBAL_SCHEDULER.invoke(), plugin, body, Math.max(1L, delayTicks), periodTicks);
+            return () -> {
+                try {
+                    TASK_CANCEL.invoke(scheduled);
+                } catch (Throwable t) {
+                    plugin.getLogger().log(Level.WARNING, "Failed to cancel backpack task", t);
+                }
+            };
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to schedule a repeating global task", t);
+        }
+    }
+
+    /**
+     * @return executor running tasks on the global thread
+     */
+    public Executor globalExecutor() {
+        return globalExecutor;
+    }
+
+    /**
+     * @param entity the owning entity
+     * @return hand-off target running tasks on the thread owning {@code entity}, and the retired
+     *         callback instead once it is removed
+     */
+    public BackPackHandOff.Target entityTarget(Entity entity) {
+        return (task, retired) -> runForEntity(entity, task, retired);
+    }
+
+    /**
+     * @return executor running tasks on the async pool
+     */
+    public Executor asyncExecutor() {
+        return asyncPool;
+    }
+
+    /**
+     * Stops accepting async work and waits briefly for running tasks to finish.
+     */
+    public void shutdown() {
+        asyncPool.shutdown();
+        try {
+            if (!asyncPool.awaitTermination(5, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("Backpack async tasks did not finish within 5 seconds.");
+                asyncPool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            asyncPool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Cancellation handle of a repeating task.
+     */
+    @FunctionalInterface
+    public interface Handle {
+
+        /**
+         * Cancels further runs.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,159 @@
+package io.github.mcengine.common.backpack.session;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.BitSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Lease on one backpack, held in the {@link io.github.mcengine.common.backpack.core.session.BackPackLockTable}
+ * from the moment an open starts until its last viewer leaves.
+ *
+ * <p>With an external store the lease is the shared live view of the backpack: every concurrent
+ * viewer joins the one inventory decoded for the first viewer (waiting for it if it is still
+ * loading) instead of decoding a copy of its own. Viewers report what they changed as they leave,
+ * and the contents are saved once, by backpack id, when the last viewer leaves. In item mode the
+ * contents live in the first viewer's item, which no other viewer can write, so the lease is never
+ * shared there.</p>
+ */
+public final class BackPackLease {
+
+    /** Stable id of the leased backpack. */
+    private final UUID backpackId;
+
+    /** Item the first viewer opened; receives the saved contents in item mode. */
+    private final ItemStack item;
+
+    /** First viewer, who holds {@link #item}. */
+    private final Entity owner;
+
+    /** Completed with the live inventory once loaded, or exceptionally if the load failed. */
+    private final CompletableFuture<Inventory> ready = new CompletableFuture<>();
+
+    /** Number of viewers; guarded by {@code this}. */
+    private int viewers = 1;
+
+    /** Whether any viewer modified the contents; guarded by {@code this}. */
+    private boolean modified;
+
+    /** Union of the slots changed by the viewers, or {@code null} once unknown; guarded by {@code this}. */
+    private BitSet changed = new BitSet();
+
+    /**
+     * Creates a lease for one viewer whose open is starting.
+     *
+     * @param backpackId stable backpack id
+     * @param item       item that receives the saved contents
+     * @param owner      the viewer holding {@code item}
+     */
+    public BackPackLease(UUID backpackId, ItemStack item, Entity owner) {
+        this.backpackId = backpackId;
+        this.item = item;
+        this.owner = owner;
+    }
+
+    /**
+     * @return stable id of the leased backpack
+     */
+    public UUID getBackpackId() {
+        return backpackId;
+    }
+
+    /**
+     * @return item that receives the saved contents
+     */
+    public ItemStack getItem() {
+        return item;
+    }
+
+    /**
+     * @return the first viewer, who holds {@link #getItem()}
+     */
+    public Entity getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return the live inventory, or {@code null} while the contents are still loading
+     */
+    public Inventory getInventory() {
+        return ready.getNow(null);
+    }
+
+    /**
+     * @return future of the live inventory, for viewers joining while it loads
+     */
+    public CompletableFuture<Inventory> ready() {
+        return ready;
+    }
+
+    /**
+     * Attaches the inventory loaded for the first viewer, releasing any waiting viewers.
+     *
+     * @param inventory the live inventory
+     */
+    public void attach(Inventory inventory) {
+        ready.complete(inventory);
+    }
+
+    /**
+     * Fails the lease's load; waiting viewers fail with the same error.
+     *
+     * @param error load failure
+     */
+    public void fail(Throwable error) {
+        ready.completeExceptionally(error);
+    }
+
+    /**
+     * Adds a viewer.
+     *
+     * @return {@code false} if the lease already ended
+     */
+    public synchronized boolean join() {
+        if (viewers == 0) return false;
+        viewers++;
+        return true;
+    }
+
+    /**
+     * Removes a viewer, recording what it changed.
+     *
+     * @param viewerModified whether the viewer modified the contents
+     * @param changedSlots   slots the viewer changed, or {@code null} if unknown
+     * @return {@code true} if it was the last viewer and the lease ended
+     */
+    public synchronized boolean leave(boolean viewerModified, BitSet changedSlots) {
+        if (viewers == 0) return false;
+        if (viewerModified) {
+            modified = true;
+            if (changed != null && changedSlots != null) changed.or(changedSlots);
+            else changed = null;
+        }
+        return --viewers == 0;
+    }
+
+    /**
+     * @return {@code true} if any viewer modified the contents
+     */
+    public synchronized boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * @return union of the slots changed by all viewers, or {@code null} if unknown
+     */
+    public synchronized BitSet getChangedSlots() {
+        return (changed == null) ? null : (BitSet) changed.clone();
+    }
+
+    /**
+     * @return number of viewers
+     */
+    public synchronized int getViewers() {
+        return viewers;
+    }
+}
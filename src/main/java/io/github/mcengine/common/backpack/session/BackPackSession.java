@@ -0,0 +1,68 @@
+package io.github.mcengine.common.backpack.session;
+
+import io.github.mcengine.common.backpack.core.session.BackPackSessionState;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+
+/**
+ * Bukkit session for a single open backpack GUI.
+ *
+ * <p>Adds the item that receives the saved contents and the player inventory slot it was
+ * opened from to the platform-independent {@link BackPackSessionState} (backpack id, open
+ * timestamp, open-time slot hashes, touched slots, dirty flag). Player-bound backpacks have no
+ * item: their sessions carry {@code null} and slot {@code -1}.</p>
+ */
+public final class BackPackSession extends BackPackSessionState {
+
+    /** The backpack item that was used to open the GUI and receives the saved contents, or {@code null}. */
+    private final ItemStack item;
+
+    /** Player inventory slot holding the item at open time (40 for the off-hand). */
+    private final int slot;
+
+    /**
+     * Creates a new clean session.
+     *
+     * @param backpackId stable backpack id
+     * @param item       the backpack item, or {@code null} for a player-bound backpack
+     * @param slot       player inventory slot the item was opened from, or {@code -1}
+     * @param slotHashes hash of every backpack slot at open time
+     */
+    public BackPackSession(UUID backpackId, ItemStack item, int slot, int[] slotHashes) {
+        super(backpackId, slotHashes);
+        this.item = item;
+        this.slot = slot;
+    }
+
+    /**
+     * @return the backpack item that receives the saved contents, or {@code null} for a player-bound backpack
+     */
+    public ItemStack getItem() {
+        return item;
+    }
+
+    /**
+     * @return player inventory slot the item was opened from (40 for the off-hand, {@code -1} without an item)
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Computes the hash of every slot of an inventory for the clean-close and changed-slot checks.
+     * {@link java.util.Arrays#hashCode(int[])} of the result equals {@link java.util.Arrays#hashCode(Object[])} of the contents.
+     *
+     * @param inventory the backpack inventory
+     * @return hash per slot ({@code 0} for empty slots)
+     */
+    public static int[] slotHashes(Inventory inventory) {
+        ItemStack[] contents = inventory.getContents();
+        int[] hashes = new int[contents.length];
+        for (int slot = 0; slot < contents.length; slot++) {
+            hashes[slot] = (contents[slot] == null) ? 0 : contents[slot].hashCode();
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.mcengine.common.backpack.storage;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.function.Predicate;
+
+/**
+ * Cheap filter placed in front of a backpack predicate (normally {@code MCEngineBackPackApi#isBackpack}).
+ *
+ * <p>Backpacks are recognized by data kept in their item meta, so a stack without meta, which
+ * most stacks moved around in inventories are, is rejected without touching the predicate;
+ * {@link ItemStack#hasItemMeta()} does not copy the meta. Every other stack is handed to the
+ * predicate, so a verdict is never stale, whoever edited the meta last.</p>
+ *
+ * <p>Stacks are not memoized: event stacks on CraftBukkit are fresh mirrors of the same
+ * underlying item on every access, so an identity-keyed memo mostly misses while allocating a
+ * key per check. The filter is stateless and safe for concurrent use.</p>
+ */
+public final class BackPackItemFilter {
+
+    /** Underlying backpack predicate. */
+    private final Predicate<ItemStack> delegate;
+
+    /**
+     * Creates a filter.
+     *
+     * @param delegate the backpack predicate consulted for stacks carrying meta
+     */
+    public BackPackItemFilter(Predicate<ItemStack> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Returns whether the given stack is a backpack.
+     *
+     * @param item the item to test (may be {@code null})
+     * @return {@code true} if the item is a backpack; otherwise {@code false}
+     */
+    public boolean isBackpack(ItemStack item) {
+        return item != null && item.hasItemMeta() && delegate.test(item);
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.mcengine.common.backpack.storage;
+
+import io.github.mcengine.api.backpack.MCEngineBackPackApi;
+import org.bukkit.NamespacedKey;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.plugin.Plugin;
+
+import java.util.UUID;
+
+/**
+ * Reads and writes the encoded backpack payload and the stable backpack id kept in a backpack
+ * item's persistent data container.
+ *
+ * <p>Items that were never saved through this module carry no payload; callers fall back to
+ * {@link MCEngineBackPackApi} for those. The first save through this module, whether it writes a
+ * payload or strips it for an external store, empties the contents kept by the API and marks the
+ * item, so stale API contents are never read back once the item has migrated.</p>
+ */
+public final class BackPackItemPayload {
+
+    /** Title used when the backpack item has no display name. */
+    public static final String DEFAULT_TITLE = "Backpack";
+
+    /** PDC key under which the encoded contents are stored. */
+    private final NamespacedKey contentsKey;
+
+    /** PDC key under which the stable backpack id is stored. */
+    private final NamespacedKey idKey;
+
+    /** PDC key marking an item whose API-stored contents were emptied. */
+    private final NamespacedKey legacyClearedKey;
+
+    /** API owning the contents of items that predate this module's payload. */
+    private final MCEngineBackPackApi api;
+
+    /**
+     * Creates a payload accessor bound to the plugin namespace.
+     *
+     * @param plugin the owning plugin
+     * @param api    API holding the contents of items saved before this module
+     */
+    public BackPackItemPayload(Plugin plugin, MCEngineBackPackApi api) {
+        this.contentsKey = new NamespacedKey(plugin, "contents");
+        this.idKey = new NamespacedKey(plugin, "id");
+        this.legacyClearedKey = new NamespacedKey(plugin, "legacy_cleared");
+        this.api = api;
+    }
+
+    /**
+     * Captures the backpack id, encoded payload, and GUI title of a backpack item with a single meta read.
+     * Must be called on the thread owning the item.
+     *
+     * @param item the backpack item
+     * @return the captured payload; {@link Captured#id()} and {@link Captured#data()} are {@code null}
+     *         if the item carries none
+     */
+    public Captured read(ItemStack item) {
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) return new Captured(null, DEFAULT_TITLE, null);
+        String title = meta.hasDisplayName() ? meta.getDisplayName() : DEFAULT_TITLE;
+        PersistentDataContainer pdc = meta.getPersistentDataContainer();
+        String id = pdc.get(idKey, PersistentDataType.STRING);
+        return new Captured(id == null ? null : UUID.fromString(id), title, pdc.get(contentsKey, PersistentDataType.BYTE_ARRAY));
+    }
+
+    /**
+     * Assigns a fresh stable id to a backpack item that does not carry one yet.
+     * Must be called on the thread owning the item.
+     *
+     * @param item the backpack item
+     * @return the assigned id
+     */
+    public UUID assignId(ItemStack item) {
+        UUID id = UUID.randomUUID();
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) return id;
+        meta.getPersistentDataContainer().set(idKey, PersistentDataType.STRING, id.toString());
+        item.setItemMeta(meta);
+        return id;
+    }
+
+    /**
+     * Writes an encoded payload into a backpack item. Must be called on the thread owning the item.
+     *
+     * @param item the backpack item
+     * @param data encoded bytes
+     */
+    public void write(ItemStack item, byte[] data) {
+        ItemMeta meta = clearLegacy(item);
+        if (meta == null) return;
+        meta.getPersistentDataContainer().set(contentsKey, PersistentDataType.BYTE_ARRAY, data);
+        item.setItemMeta(meta);
+    }
+
+    /**
+     * Removes the embedded contents payload from a backpack item, keeping its id.
+     * Used once a backpack's contents live in an external store. Must be called on the thread owning the item.
+     *
+     * @param item the backpack item
+     */
+    public void clearContents(ItemStack item) {
+        boolean migrating = isLegacyPending(item.getItemMeta());
+        ItemMeta meta = clearLegacy(item);
+        if (meta == null) return;
+        PersistentDataContainer pdc = meta.getPersistentDataContainer();
+        if (!migrating && !pdc.has(contentsKey, PersistentDataType.BYTE_ARRAY)) return;
+        pdc.remove(contentsKey);
+        item.setItemMeta(meta);
+    }
+
+    /**
+     * Empties the contents kept by {@link MCEngineBackPackApi} the first time an item is saved
+     * through this module, so they cannot resurface in place of newer contents.
+     *
+     * @param item the backpack item
+     * @return the item's meta, read after the API contents were emptied and marked as such (not yet
+     *         applied to the item), or {@code null} if the item has no meta
+     */
+    private ItemMeta clearLegacy(ItemStack item) {
+        ItemMeta meta = item.getItemMeta();
+        if (!isLegacyPending(meta)) return meta;
+
+        // The API owns its storage layout, so its contents are emptied through the API itself
+        Inventory legacy = api.openBackpack(item);
+        if (legacy != null && !legacy.isEmpty()) {
+            legacy.clear();
+            api.saveBackpack(item, legacy);
+            meta = item.getItemMeta();
+            if (meta == null) return null;
+        }
+        meta.getPersistentDataContainer().set(legacyClearedKey, PersistentDataType.BYTE, (byte) 1);
+        return meta;
+    }
+
+    /**
+     * @param meta a backpack item's meta, or {@code null}
+     * @return {@code true} if the item may still carry API-stored contents
+     */
+    private boolean isLegacyPending(ItemMeta meta) {
+        return meta != null && !meta.getPersistentDataContainer().has(legacyClearedKey, PersistentDataType.BYTE);
+    }
+
+    /**
+     * Id, payload, and title captured from a backpack item on its owning thread.
+     *
+     * @param id    stable backpack id, or {@code null} if none was assigned yet
+     * @param title GUI title for the backpack inventory
+     * @param data  encoded contents, or {@code null} if the item carries no payload
+     */
+    public record Captured(UUID id, String title, byte[] data) {}
+}
@@ -1,5 +1,6 @@
 package io.github.mcengine.common.backpack.tabcompleter;
 
+import io.github.mcengine.common.backpack.MCEngineBackPackCommon;
 import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -16,6 +17,7 @@ import java.util.List;
  * <p>Correct completion path:</p>
  * <pre>{@code
  * /backpack default give [player-online] [hdb-id] [1-6]
+ * /backpack personal [1-n] [player-online]
  * }</pre>
  *
  * <p>This completer supports both raw and dispatcher-sliced modes:
@@ -28,7 +30,7 @@ import java.util.List;
 public class BackPackTabCompleter implements TabCompleter {
 
     /**
-     * Provides tab completion for {@code /backpack default give ...}.
+     * Provides tab completion for {@code /backpack default give ...} and {@code /backpack personal ...}.
      *
      * @param sender  command sender
      * @param command command object
@@ -38,13 +40,19 @@ public class BackPackTabCompleter implements TabCompleter {
      */
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
-        // Handle the root "/backpack " case (before "default") — suggest "default"
+        // Handle the root "/backpack " case (before "default") — suggest "default" and "personal"
         if (args.length == 1 && !"default".equalsIgnoreCase(args[0])) {
             String prefix = args[0].toLowerCase();
             List<String> out = new ArrayList<>();
             if ("default".startsWith(prefix)) out.add("default");
+            if (personalSlots() > 0 && sender.hasPermission("mcengine.backpack.personal") && "personal".startsWith(prefix)) {
+                out.add("personal");
+            }
             return out;
         }
+        if (args.length > 0 && "personal".equalsIgnoreCase(args[0])) {
+            return completePersonal(sender, args);
+        }
 
         // Normalize to "sub-scope" by skipping the 'default' token if present.
         int offset = (args.length > 0 && "default".equalsIgnoreCase(args[0])) ? 1 : 0;
@@ -98,4 +106,50 @@ public class BackPackTabCompleter implements TabCompleter {
             }
         }
     }
+
+    /**
+     * Provides tab completion for {@code /backpack personal <n> [player]}.
+     *
+     * @param sender command sender
+     * @param args   command arguments, starting with {@code personal}
+     * @return list of suggestions
+     */
+    private List<String> completePersonal(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("mcengine.backpack.personal")) return Collections.emptyList();
+
+        List<String> out = new ArrayList<>();
+        switch (args.length) {
+            case 2 -> {
+                // /backpack personal <n>
+                String prefix = args[1];
+                for (int i = 1; i <= personalSlots(); i++) {
+                    String s = Integer.toString(i);
+                    if (s.startsWith(prefix)) out.add(s);
+                }
+                return out;
+            }
+            case 3 -> {
+                // /backpack personal <n> <player>
+                if (!sender.hasPermission("mcengine.backpack.personal.others")) return Collections.emptyList();
+                String prefix = args[2].toLowerCase();
+                for (Player p : Bukkit.getOnlinePlayers()) {
+                    if (p.getName().toLowerCase().startsWith(prefix)) {
+                        out.add(p.getName());
+                    }
+                }
+                return out;
+            }
+            default -> {
+                return Collections.emptyList();
+            }
+        }
+    }
+
+    /**
+     * @return number of player-bound backpacks per player, or {@code 0} if disabled or not initialized
+     */
+    private static int personalSlots() {
+        MCEngineBackPackCommon common = MCEngineBackPackCommon.getApi();
+        return (common != null) ? common.getPersonalBackpackSlots() : 0;
+    }
 }